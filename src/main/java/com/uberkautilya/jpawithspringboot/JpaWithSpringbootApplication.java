@@ -3,12 +3,16 @@ package com.uberkautilya.jpawithspringboot;
 import com.uberkautilya.jpawithspringboot.entity.Employee;
 import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
 import com.uberkautilya.jpawithspringboot.service.TransactionalDemo;
-import jakarta.annotation.PostConstruct;
+import com.uberkautilya.jpawithspringboot.startup.StartupWarmup;
+import com.uberkautilya.jpawithspringboot.unitofwork.BoundedUnitOfWork;
+import com.uberkautilya.jpawithspringboot.unitofwork.UnitOfWorkFactory;
 import jakarta.persistence.*;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import java.io.IOException;
@@ -54,31 +58,44 @@ public class JpaWithSpringbootApplication {
      * type EXTENDED allows creation of context that extends across multiple transactions
      * JPA no longer ensures thread safety in this case
      * Here, the programmer needs to manage thread safety with flush etc. With this persist is allowed
+     * Whatever is persisted stays managed for the life of the bean - for many entities, go through a BoundedUnitOfWork
      */
     @PersistenceContext(type = PersistenceContextType.EXTENDED)
     private EntityManager extendedManager;
 
     @Autowired
     TransactionalDemo transactionalDemo;
+    @Autowired
+    StartupWarmup startupWarmup;
+    @Autowired
+    UnitOfWorkFactory unitOfWorkFactory;
+
     public static void main(String[] args) {
         SpringApplication.run(JpaWithSpringbootApplication.class, args);
     }
 
     /**
-     * A method to run a method when the spring boot application starts @PostConstruct annotation
-     * Once all the beans are initialized this method would be run
+     * A method to run a method when the spring boot application starts: @EventListener for the ApplicationReadyEvent
+     * It is published once the context is refreshed and the application has started. A @PostConstruct here would run the queries
+     * and updates below while the context is still being created, on a bean that isn't fully wired up yet
+     * It is run as a StartupWarmup task - on a background thread with the fast-startup profile, so it doesn't hold up the start
      * Typical mode to run a method is by accessing a REST endpoint
      */
-    @PostConstruct
+    @EventListener(ApplicationReadyEvent.class)
     public void start() {
+        startupWarmup.run("startup demo", this::demo);
+    }
+
+    private void demo() {
 //        saveWithEntityManagerFactory();
 //        saveWithExtendedEntityManager();
+//        saveManyWithExtendedEntityManager(10_000);
 //        findWithEntityManagerNotExtended();
 //        employeeRepository.findAll().forEach(System.out::println);
         Optional<Employee> employeeById = employeeRepository.findById(BigInteger.valueOf(1));
         employeeById.ifPresent(System.out::println);
 
-        transactionalDemo.updateEmployee(employeeById.orElse(null));
+        employeeById.ifPresent(employee -> transactionalDemo.renameEmployee(employee.getId(), "Updated Name"));
         transactionalDemo.readEmployeeAndAccessCards();
     }
 
@@ -96,6 +113,22 @@ public class JpaWithSpringbootApplication {
         extendedManager.persist(emp);
     }
 
+    /**
+     * The persistence context is flushed and cleared every unit-of-work.max-managed-entities employees, instead of holding all of them
+     */
+    private void saveManyWithExtendedEntityManager(int count) {
+        try (BoundedUnitOfWork unitOfWork = unitOfWorkFactory.begin("saveManyWithExtendedEntityManager", extendedManager)) {
+            for (int i = 0; i < count; i++) {
+                Employee emp = new Employee();
+                emp.setAge(20);
+                emp.setName("Chanakya " + i);
+                emp.setSsn("x" + i);
+                emp.setDob(new Date());
+                unitOfWork.persist(emp);
+            }
+        }
+    }
+
     private void saveWithEntityManagerFactory() {
         EntityManager eManager = emFactory.createEntityManager();
         EntityTransaction transaction = eManager.getTransaction();
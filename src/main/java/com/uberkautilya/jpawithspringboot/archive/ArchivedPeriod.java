@@ -0,0 +1,29 @@
+package com.uberkautilya.jpawithspringboot.archive;
+
+import com.uberkautilya.jpawithspringboot.dto.PayrollTotal;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The index of one archived pay period, as kept in memory by the PayStubArchive
+ * dataFile holds the rows of the period in compressed blocks, sorted by employee id. blocks tells which employee ids each covers,
+ * so finding the pay stubs of one employee decompresses a single block - not the whole period
+ * totals are the pay stub count and salary sum per payPeriodStart, typeTotals and groupTotals the same per EmployeeType and per
+ * email group of the employees - see RollupKeys - so rollups never have to read the data file
+ */
+record ArchivedPeriod(YearMonth period, String dataFile, List<PayrollTotal<Date>> totals, List<PayrollTotal<EmployeeType>> typeTotals,
+                      List<PayrollTotal<EmailGroupKey>> groupTotals, List<Block> blocks) {
+
+    long payStubs() {
+        return totals.stream().mapToLong(PayrollTotal::payStubs).sum();
+    }
+
+    /**
+     * Employee id 0 stands for pay stubs without an employee
+     */
+    record Block(long firstEmployeeId, long lastEmployeeId, long offset, int length, int rows) {
+    }
+}
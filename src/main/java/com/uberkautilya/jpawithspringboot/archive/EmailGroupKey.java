@@ -0,0 +1,8 @@
+package com.uberkautilya.jpawithspringboot.archive;
+
+/**
+ * An email group as the archived totals are kept by: by id, as groups of the same name are distinct groups, with its name
+ * as it was when the pay stubs were archived
+ */
+public record EmailGroupKey(int id, String name) {
+}
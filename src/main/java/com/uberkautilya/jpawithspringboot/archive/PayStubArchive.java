@@ -0,0 +1,465 @@
+package com.uberkautilya.jpawithspringboot.archive;
+
+import com.uberkautilya.jpawithspringboot.dto.PayStubSummary;
+import com.uberkautilya.jpawithspringboot.dto.PayrollTotal;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold tier of the PayStubs: the closed pay periods, one month each, moved out of the PAY_STUB table into local files
+ * See PayStubArchiveService for what gets archived and when
+ *
+ * A period is two files in paystub.archive.directory:
+ * - [yyyy-MM].[generation].dat: the rows sorted by employee id, cut in blocks of paystub.archive.rows-per-block rows, each deflate compressed
+ * - [yyyy-MM].idx: the name of the data file, the count and salary sum per payPeriodStart, per EmployeeType and per email group,
+ *   and per block its employee id range and position.
+ * The indexes of all periods are loaded at startup and kept in memory - a few bytes per block
+ *
+ * Archiving a period again - pay stubs that arrived late - merges the new rows with the archived ones into a new generation of the data file.
+ * The index is written last and moved over the old one atomically, so a crash leaves either the old or the new period, never a mix.
+ * Data files no index refers to are deleted at startup
+ * Reads share a lock that writes hold exclusively, as writes are rare - a periodic job - and reads are short
+ */
+@Component
+public class PayStubArchive {
+    private static final int MAGIC = 0x50534132;
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String DATA_SUFFIX = ".dat";
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final Comparator<PayStubSummary> EMPLOYEE_ORDER = Comparator.comparingLong(PayStubArchive::employeeKey)
+            .thenComparing(PayStubSummary::payPeriodStart).thenComparingInt(PayStubSummary::id);
+
+    private final Path directory;
+    private final int rowsPerBlock;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ConcurrentSkipListMap<YearMonth, ArchivedPeriod> periods = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PayStubArchive(@Value("${paystub.archive.directory:paystub-archive}") Path directory,
+                          @Value("${paystub.archive.rows-per-block:256}") int rowsPerBlock) {
+        if (rowsPerBlock < 1) {
+            throw new IllegalArgumentException("paystub.archive.rows-per-block must be positive, was " + rowsPerBlock);
+        }
+        this.directory = directory;
+        this.rowsPerBlock = rowsPerBlock;
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the pay stub archive in " + directory.toAbsolutePath(), e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public YearMonth periodOf(Date date) {
+        return YearMonth.from(Instant.ofEpochMilli(date.getTime()).atZone(zone));
+    }
+
+    public Date startOf(YearMonth period) {
+        return Date.from(period.atDay(1).atStartOfDay(zone).toInstant());
+    }
+
+    public boolean contains(YearMonth period) {
+        return periods.containsKey(period);
+    }
+
+    public Collection<YearMonth> getPeriods() {
+        return periods.keySet();
+    }
+
+    /**
+     * @return the start of the month after the newest archived period - every archived pay stub is before it. Null when none is
+     */
+    public Date archivedUntil() {
+        Map.Entry<YearMonth, ArchivedPeriod> newest = periods.lastEntry();
+        return newest == null ? null : startOf(newest.getKey().plusMonths(1));
+    }
+
+    public long getPayStubs() {
+        return periods.values().stream().mapToLong(ArchivedPeriod::payStubs).sum();
+    }
+
+    /**
+     * @return the pay stub count and salary sum per payPeriodStart of every archived period, from the indexes alone
+     */
+    public List<PayrollTotal<Date>> totalsByPeriod() {
+        List<PayrollTotal<Date>> totals = new ArrayList<>();
+        periods.values().forEach(period -> totals.addAll(period.totals()));
+        return totals;
+    }
+
+    /**
+     * @return the pay stub count and salary sum per EmployeeType of every archived period, from the indexes alone - a total per
+     * period and type, by the type the employees had when their pay stubs were archived
+     */
+    public List<PayrollTotal<EmployeeType>> totalsByType() {
+        List<PayrollTotal<EmployeeType>> totals = new ArrayList<>();
+        periods.values().forEach(period -> totals.addAll(period.typeTotals()));
+        return totals;
+    }
+
+    /**
+     * @return as totalsByType(), per email group
+     */
+    public List<PayrollTotal<EmailGroupKey>> totalsByEmailGroup() {
+        List<PayrollTotal<EmailGroupKey>> totals = new ArrayList<>();
+        periods.values().forEach(period -> totals.addAll(period.groupTotals()));
+        return totals;
+    }
+
+    /**
+     * @param from first period to look into, null for the oldest
+     * @param to last period to look into, null for the newest
+     * @return the archived pay stubs of the employee in those periods, ordered by period
+     */
+    public List<PayStubSummary> findByEmployeeId(BigInteger employeeId, YearMonth from, YearMonth to) {
+        long key = employeeId == null ? 0 : employeeId.longValueExact();
+        NavigableMap<YearMonth, ArchivedPeriod> range = periods;
+        if (from != null) {
+            range = range.tailMap(from, true);
+        }
+        if (to != null) {
+            range = range.headMap(to, true);
+        }
+        List<PayStubSummary> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (ArchivedPeriod period : range.values()) {
+                List<ArchivedPeriod.Block> blocks = period.blocks();
+                for (int i = firstBlockFor(blocks, key); i < blocks.size() && blocks.get(i).firstEmployeeId() <= key; i++) {
+                    for (PayStubSummary row : readBlock(period, blocks.get(i))) {
+                        if (employeeKey(row) == key) {
+                            found.add(row);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    /**
+     * Index of the first block whose employee id range ends at or after key. Ranges are sorted and only touch at the edges
+     */
+    private static int firstBlockFor(List<ArchivedPeriod.Block> blocks, long key) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blocks.get(middle).lastEmployeeId() < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public List<PayStubSummary> read(YearMonth period) {
+        lock.readLock().lock();
+        try {
+            ArchivedPeriod archived = periods.get(period);
+            if (archived == null) {
+                return List.of();
+            }
+            List<PayStubSummary> rows = new ArrayList<>();
+            for (ArchivedPeriod.Block block : archived.blocks()) {
+                rows.addAll(readBlock(archived, block));
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Archives the pay stubs of a period. If the period is already archived, they are merged with its rows - a row with
+     * the id of an archived one replaces it. Returns once both files are on disk
+     * keys has the RollupKeys of the employees of the pay stubs: the totals by type and by email group of the period are added up
+     * by them, and kept in the index. A pay stub without an employee, or of one keys has nothing for, only counts in the totals
+     * by period. A row replaced is taken out of them by the keys its employee has now
+     */
+    public void write(YearMonth period, List<PayStubSummary> payStubs, Map<BigInteger, RollupKeys> keys) {
+        lock.writeLock().lock();
+        try {
+            ArchivedPeriod previous = periods.get(period);
+            Map<EmployeeType, PayrollTotal<EmployeeType>> typeTotals = byKey(previous == null ? List.of() : previous.typeTotals());
+            Map<EmailGroupKey, PayrollTotal<EmailGroupKey>> groupTotals = byKey(previous == null ? List.of() : previous.groupTotals());
+            Map<Integer, PayStubSummary> byId = new LinkedHashMap<>();
+            read(period).forEach(row -> byId.put(row.id(), row));
+            for (PayStubSummary row : payStubs) {
+                PayStubSummary replaced = byId.put(row.id(), row);
+                if (replaced != null) {
+                    rollUp(replaced, keys, -1, typeTotals, groupTotals);
+                }
+                rollUp(row, keys, 1, typeTotals, groupTotals);
+            }
+            List<PayStubSummary> rows = new ArrayList<>(byId.values());
+            rows.sort(EMPLOYEE_ORDER);
+
+            long generation = previous == null ? 1 : generation(previous.dataFile()) + 1;
+            String dataFile = period + "." + generation + DATA_SUFFIX;
+            List<ArchivedPeriod.Block> blocks = writeData(directory.resolve(dataFile), rows);
+            ArchivedPeriod archived = new ArchivedPeriod(period, dataFile, totals(rows), nonEmpty(typeTotals), nonEmpty(groupTotals), blocks);
+            writeIndex(archived);
+            periods.put(period, archived);
+            if (previous != null) {
+                Files.deleteIfExists(directory.resolve(previous.dataFile()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not archive the pay stubs of " + period, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long generation(String dataFile) {
+        return Long.parseLong(dataFile.substring(dataFile.indexOf('.') + 1, dataFile.length() - DATA_SUFFIX.length()));
+    }
+
+    private List<PayrollTotal<Date>> totals(List<PayStubSummary> rows) {
+        TreeMap<Long, long[]> counts = new TreeMap<>();
+        TreeMap<Long, double[]> sums = new TreeMap<>();
+        for (PayStubSummary row : rows) {
+            long start = row.payPeriodStart().getTime();
+            counts.computeIfAbsent(start, key -> new long[1])[0]++;
+            sums.computeIfAbsent(start, key -> new double[1])[0] += row.salary();
+        }
+        List<PayrollTotal<Date>> totals = new ArrayList<>(counts.size());
+        counts.forEach((start, count) -> totals.add(new PayrollTotal<>(new Date(start), count[0], sums.get(start)[0])));
+        return totals;
+    }
+
+    private static <K> Map<K, PayrollTotal<K>> byKey(List<PayrollTotal<K>> totals) {
+        Map<K, PayrollTotal<K>> byKey = new LinkedHashMap<>();
+        totals.forEach(total -> byKey.put(total.key(), total));
+        return byKey;
+    }
+
+    private static void rollUp(PayStubSummary row, Map<BigInteger, RollupKeys> keys, int sign,
+                               Map<EmployeeType, PayrollTotal<EmployeeType>> typeTotals,
+                               Map<EmailGroupKey, PayrollTotal<EmailGroupKey>> groupTotals) {
+        RollupKeys employeeKeys = row.employeeId() == null ? null : keys.get(row.employeeId());
+        if (employeeKeys == null) {
+            return;
+        }
+        double salary = sign * (double) row.salary();
+        typeTotals.merge(employeeKeys.type(), new PayrollTotal<>(employeeKeys.type(), sign, salary), PayStubArchive::plus);
+        for (EmailGroupKey group : employeeKeys.emailGroups()) {
+            groupTotals.merge(group, new PayrollTotal<>(group, sign, salary), PayStubArchive::plus);
+        }
+    }
+
+    private static <K> PayrollTotal<K> plus(PayrollTotal<K> left, PayrollTotal<K> right) {
+        return new PayrollTotal<>(left.key(), left.payStubs() + right.payStubs(), left.totalSalary() + right.totalSalary());
+    }
+
+    private static <K> List<PayrollTotal<K>> nonEmpty(Map<K, PayrollTotal<K>> totals) {
+        return totals.values().stream().filter(total -> total.payStubs() != 0).toList();
+    }
+
+    private List<ArchivedPeriod.Block> writeData(Path file, List<PayStubSummary> rows) throws IOException {
+        List<ArchivedPeriod.Block> blocks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long offset = 0;
+            for (int from = 0; from < rows.size(); from += rowsPerBlock) {
+                List<PayStubSummary> blockRows = rows.subList(from, Math.min(from + rowsPerBlock, rows.size()));
+                byte[] compressed = compress(blockRows);
+                ByteBuffer buffer = ByteBuffer.wrap(compressed);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                blocks.add(new ArchivedPeriod.Block(employeeKey(blockRows.get(0)), employeeKey(blockRows.get(blockRows.size() - 1)),
+                        offset, compressed.length, blockRows.size()));
+                offset += compressed.length;
+            }
+            channel.force(true);
+        }
+        return blocks;
+    }
+
+    private static byte[] compress(List<PayStubSummary> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * 16);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            for (PayStubSummary row : rows) {
+                out.writeLong(employeeKey(row));
+                out.writeInt(row.id());
+                out.writeLong(row.payPeriodStart().getTime());
+                out.writeLong(row.payPeriodEnd() == null ? NO_DATE : row.payPeriodEnd().getTime());
+                out.writeFloat(row.salary());
+            }
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<PayStubSummary> readBlock(ArchivedPeriod period, ArchivedPeriod.Block block) {
+        ByteBuffer buffer = ByteBuffer.allocate(block.length());
+        try (FileChannel channel = FileChannel.open(directory.resolve(period.dataFile()), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, block.offset() + buffer.position()) < 0) {
+                    throw new IOException("Truncated data file " + period.dataFile());
+                }
+            }
+            List<PayStubSummary> rows = new ArrayList<>(block.rows());
+            try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(buffer.array())))) {
+                for (int i = 0; i < block.rows(); i++) {
+                    long employeeId = in.readLong();
+                    int id = in.readInt();
+                    Date payPeriodStart = new Date(in.readLong());
+                    long payPeriodEnd = in.readLong();
+                    rows.add(new PayStubSummary(id, employeeId == 0 ? null : BigInteger.valueOf(employeeId), payPeriodStart,
+                            payPeriodEnd == NO_DATE ? null : new Date(payPeriodEnd), in.readFloat()));
+                }
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the archived pay stubs of " + period.period(), e);
+        }
+    }
+
+    private void writeIndex(ArchivedPeriod archived) throws IOException {
+        Path index = directory.resolve(archived.period() + INDEX_SUFFIX);
+        Path temporary = directory.resolve(archived.period() + INDEX_SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeUTF(archived.dataFile());
+                out.writeInt(archived.totals().size());
+                for (PayrollTotal<Date> total : archived.totals()) {
+                    out.writeLong(total.key().getTime());
+                    out.writeLong(total.payStubs());
+                    out.writeDouble(total.totalSalary());
+                }
+                out.writeInt(archived.typeTotals().size());
+                for (PayrollTotal<EmployeeType> total : archived.typeTotals()) {
+                    out.writeInt(total.key() == null ? -1 : total.key().ordinal());
+                    out.writeLong(total.payStubs());
+                    out.writeDouble(total.totalSalary());
+                }
+                out.writeInt(archived.groupTotals().size());
+                for (PayrollTotal<EmailGroupKey> total : archived.groupTotals()) {
+                    out.writeInt(total.key().id());
+                    out.writeUTF(total.key().name());
+                    out.writeLong(total.payStubs());
+                    out.writeDouble(total.totalSalary());
+                }
+                out.writeInt(archived.blocks().size());
+                for (ArchivedPeriod.Block block : archived.blocks()) {
+                    out.writeLong(block.firstEmployeeId());
+                    out.writeLong(block.lastEmployeeId());
+                    out.writeLong(block.offset());
+                    out.writeInt(block.length());
+                    out.writeInt(block.rows());
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void load() throws IOException {
+        Set<String> dataFiles = new HashSet<>();
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(directory, "*" + INDEX_SUFFIX)) {
+            for (Path index : indexes) {
+                ArchivedPeriod archived = readIndex(index);
+                periods.put(archived.period(), archived);
+                dataFiles.add(archived.dataFile());
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + DATA_SUFFIX)) {
+            for (Path file : files) {
+                if (!dataFiles.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private ArchivedPeriod readIndex(Path index) throws IOException {
+        String name = index.getFileName().toString();
+        YearMonth period = YearMonth.parse(name.substring(0, name.length() - INDEX_SUFFIX.length()));
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(index)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(index + " is not a pay stub archive index, or one of an older format");
+            }
+            String dataFile = in.readUTF();
+            int totalCount = in.readInt();
+            List<PayrollTotal<Date>> totals = new ArrayList<>(totalCount);
+            for (int i = 0; i < totalCount; i++) {
+                totals.add(new PayrollTotal<>(new Date(in.readLong()), in.readLong(), in.readDouble()));
+            }
+            int typeTotalCount = in.readInt();
+            List<PayrollTotal<EmployeeType>> typeTotals = new ArrayList<>(typeTotalCount);
+            for (int i = 0; i < typeTotalCount; i++) {
+                int ordinal = in.readInt();
+                typeTotals.add(new PayrollTotal<>(ordinal < 0 ? null : EmployeeType.values()[ordinal], in.readLong(), in.readDouble()));
+            }
+            int groupTotalCount = in.readInt();
+            List<PayrollTotal<EmailGroupKey>> groupTotals = new ArrayList<>(groupTotalCount);
+            for (int i = 0; i < groupTotalCount; i++) {
+                groupTotals.add(new PayrollTotal<>(new EmailGroupKey(in.readInt(), in.readUTF()), in.readLong(), in.readDouble()));
+            }
+            int blockCount = in.readInt();
+            List<ArchivedPeriod.Block> blocks = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                blocks.add(new ArchivedPeriod.Block(in.readLong(), in.readLong(), in.readLong(), in.readInt(), in.readInt()));
+            }
+            return new ArchivedPeriod(period, dataFile, List.copyOf(totals), List.copyOf(typeTotals), List.copyOf(groupTotals),
+                    List.copyOf(blocks));
+        }
+    }
+
+    private static long employeeKey(PayStubSummary row) {
+        return row.employeeId() == null ? 0 : row.employeeId().longValueExact();
+    }
+}
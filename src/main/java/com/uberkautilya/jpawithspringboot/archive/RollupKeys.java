@@ -0,0 +1,12 @@
+package com.uberkautilya.jpawithspringboot.archive;
+
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+
+import java.util.List;
+
+/**
+ * What the pay stubs of one employee are rolled up by in the index of an archived period: the type and the email groups
+ * the employee has when they are archived
+ */
+public record RollupKeys(EmployeeType type, List<EmailGroupKey> emailGroups) {
+}
@@ -0,0 +1,19 @@
+package com.uberkautilya.jpawithspringboot.aspect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a transactional method to be run again when it fails on an optimistic locking conflict - see RetryOnConflictAspect
+ * The method has to read what it changes inside the transaction, so that a new attempt works on the state the conflicting write left
+ * maxAttempts counts the first call. Between attempts the caller waits a random time up to backoffMillis, doubled on every attempt
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RetryOnConflict {
+    int maxAttempts() default 3;
+
+    long backoffMillis() default 10;
+}
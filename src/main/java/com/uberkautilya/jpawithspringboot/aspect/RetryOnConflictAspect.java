@@ -0,0 +1,69 @@
+package com.uberkautilya.jpawithspringboot.aspect;
+
+import jakarta.persistence.OptimisticLockException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.StaleStateException;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a @RetryOnConflict method again when it fails with an optimistic locking conflict
+ * The conflict usually surfaces at commit, so the retry has to wrap the transaction: this aspect is ordered before the
+ * transaction interceptor, and every attempt is a new transaction
+ * Called inside a transaction that is already running, the method is not retried - the conflict has marked that outer transaction
+ * for rollback, so only whoever started it can try again
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RetryOnConflictAspect {
+    private final LongAdder retries = new LongAdder();
+
+    @Around("@annotation(retryOnConflict)")
+    public Object retry(ProceedingJoinPoint proceedingPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return proceedingPoint.proceed();
+        }
+        long backoff = retryOnConflict.backoffMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return proceedingPoint.proceed();
+            } catch (RuntimeException e) {
+                if (attempt >= retryOnConflict.maxAttempts() || !isConflict(e)) {
+                    throw e;
+                }
+            }
+            retries.increment();
+            if (backoff > 0) {
+                TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(backoff) + 1);
+                backoff *= 2;
+            }
+        }
+    }
+
+    private static boolean isConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException || cause instanceof OptimisticLockException
+                    || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of attempts made again after a conflict, since startup
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+}
@@ -1,4 +1,15 @@
 package com.uberkautilya.jpawithspringboot.aspect;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method to be timed by the LoggingAspect
+ * RUNTIME retention is needed for Spring AOP to see the annotation through reflection
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
 public @interface log {
 }
@@ -0,0 +1,17 @@
+package com.uberkautilya.jpawithspringboot.cache;
+
+/**
+ * Counters of one second level cache region since startup, or since the statistics were last cleared
+ */
+public record CacheRegionStats(String region, long hits, long misses, long puts) {
+
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public double missRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) misses / lookups;
+    }
+}
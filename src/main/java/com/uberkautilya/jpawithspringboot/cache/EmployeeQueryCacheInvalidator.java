@@ -0,0 +1,122 @@
+package com.uberkautilya.jpawithspringboot.cache;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeBulkChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+
+/**
+ * Drops the cached "emp name asc" results an Employee change affects, once the change has committed
+ * The query lists employees with age >= minAge, so a change to an employee of age a can only affect the results for minAge <= a.
+ * For an update the age before and after both count - the employee may have moved in or out of a result
+ * Hibernate calls the post commit listeners while committing, so by the time the transaction method returns, no stale result is left
+ * Bulk updates skip these listeners: they are seen through the EmployeeBulkChangeEvent instead
+ */
+@Component
+public class EmployeeQueryCacheInvalidator implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    public static final String EMP_NAME_ASC = "emp name asc";
+
+    @PersistenceUnit
+    EntityManagerFactory emFactory;
+    @Autowired
+    QueryResultCache queryResultCache;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.getMappedClass() == Employee.class;
+    }
+
+    /*
+     * Once any listener asks for post commit handling, Hibernate calls all of them for every entity - hence the instanceof checks
+     */
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Employee employee) {
+            invalidateUpTo(employee.getAge());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Employee employee)) {
+            return;
+        }
+        Object[] oldState = event.getOldState();
+        if (oldState == null) {
+            invalidateAll();
+            return;
+        }
+        int oldAge = (Integer) oldState[ageIndex(event.getPersister())];
+        invalidateUpTo(Math.max(employee.getAge(), oldAge));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Employee employee) {
+            invalidateUpTo(employee.getAge());
+        }
+    }
+
+    /**
+     * The rows of a bulk change aren't known, so a change to what the query filters or sorts on drops all its results
+     * Other attributes are read through the entity cache, which Hibernate evicts for a bulk statement
+     */
+    @TransactionalEventListener
+    public void onBulkChange(EmployeeBulkChangeEvent event) {
+        if (event.changed("name") || event.changed("age")) {
+            invalidateAll();
+        }
+    }
+
+    public void invalidateAll() {
+        queryResultCache.invalidate(key -> EMP_NAME_ASC.equals(key.queryName()));
+    }
+
+    private void invalidateUpTo(int age) {
+        queryResultCache.invalidate(key -> EMP_NAME_ASC.equals(key.queryName()) && (Integer) key.parameters().get(0) <= age);
+    }
+
+    private static int ageIndex(EntityPersister persister) {
+        return Arrays.asList(persister.getPropertyNames()).indexOf("age");
+    }
+
+    /*
+     * Nothing to drop for a transaction that didn't commit
+     */
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.uberkautilya.jpawithspringboot.cache;
+
+import java.util.List;
+
+/**
+ * Identifies a cached query result: the name of the query and the values of its parameters, in order
+ */
+public record QueryKey(String queryName, List<Object> parameters) {
+
+    public static QueryKey of(String queryName, Object... parameters) {
+        return new QueryKey(queryName, List.of(parameters));
+    }
+}
@@ -0,0 +1,98 @@
+package com.uberkautilya.jpawithspringboot.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Holds the ids returned by a query, per query name and parameters. Entities are then resolved by id, through the entity cache
+ * Keeping only ids means a cached result never holds stale entity state - only the membership and order of the result can go stale,
+ * and that is what invalidate() is for: whoever knows which results a change affects drops them, after the change commits
+ *
+ * A query that was running while an invalidation happened may have read the old state. Its result is not stored:
+ * callers take generation() before running the query and pass it to put(), which ignores the result if any invalidation happened since
+ *
+ * Bounded by employee.query-cache.max-entries, entries expire after employee.query-cache.ttl
+ */
+@Component
+public class QueryResultCache {
+    private final Map<QueryKey, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    public QueryResultCache(@Value("${employee.query-cache.max-entries:1000}") int maxEntries,
+                            @Value("${employee.query-cache.ttl:10m}") Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public List<Object> get(QueryKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.createdNanos >= ttlNanos) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.ids;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * @param generation the value of generation() taken before the query was run
+     */
+    public void put(QueryKey key, List<?> ids, long generation) {
+        if (maxEntries < 1) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evict();
+        }
+        entries.put(key, new Entry(List.copyOf(ids), System.nanoTime()));
+        /*
+         * An invalidation may have run between the generation check and the put - then the entry just put could be stale
+         */
+        if (this.generation.get() != generation) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidate(Predicate<QueryKey> affected) {
+        generation.incrementAndGet();
+        entries.keySet().removeIf(affected);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> now - entry.createdNanos >= ttlNanos);
+        Iterator<QueryKey> keys = entries.keySet().iterator();
+        while (entries.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private record Entry(List<Object> ids, long createdNanos) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.uberkautilya.jpawithspringboot.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the hit and miss counts of the second level cache regions out of the Hibernate statistics, to tune the bounds in ehcache.xml
+ * Counts are only kept with second-level-cache.statistics.enabled=true, which turns hibernate.generate_statistics on
+ */
+@Component
+public class SecondLevelCacheStatistics {
+    @PersistenceUnit
+    EntityManagerFactory emFactory;
+
+    public Map<String, CacheRegionStats> snapshot() {
+        Statistics statistics = statistics();
+        Map<String, CacheRegionStats> regions = new TreeMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+            regions.put(region, new CacheRegionStats(region,
+                    regionStatistics.getHitCount(),
+                    regionStatistics.getMissCount(),
+                    regionStatistics.getPutCount()));
+        }
+        return regions;
+    }
+
+    public boolean isEnabled() {
+        return statistics().isStatisticsEnabled();
+    }
+
+    public void clear() {
+        statistics().clear();
+    }
+
+    private Statistics statistics() {
+        return emFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
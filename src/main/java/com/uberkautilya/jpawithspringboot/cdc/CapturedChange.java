@@ -0,0 +1,9 @@
+package com.uberkautilya.jpawithspringboot.cdc;
+
+import java.util.List;
+
+/**
+ * A change collected during a transaction, before it is appended to the ChangeLog - which gives it its offset and commit time
+ */
+public record CapturedChange(ChangeType type, String entity, String id, List<String> attributes) {
+}
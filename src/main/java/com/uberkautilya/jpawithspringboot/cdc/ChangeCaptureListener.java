@@ -0,0 +1,160 @@
+package com.uberkautilya.jpawithspringboot.cdc;
+
+import com.uberkautilya.jpawithspringboot.repository.EmployeeBulkChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Captures the inserts, updates and deletes of the cdc.entities - Employee and PayStub - into the ChangeLog
+ *
+ * Hibernate's post insert/update/delete events come at the flush, as the statements run. The changes are collected per session -
+ * a session is one transaction here - and on the first one an after transaction completion process is registered, as the
+ * EmailGroupMembershipIndex does. Once the transaction is over it appends them in one batch if it committed, drops them if not:
+ * a rolled back transaction leaves nothing in the log. The commit is not held up by anything but the append, a memory copy.
+ * An append that fails is logged, not thrown - the transaction has committed already
+ *
+ * Bulk statements bypass these events. The EmployeeBulkChangeEvent of the bulk updates and the offboarding is captured after
+ * its commit instead - one change per employee the statement wrote, or one with a null id when it selected employees by criteria.
+ * An offboarding is a DELETE per pay stub it removed, then one per employee, as one transaction.
+ * The pay stubs the PayStubArchiveService moves to the archive are not changes of the payroll and are not captured
+ */
+@Component
+@ConditionalOnProperty(name = "cdc.enabled", havingValue = "true")
+public class ChangeCaptureListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeCaptureListener.class);
+
+    @PersistenceUnit
+    EntityManagerFactory emFactory;
+    @Autowired
+    ChangeLog changeLog;
+
+    private final Set<String> entities;
+    private final Map<SharedSessionContractImplementor, List<CapturedChange>> pending = new ConcurrentHashMap<>();
+
+    public ChangeCaptureListener(@Value("${cdc.entities:Employee,PayStub}") Set<String> entities) {
+        this.entities = Set.copyOf(entities);
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        capture(event.getSession(), event.getPersister(), ChangeType.INSERT, event.getId(), List.of());
+    }
+
+    /**
+     * The attributes are those found dirty. None when Hibernate did not compare - an update of a detached entity without its
+     * previous state: then any of them may have changed
+     */
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        List<String> attributes = new ArrayList<>();
+        if (event.getDirtyProperties() != null) {
+            String[] names = event.getPersister().getPropertyNames();
+            for (int property : event.getDirtyProperties()) {
+                attributes.add(names[property]);
+            }
+        }
+        capture(event.getSession(), event.getPersister(), ChangeType.UPDATE, event.getId(), attributes);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        capture(event.getSession(), event.getPersister(), ChangeType.DELETE, event.getId(), List.of());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    @TransactionalEventListener
+    public void onBulkChange(EmployeeBulkChangeEvent event) {
+        ChangeType type = event.removed() ? ChangeType.DELETE : ChangeType.UPDATE;
+        List<String> attributes = event.attributes().stream().sorted().toList();
+        List<CapturedChange> changes = new ArrayList<>();
+        if (entities.contains("PayStub")) {
+            for (Integer payStubId : event.removedPayStubIds()) {
+                changes.add(new CapturedChange(ChangeType.DELETE, "PayStub", payStubId.toString(), List.of()));
+            }
+        }
+        if (entities.contains("Employee")) {
+            if (event.ids().isEmpty()) {
+                changes.add(new CapturedChange(type, "Employee", null, attributes));
+            }
+            for (BigInteger id : event.ids()) {
+                changes.add(new CapturedChange(type, "Employee", id.toString(), attributes));
+            }
+        }
+        if (!changes.isEmpty()) {
+            append(changes);
+        }
+    }
+
+    private void append(List<CapturedChange> changes) {
+        try {
+            changeLog.append(changes);
+        } catch (RuntimeException e) {
+            LOGGER.error("{} committed changes could not be appended to the change log, starting with {}", changes.size(), changes.get(0), e);
+        }
+    }
+
+    private void capture(EventSource session, EntityPersister persister, ChangeType type, Object id, List<String> attributes) {
+        String entity = entityName(persister);
+        if (!entities.contains(entity)) {
+            return;
+        }
+        CapturedChange change = new CapturedChange(type, entity, String.valueOf(id), List.copyOf(attributes));
+        List<CapturedChange> changes = pending.get(session);
+        if (changes == null) {
+            changes = new ArrayList<>();
+            pending.put(session, changes);
+            session.getActionQueue().registerProcess((success, completed) -> {
+                List<CapturedChange> captured = pending.remove(session);
+                if (success && captured != null) {
+                    append(captured);
+                }
+            });
+        }
+        changes.add(change);
+    }
+
+    private static String entityName(EntityPersister persister) {
+        String name = persister.getEntityName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,479 @@
+package com.uberkautilya.jpawithspringboot.cdc;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only log of the committed entity changes, which downstream systems tail instead of polling the tables
+ * The ChangeCaptureListener appends the changes of each transaction once it has committed, as one batch
+ *
+ * Every change gets the next offset - 0, 1, 2... - and offsets never change. The log is a series of segment files in cdc.log.directory,
+ * [first offset].log, each cdc.log.segment-size bytes and memory mapped: an append is a copy into the mapping, read back by the
+ * consumers from the same pages. A segment full, the next one is started at the next offset
+ * A frame is [payload length][CRC32 of the payload][payload]. The length is written last, so a frame is only there once complete.
+ * Every payload carries the commitId and the number of changes of its transaction.
+ * At startup the segments are scanned: the valid frames end at the first one that is empty, fails its checksum or is out of sequence.
+ * If the last of them doesn't complete its transaction, the log is cut back to where that transaction starts - which may be in an
+ * earlier segment - and what follows is zeroed: an append cut short by a crash is dropped as a whole, never half read
+ *
+ * The pages are written out by the OS. cdc.log.force-on-append=true forces them to disk before an append returns - then a commit
+ * is only acknowledged to the caller of the transaction once its changes survive a power loss, at the cost of a sync per commit
+ * Reads share a lock that appends hold exclusively - both are short copies. A sparse index of every INDEX_INTERVAL-th frame position
+ * per segment, kept in memory, bounds the frames scanned to find an offset
+ * Only there with cdc.enabled=true. Nothing is removed from the log on its own: whoever tails it calls deleteBefore() with the
+ * offset every consumer has read up to, or the segments accumulate
+ */
+@Component
+@ConditionalOnProperty(name = "cdc.enabled", havingValue = "true")
+public class ChangeLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeLog.class);
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int FRAME_HEADER = 8;
+    private static final int INDEX_INTERVAL = 64;
+    private static final ChangeType[] TYPES = ChangeType.values();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock appendedLock = new ReentrantLock();
+    private final Condition appended = appendedLock.newCondition();
+    private volatile long endOffset;
+
+    public ChangeLog(@Value("${cdc.log.directory:change-log}") Path directory,
+                     @Value("${cdc.log.segment-size:64MB}") DataSize segmentSize,
+                     @Value("${cdc.log.force-on-append:false}") boolean forceOnAppend) {
+        if (segmentSize.toBytes() < 1024 || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("cdc.log.segment-size must be between 1KB and 2GB, was " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.forceOnAppend = forceOnAppend;
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the change log in " + directory.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * The offset the next change will get - a consumer that has read everything is at this offset
+     */
+    public long endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * The oldest offset still in the log - 0 unless segments were deleted
+     */
+    public long firstOffset() {
+        Map.Entry<Long, Segment> first = segments.firstEntry();
+        return first == null ? endOffset : first.getKey();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public ChangeLogCursor cursor(long fromOffset) {
+        return new ChangeLogCursor(this, fromOffset);
+    }
+
+    /**
+     * Appends the changes of one transaction, contiguously
+     * @return their commitId - the offset of the first - or -1 when there are none
+     */
+    public long append(List<CapturedChange> changes) {
+        if (changes.isEmpty()) {
+            return -1;
+        }
+        long committedAt = System.currentTimeMillis();
+        lock.writeLock().lock();
+        Segment first = segments.lastEntry().getValue();
+        int firstPosition = first.writePosition;
+        int firstRecords = first.records;
+        try {
+            long commitId = endOffset;
+            long offset = commitId;
+            List<Segment> written = new ArrayList<>(1);
+            for (CapturedChange change : changes) {
+                byte[] payload = encode(offset, commitId, changes.size(), committedAt, change);
+                if (FRAME_HEADER + payload.length > segmentSize) {
+                    throw new IllegalArgumentException("A change of " + payload.length + " bytes does not fit a segment");
+                }
+                Segment segment = segments.lastEntry().getValue();
+                if (segment.writePosition + FRAME_HEADER + payload.length > segment.buffer.capacity()) {
+                    segment = newSegment(offset);
+                }
+                segment.write(payload);
+                if (written.isEmpty() || written.get(written.size() - 1) != segment) {
+                    written.add(segment);
+                }
+                offset++;
+            }
+            if (forceOnAppend) {
+                written.forEach(segment -> segment.buffer.force());
+            }
+            endOffset = offset;
+            return commitId;
+        } catch (IOException | RuntimeException e) {
+            rollback(first, firstPosition, firstRecords);
+            if (e instanceof IOException io) {
+                throw new UncheckedIOException("Could not append to the change log", io);
+            }
+            throw (RuntimeException) e;
+        } finally {
+            lock.writeLock().unlock();
+            signalAppended();
+        }
+    }
+
+    /**
+     * Takes back the frames of an append that failed part way - none of it is to be read, or recovered at the next start
+     * Also used at startup, to cut the frames of a transaction whose append a crash cut short
+     */
+    private void rollback(Segment first, int position, int records) {
+        for (Segment segment : List.copyOf(segments.tailMap(first.baseOffset, false).values())) {
+            segments.remove(segment.baseOffset);
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete change log segment {}", segment.file, e);
+            }
+        }
+        first.buffer.put(position, new byte[first.writePosition - position]);
+        first.writePosition = position;
+        first.records = records;
+    }
+
+    /**
+     * @return at most maxRecords changes from fromOffset on, fewer - or none - when the log ends before
+     */
+    public List<ChangeRecord> read(long fromOffset, int maxRecords) {
+        lock.readLock().lock();
+        try {
+            long end = endOffset;
+            if (fromOffset < firstOffset() || fromOffset > end) {
+                throw new IllegalArgumentException("Offset " + fromOffset + " is not in the change log [" + firstOffset() + ", " + end + "]");
+            }
+            List<ChangeRecord> records = new ArrayList<>((int) Math.min(maxRecords, end - fromOffset));
+            if (fromOffset == end) {
+                return records;
+            }
+            Segment segment = segments.floorEntry(fromOffset).getValue();
+            int position = segment.positionOf(fromOffset);
+            for (long offset = fromOffset; offset < end && records.size() < maxRecords; offset++) {
+                if (offset == segment.baseOffset + segment.records) {
+                    segment = segments.get(offset);
+                    position = 0;
+                }
+                int length = segment.buffer.getInt(position);
+                byte[] payload = new byte[length];
+                segment.buffer.get(position + FRAME_HEADER, payload);
+                records.add(decode(payload));
+                position += FRAME_HEADER + length;
+            }
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the change log", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until there is a change at offset, or the timeout runs out
+     * @return whether there is one
+     */
+    public boolean awaitOffset(long offset, Duration timeout) throws InterruptedException {
+        long remaining = timeout.toNanos();
+        appendedLock.lock();
+        try {
+            while (endOffset <= offset) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = appended.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            appendedLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments all of whose changes come before offset - never the one being appended to
+     * The mappings go with the segment objects, once collected
+     * @return the number of segments deleted
+     */
+    public int deleteBefore(long offset) {
+        lock.writeLock().lock();
+        try {
+            int deleted = 0;
+            for (Segment segment : List.copyOf(segments.values())) {
+                if (segment == segments.lastEntry().getValue() || segment.baseOffset + segment.records > offset) {
+                    break;
+                }
+                segments.remove(segment.baseOffset);
+                segment.channel.close();
+                Files.delete(segment.file);
+                deleted++;
+            }
+            return deleted;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete change log segments", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void signalAppended() {
+        appendedLock.lock();
+        try {
+            appended.signalAll();
+        } finally {
+            appendedLock.unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        if (files.isEmpty()) {
+            newSegment(0);
+            return;
+        }
+        long expected = files.firstKey();
+        for (Map.Entry<Long, Path> entry : files.entrySet()) {
+            if (entry.getKey() != expected) {
+                throw new IllegalStateException("Change log segment " + entry.getValue() + " does not follow the previous one, which ends at "
+                        + expected);
+            }
+            FileChannel channel = FileChannel.open(entry.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(entry.getKey(), entry.getValue(), channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            segment.recover();
+            segments.put(segment.baseOffset, segment);
+            expected = segment.baseOffset + segment.records;
+        }
+        long committed = committedEnd(expected);
+        if (committed < expected) {
+            Segment segment = segments.floorEntry(committed).getValue();
+            LOGGER.warn("Change log: dropping offsets {} to {}, the changes of a transaction whose append did not complete", committed,
+                    expected - 1);
+            rollback(segment, segment.positionOf(committed), (int) (committed - segment.baseOffset));
+        }
+        segments.lastEntry().getValue().zeroTail();
+        endOffset = committed;
+        LOGGER.info("Change log opened in {}: offsets {} to {} in {} segments", directory.toAbsolutePath(), firstOffset(), endOffset,
+                segments.size());
+    }
+
+    /**
+     * @return end, or the commitId of the last transaction if its last change is not there
+     */
+    private long committedEnd(long end) throws IOException {
+        if (end == segments.firstKey()) {
+            return end;
+        }
+        Segment segment = segments.floorEntry(end - 1).getValue();
+        int position = segment.positionOf(end - 1);
+        byte[] payload = new byte[segment.buffer.getInt(position)];
+        segment.buffer.get(position + FRAME_HEADER, payload);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long offset = in.readLong();
+        long commitId = in.readLong();
+        int commitSize = in.readInt();
+        return offset == commitId + commitSize - 1 ? end : commitId;
+    }
+
+    private Segment newSegment(long baseOffset) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(baseOffset, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    private static byte[] encode(long offset, long commitId, int commitSize, long committedAt, CapturedChange change) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(offset);
+        out.writeLong(commitId);
+        out.writeInt(commitSize);
+        out.writeLong(committedAt);
+        out.writeByte(change.type().ordinal());
+        out.writeUTF(change.entity());
+        out.writeBoolean(change.id() != null);
+        if (change.id() != null) {
+            out.writeUTF(change.id());
+        }
+        out.writeShort(change.attributes().size());
+        for (String attribute : change.attributes()) {
+            out.writeUTF(attribute);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ChangeRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long offset = in.readLong();
+        long commitId = in.readLong();
+        in.readInt();
+        Instant committedAt = Instant.ofEpochMilli(in.readLong());
+        ChangeType type = TYPES[in.readByte()];
+        String entity = in.readUTF();
+        String id = in.readBoolean() ? in.readUTF() : null;
+        String[] attributes = new String[in.readShort()];
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = in.readUTF();
+        }
+        return new ChangeRecord(offset, commitId, committedAt, type, entity, id, List.of(attributes));
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+        final long baseOffset;
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        int records;
+        int[] index = new int[16];
+
+        Segment(long baseOffset, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void write(byte[] payload) {
+            buffer.putInt(writePosition + 4, checksum(payload));
+            buffer.put(writePosition + FRAME_HEADER, payload);
+            buffer.putInt(writePosition, payload.length);
+            added(FRAME_HEADER + payload.length);
+        }
+
+        private void added(int frameLength) {
+            if (records % INDEX_INTERVAL == 0) {
+                int slot = records / INDEX_INTERVAL;
+                if (slot == index.length) {
+                    index = Arrays.copyOf(index, slot * 2);
+                }
+                index[slot] = writePosition;
+            }
+            records++;
+            writePosition += frameLength;
+        }
+
+        int positionOf(long offset) {
+            int relative = (int) (offset - baseOffset);
+            int position = index[relative / INDEX_INTERVAL];
+            for (int skip = relative % INDEX_INTERVAL; skip > 0; skip--) {
+                position += FRAME_HEADER + buffer.getInt(position);
+            }
+            return position;
+        }
+
+        /**
+         * Indexes the valid frames
+         */
+        void recover() throws IOException {
+            int capacity = buffer.capacity();
+            while (writePosition + FRAME_HEADER <= capacity) {
+                int length = buffer.getInt(writePosition);
+                if (length <= 0 || writePosition + FRAME_HEADER + length > capacity) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(writePosition + FRAME_HEADER, payload);
+                if (checksum(payload) != buffer.getInt(writePosition + 4)
+                        || new DataInputStream(new ByteArrayInputStream(payload)).readLong() != baseOffset + records) {
+                    break;
+                }
+                added(FRAME_HEADER + length);
+            }
+        }
+
+        /**
+         * For the appends to come, in the last segment. The frames of an append cut short are contiguous, and followed by pages
+         * never written: zeroes page by page from the end of the valid frames up to the first page that is zero already - instead of
+         * the whole segment, most of it never touched
+         */
+        private void zeroTail() {
+            int capacity = buffer.capacity();
+            byte[] page = new byte[4096];
+            int position = writePosition;
+            while (position < capacity) {
+                int length = Math.min(page.length - position % page.length, capacity - position);
+                buffer.get(position, page, 0, length);
+                boolean zero = true;
+                for (int i = 0; i < length && zero; i++) {
+                    zero = page[i] == 0;
+                }
+                if (zero && position > writePosition) {
+                    return;
+                }
+                buffer.put(position, new byte[length]);
+                position += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.uberkautilya.jpawithspringboot.cdc;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A consumer's position in the ChangeLog, for reading it incrementally: each poll() returns the changes after the previous one
+ * The consumer keeps position() where it keeps its own state - with the result of the changes applied, ideally - and opens
+ * its next cursor there after a restart. Not thread safe: one cursor per consumer thread
+ */
+public class ChangeLogCursor {
+    private final ChangeLog changeLog;
+    private long position;
+
+    ChangeLogCursor(ChangeLog changeLog, long position) {
+        this.changeLog = changeLog;
+        this.position = position;
+    }
+
+    /**
+     * The offset of the next change to read
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * @return the next changes, at most maxRecords - none if nothing was appended since the last poll
+     */
+    public List<ChangeRecord> poll(int maxRecords) {
+        List<ChangeRecord> records = changeLog.read(position, maxRecords);
+        position += records.size();
+        return records;
+    }
+
+    /**
+     * Like poll(maxRecords), waiting up to timeout for a change when there is none yet
+     */
+    public List<ChangeRecord> poll(int maxRecords, Duration timeout) throws InterruptedException {
+        if (changeLog.awaitOffset(position, timeout)) {
+            return poll(maxRecords);
+        }
+        return List.of();
+    }
+
+    /**
+     * How many changes the consumer is behind the end of the log
+     */
+    public long lag() {
+        return changeLog.endOffset() - position;
+    }
+}
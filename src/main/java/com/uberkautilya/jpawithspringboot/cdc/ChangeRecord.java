@@ -0,0 +1,15 @@
+package com.uberkautilya.jpawithspringboot.cdc;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One committed change to an entity, as read back from the ChangeLog
+ * offset is its position in the log. The changes of a transaction are contiguous and share a commitId - the offset of the first one
+ * entity is the entity name - "Employee", "PayStub" - and id the identifier as a string. id is null for a bulk statement that
+ * selected its rows by criteria: the rows changed are not known, the consumer has to read the table again
+ * attributes are the ones an UPDATE wrote, empty for an INSERT or DELETE
+ */
+public record ChangeRecord(long offset, long commitId, Instant committedAt, ChangeType type, String entity, String id,
+                           List<String> attributes) {
+}
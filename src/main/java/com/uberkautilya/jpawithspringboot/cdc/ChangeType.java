@@ -0,0 +1,3 @@
+package com.uberkautilya.jpawithspringboot.cdc;
+
+public enum ChangeType {INSERT, UPDATE, DELETE}
@@ -0,0 +1,129 @@
+package com.uberkautilya.jpawithspringboot.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends the statements of read-only transactions - @Transactional(readOnly = true) - to a replica, everything else to the primary
+ *
+ * The transaction manager takes its connection before it marks the transaction read-only, so the connection handed out here is
+ * a lazy one (LazyConnectionDataSourceProxy): the real connection is only picked when the first statement runs,
+ * and by then it is known whether the transaction is read-only
+ * Replicas are taken in turn. One that fails to give a connection is skipped for retryAfter, and with no replica available
+ * the primary serves the reads. Read-only transactions following a write in the same ReadYourWritesContext go to the primary
+ * Connections used outside any transaction - e.g. by Hibernate at startup - always come from the primary
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+    private final Router router;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, long retryAfterNanos) {
+        this.router = new Router(primary, List.copyOf(replicas), retryAfterNanos);
+        setTargetDataSource(router);
+        // Given up front so that no connection is needed to find them out when the bean is created
+        setDefaultAutoCommit(true);
+        setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        afterPropertiesSet();
+    }
+
+    public int getReplicaCount() {
+        return router.replicas.size();
+    }
+
+    /**
+     * Closes the primary and replica pools
+     */
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : router.replicas) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (router.primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static class Router extends AbstractDataSource {
+        private static final Logger LOGGER = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+        private final DataSource primary;
+        private final List<DataSource> replicas;
+        private final long retryAfterNanos;
+        private final AtomicInteger next = new AtomicInteger();
+        /**
+         * Per replica, the System.nanoTime() before which it is not tried again. 0 when it is available
+         */
+        private final AtomicLongArray downUntil;
+
+        Router(DataSource primary, List<DataSource> replicas, long retryAfterNanos) {
+            this.primary = primary;
+            this.replicas = replicas;
+            this.retryAfterNanos = retryAfterNanos;
+            this.downUntil = new AtomicLongArray(replicas.size());
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route(DataSource::getConnection);
+        }
+
+        /**
+         * Asks the pool the connection is routed to for one with these credentials. Whether it can give one is up to the pool:
+         * a Hikari pool can't, it has a single user
+         */
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return route(dataSource -> dataSource.getConnection(username, password));
+        }
+
+        private Connection route(ConnectionSource source) throws SQLException {
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                    ReadYourWritesContext.markWrite();
+                }
+                return source.connect(primary);
+            }
+            if (ReadYourWritesContext.isPinnedToPrimary()) {
+                return source.connect(primary);
+            }
+            int count = replicas.size();
+            int start = Math.floorMod(next.getAndIncrement(), Math.max(count, 1));
+            for (int i = 0; i < count; i++) {
+                int index = (start + i) % count;
+                long until = downUntil.get(index);
+                if (until != 0 && System.nanoTime() - until < 0) {
+                    continue;
+                }
+                try {
+                    Connection connection = source.connect(replicas.get(index));
+                    downUntil.set(index, 0);
+                    return connection;
+                } catch (SQLFeatureNotSupportedException e) {
+                    // The replica is up, it only cannot do what was asked
+                    throw e;
+                } catch (SQLException e) {
+                    downUntil.set(index, System.nanoTime() + retryAfterNanos);
+                    LOGGER.warn("Replica {} is unavailable, skipping it for {} ms: {}", index, retryAfterNanos / 1_000_000, e.getMessage());
+                }
+            }
+            return source.connect(primary);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+}
@@ -0,0 +1,51 @@
+package com.uberkautilya.jpawithspringboot.datasource;
+
+/**
+ * Scope - typically one request - within which reads follow writes to the primary
+ * Replicas lag behind the primary. Once a read-write transaction has run inside the scope, the read-only transactions
+ * that follow in the same scope are sent to the primary too, so they see what was just written
+ * <pre>
+ * try (ReadYourWritesContext.Scope scope = ReadYourWritesContext.open()) {
+ *     transactionalDemo.updateEmployee(employee);
+ *     transactionalDemo.readEmployeeAndAccessCards(); // reads from the primary
+ * }
+ * </pre>
+ * In a web application this would be opened by a filter around each request. Outside any scope nothing is remembered,
+ * so a pooled thread never carries one request's writes into the next
+ */
+public final class ReadYourWritesContext {
+    private static final ThreadLocal<boolean[]> WROTE = new ThreadLocal<>();
+    private static final Scope NESTED = () -> {
+    };
+
+    private ReadYourWritesContext() {
+    }
+
+    /**
+     * Opens a scope on the current thread. Opening one inside another joins the outer scope
+     */
+    public static Scope open() {
+        if (WROTE.get() != null) {
+            return NESTED;
+        }
+        WROTE.set(new boolean[1]);
+        return WROTE::remove;
+    }
+
+    static void markWrite() {
+        boolean[] wrote = WROTE.get();
+        if (wrote != null) {
+            wrote[0] = true;
+        }
+    }
+
+    public static boolean isPinnedToPrimary() {
+        boolean[] wrote = WROTE.get();
+        return wrote != null && wrote[0];
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,64 @@
+package com.uberkautilya.jpawithspringboot.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * With datasource-routing.enabled=true the DataSource is a ReadWriteRoutingDataSource in place of the single pool Spring Boot creates
+ * The primary is still configured by spring.datasource.*, the replicas are listed as datasource-routing.replicas[n].url
+ * Every pool - primary and replicas - is given the spring.datasource.hikari.* settings, as the single pool would be
+ * Replica pools give up on a connection after datasource-routing.connection-timeout, so that a replica that is down
+ * fails fast and its reads move on to the next replica or the primary
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource-routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaRoutingProperties.class)
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    public ReadWriteRoutingDataSource dataSource(DataSourceProperties dataSourceProperties, ReplicaRoutingProperties routing,
+                                                 Environment environment) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        bindHikariProperties(binder, primary);
+        primary.setPoolName("primary");
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReplicaRoutingProperties.Replica replica : routing.replicas()) {
+            HikariDataSource pool = new HikariDataSource();
+            bindHikariProperties(binder, pool);
+            pool.setPoolName("replica-" + replicas.size());
+            pool.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            pool.setJdbcUrl(replica.url());
+            pool.setUsername(replica.username() != null ? replica.username() : dataSourceProperties.determineUsername());
+            pool.setPassword(replica.password() != null ? replica.password() : dataSourceProperties.determinePassword());
+            pool.setConnectionTimeout(routing.connectionTimeout().toMillis());
+            // Start without a connection, a replica that is down at startup is then skipped like one that goes down later
+            pool.setInitializationFailTimeout(-1);
+            if (routing.maximumPoolSize() != null) {
+                pool.setMaximumPoolSize(routing.maximumPoolSize());
+            }
+            pool.setReadOnly(true);
+            replicas.add(pool);
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas, routing.retryAfter().toNanos());
+    }
+
+    /**
+     * What @ConfigurationProperties("spring.datasource.hikari") does for the pool Spring Boot creates. The settings of the
+     * replica itself - url, credentials, timeouts - are set afterwards and win
+     */
+    private static void bindHikariProperties(Binder binder, HikariDataSource pool) {
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+    }
+}
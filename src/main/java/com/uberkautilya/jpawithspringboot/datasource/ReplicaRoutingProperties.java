@@ -0,0 +1,23 @@
+package com.uberkautilya.jpawithspringboot.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * datasource-routing.* settings - see ReplicaRoutingConfiguration
+ * A replica without a username or password uses those of spring.datasource
+ * Without a maximumPoolSize the replica pools have the spring.datasource.hikari.maximum-pool-size of the primary
+ */
+@ConfigurationProperties("datasource-routing")
+public record ReplicaRoutingProperties(boolean enabled,
+                                       @DefaultValue List<Replica> replicas,
+                                       @DefaultValue("30s") Duration retryAfter,
+                                       @DefaultValue("2s") Duration connectionTimeout,
+                                       Integer maximumPoolSize) {
+
+    public record Replica(String url, String username, String password) {
+    }
+}
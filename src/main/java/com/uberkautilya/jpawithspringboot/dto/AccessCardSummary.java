@@ -0,0 +1,9 @@
+package com.uberkautilya.jpawithspringboot.dto;
+
+import java.util.Date;
+
+/**
+ * Read-only view of an AccessCard - see EmployeeSummary
+ */
+public record AccessCardSummary(int id, Date issueDate, boolean active, String firmwareVersion) {
+}
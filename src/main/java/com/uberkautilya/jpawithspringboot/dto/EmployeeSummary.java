@@ -0,0 +1,12 @@
+package com.uberkautilya.jpawithspringboot.dto;
+
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+
+import java.math.BigInteger;
+
+/**
+ * Read-only view of an Employee, selected column by column with a JPQL constructor expression - select new ...EmployeeSummary(...)
+ * Not an entity: nothing is added to the persistence context, no snapshot is kept for dirty checking, no association is loaded
+ */
+public record EmployeeSummary(BigInteger id, String name, int age, EmployeeType type) {
+}
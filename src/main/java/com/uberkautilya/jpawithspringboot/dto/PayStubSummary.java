@@ -0,0 +1,11 @@
+package com.uberkautilya.jpawithspringboot.dto;
+
+import java.math.BigInteger;
+import java.util.Date;
+
+/**
+ * Read-only view of a PayStub - see EmployeeSummary
+ * Only the id of the employee is carried, read from the emp_id foreign key without joining EMPLOYEE_DATA
+ */
+public record PayStubSummary(int id, BigInteger employeeId, Date payPeriodStart, Date payPeriodEnd, float salary) {
+}
@@ -0,0 +1,8 @@
+package com.uberkautilya.jpawithspringboot.dto;
+
+/**
+ * One row of a payroll rollup computed by the DB: the pay stubs of a group and the sum of their salaries
+ * key is what the rows are grouped by - a pay period start Date, an EmployeeType or an email group name
+ */
+public record PayrollTotal<K>(K key, long payStubs, double totalSalary) {
+}
@@ -1,13 +1,25 @@
 package com.uberkautilya.jpawithspringboot.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.util.Date;
 
+/**
+ * @Cacheable with @Cache keeps loaded AccessCards in the second level cache, shared by all sessions - see ehcache.xml for its bounds
+ * READ_WRITE: an update locks the cached entry until the transaction commits, then replaces it - readers never see uncommitted state
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class AccessCard {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "access_card_id")
+    @GenericGenerator(name = "access_card_id", strategy = "com.uberkautilya.jpawithspringboot.id.StripedPooledLoGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "access_card_seq"))
     private int id;
     private Date issueDate;
     private boolean isActive;
@@ -1,22 +1,34 @@
 package com.uberkautilya.jpawithspringboot.entity;
 
 import jakarta.persistence.*;
-import java.util.ArrayList;
-import java.util.List;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import java.util.HashSet;
+import java.util.Set;
 
+/**
+ * Second level cached like AccessCard. Groups hardly ever change while every employee with its groups refers to them
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class EmailGroup {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "email_group_id")
+    @GenericGenerator(name = "email_group_id", strategy = "com.uberkautilya.jpawithspringboot.id.StripedPooledLoGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "email_group_seq"))
     private int id;
     private String name;
     /**
      * If you need to track the relationship in a single join table, need mappedBy in either of the 2 classes - EmailGroup or Employee
      * The below annotation shows that each of the Employee objects has a field emailGroupList which tracks it's email groups
      * An email group is likely to have many employees. Hence fetching employees via the default LAZY fetchType
+     * A Set like its owning side. For the size of a group or members across groups, see EmployeeMembershipRepository
      */
     @ManyToMany(mappedBy = "emailGroupList", fetch = FetchType.LAZY)
-    private List<Employee> employeeList = new ArrayList<>();
+    private Set<Employee> employeeList = new HashSet<>();
 
     public EmailGroup() {
     }
@@ -25,11 +37,11 @@ public class EmailGroup {
         this.name = name;
     }
 
-    public List<Employee> getEmployeeList() {
+    public Set<Employee> getEmployeeList() {
         return employeeList;
     }
 
-    public void setEmployeeList(List<Employee> employeeList) {
+    public void setEmployeeList(Set<Employee> employeeList) {
         this.employeeList = employeeList;
     }
 
@@ -1,22 +1,48 @@
 package com.uberkautilya.jpawithspringboot.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @Entity tells the JPA that it needs to make the ORM for it - a concern for it
  * @Table notifies it as a table, name being an optional attribute
  * Other options like schema, catalog(equivalent to schema in certain DBs)
  * @NamedQuery allows defining certain often repeated queries, called using its name later
+ * The "keyset" variants page through "emp name asc" by seeking past the (name, id) of the last row read - see EmployeeKeysetRepository
+ * @Index on (emp_name, id) lets the DB jump straight to that position, which is why deep pages cost the same as the first
+ * The seek is "name >= :name and (name > :name or id > :id)": the first term is a range the index can start the scan at, the or alone isn't
+ * @Cacheable with @Cache keeps loaded employees in the second level cache - the cached "emp name asc" results are resolved through it
+ * @NamedEntityGraph names a set of associations to be fetched together with the entity - a fetch plan. See EmployeeFetchPlan
+ * @DynamicUpdate makes Hibernate write only the columns that changed, instead of every column, in the UPDATE of a managed employee
  */
 
 @Entity
-@Table(name = "EMPLOYEE_DATA")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "EMPLOYEE_DATA", indexes = @Index(name = "IDX_EMPLOYEE_NAME_ID", columnList = "emp_name, id"))
 @NamedQuery(query = "select e from Employee e where e.age >= :minAge order by e.name", name = "emp name asc")
+@NamedQuery(query = "select e.id from Employee e where e.age >= :minAge order by e.name", name = "emp ids name asc")
+@NamedQuery(query = "select e from Employee e where e.age >= :minAge order by e.name nulls first, e.id", name = "emp name asc keyset first")
+@NamedQuery(query = "select e from Employee e where e.age >= :minAge and e.name >= :name and (e.name > :name or e.id > :id) " +
+        "order by e.name nulls first, e.id", name = "emp name asc keyset after")
+@NamedQuery(query = "select e from Employee e where e.age >= :minAge and (e.name is not null or e.id > :id) " +
+        "order by e.name nulls first, e.id", name = "emp name asc keyset after null name")
+@NamedEntityGraph(name = "Employee.summary")
+@NamedEntityGraph(name = "Employee.withCard", attributeNodes = @NamedAttributeNode("accessCard"))
+@NamedEntityGraph(name = "Employee.withGroups", attributeNodes = @NamedAttributeNode("emailGroupList"))
+@NamedEntityGraph(name = "Employee.full", attributeNodes = {@NamedAttributeNode("accessCard"), @NamedAttributeNode("emailGroupList")})
 public class Employee {
     /**
      * @Id is used to specify the primary key column
@@ -27,11 +53,24 @@ public class Employee {
      * GenerationType.SEQUENCE maintains a separate object called sequence that the table maintains
      * GenerationType.TABLE creates a separate table to manage the unique values - some DBs allow sequences while others don't.
      * Typically, let JPA decide with GenerationType.AUTO
+     * @GenericGenerator plugs in a custom generator. StripedPooledLoGenerator reserves a block of ids per thread from the sequence,
+     * so most inserts need no sequence call at all. The block size is set per entity with app.id.block-size.* in application.properties
+     * employee_seq is the sequence @GeneratedValue(SEQUENCE) used - named after the entity - with its increment raised to that block size
      */
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(generator = "employee_id")
+    @GenericGenerator(name = "employee_id", strategy = "com.uberkautilya.jpawithspringboot.id.StripedPooledLoGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "employee_seq"))
     private BigInteger id;
+    /**
+     * @Version turns on optimistic locking: every UPDATE checks the version it read and increments it - "where id=? and version=?"
+     * If another transaction wrote the row in between, no row matches and the update fails with an OptimisticLockException
+     * instead of silently overwriting that write. TransactionalDemo.renameEmployee() retries such a write on fresh state
+     * Hibernate sets and increments it - it is never set by hand. Existing schemas need the column - see db/upgrade-existing-schema.sql
+     */
+    @Version
+    private long version;
 
     /**
      * @Column can override default column mapping, though it is optional
@@ -72,8 +111,10 @@ public class Employee {
 
     /**
      * FetchType.EAGER is the default behavior. When LAZY, JPA fetches the accessCard only when it is explicitly used in the code
+     * LAZY here, as EAGER fires a query per employee for callers who never look at the card. Callers who do, pick a fetch plan
+     * that includes it - Employee.withCard or Employee.full - and get it in the same query
      */
-    @OneToOne(fetch = FetchType.EAGER)
+    @OneToOne(fetch = FetchType.LAZY)
     private AccessCard accessCard;
 
     /**
@@ -81,6 +122,9 @@ public class Employee {
      * Default behavior of fetchType is LAZY by default
      * Initialization has been done to support the method addPayStub()
      * cascade = CascadeType.REMOVE ensures that when an Employee is removed, the associated payslips are also removed
+     * It does so by loading them and deleting them one at a time - EmployeeOffboardingService removes employees in bulk without it
+     * Only the pay stubs still in the PAY_STUB table: the last paystub.archive.hot-periods months once the PayStubArchiveService
+     * has run. The whole history is PayStubRepository.findSummariesByEmployeeId()
      */
     @OneToMany(mappedBy = "employee", cascade = CascadeType.REMOVE)
     private List<PayStub> payStubList = new ArrayList<>();
@@ -89,20 +133,27 @@ public class Employee {
      * To specify the relationship described by employeeList variable on the EmailGroup is the same, mark it as the same relation with mappedBy
      * The class which doesn't have mappedBy property is the owning side of the relationship - on which @JoinTable can be applied
      * If mappedBy is not provided in either class, two tables get created by JPA
-     * An Employee is likely to have few EmailGroup as against it's corollary. Hence the default LAZY mode is overridden her with EAGER
+     * An Employee is likely to have few EmailGroup as against it's corollary. Still, the default LAZY is kept: when EAGER, listing employees
+     * loads the groups with a query per employee. The Employee.withGroups and Employee.full fetch plans join them in when needed
      * joinColumns property can be used to customize the mapping table created. inverseJoinColumns specify the other foreign keys in the join table
+     * @Cache on a collection caches the ids of its elements. The groups themselves then come from the EmailGroup cache
+     * A Set rather than a List: Hibernate maps a List without @OrderColumn as a bag, which has no key for a single row -
+     * removing one group deletes all the EMAIL_GROUP_MAPPING rows of the employee and inserts the rest back.
+     * A Set maps to a table keyed on both ids, so adding or removing a group is a single row insert or delete
+     * The EmailGroupMembershipIndex keeps the members of every group in memory for set queries across groups
      */
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(name = "EMAIL_GROUP_MAPPING",
             joinColumns = @JoinColumn(name = "EMPLOYEE_ID"),
             inverseJoinColumns = @JoinColumn(name = "EMAIL_GROUP_ID"))
-    private List<EmailGroup> emailGroupList = new ArrayList<>();
+    private Set<EmailGroup> emailGroupList = new HashSet<>();
 
-    public List<EmailGroup> getEmailGroupList() {
+    public Set<EmailGroup> getEmailGroupList() {
         return emailGroupList;
     }
 
-    public void setEmailGroupList(List<EmailGroup> emailGroupList) {
+    public void setEmailGroupList(Set<EmailGroup> emailGroupList) {
         this.emailGroupList = emailGroupList;
     }
 
@@ -142,6 +193,10 @@ public class Employee {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public String getName() {
         return name;
     }
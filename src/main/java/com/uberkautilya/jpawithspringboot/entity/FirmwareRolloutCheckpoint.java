@@ -0,0 +1,103 @@
+package com.uberkautilya.jpawithspringboot.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+import java.util.Date;
+
+/**
+ * Where a firmware rollout has got to - see FirmwareRolloutService
+ * One row per rollout, keyed by its name. It is written in the transaction of every chunk, so it always matches the cards
+ * actually updated: a rollout stopped half-way resumes after lastCardId
+ */
+@Entity
+@Table(name = "FIRMWARE_ROLLOUT_CHECKPOINT")
+public class FirmwareRolloutCheckpoint {
+    @Id
+    private String name;
+    /**
+     * The versions the cards are moved from, in order and separated by commas
+     */
+    private String sourceVersions;
+    private String targetVersion;
+    /**
+     * Every card with an id up to this one has been dealt with
+     */
+    private int lastCardId;
+    private long updatedCards;
+    private int chunks;
+    private boolean completed;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+
+    public FirmwareRolloutCheckpoint() {
+    }
+
+    public FirmwareRolloutCheckpoint(String name, String sourceVersions, String targetVersion) {
+        this.name = name;
+        this.sourceVersions = sourceVersions;
+        this.targetVersion = targetVersion;
+        this.updatedAt = new Date();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSourceVersions() {
+        return sourceVersions;
+    }
+
+    public String getTargetVersion() {
+        return targetVersion;
+    }
+
+    public int getLastCardId() {
+        return lastCardId;
+    }
+
+    public long getUpdatedCards() {
+        return updatedCards;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void chunkDone(int lastCardId, int updatedCards) {
+        this.lastCardId = lastCardId;
+        this.updatedCards += updatedCards;
+        this.chunks++;
+        this.updatedAt = new Date();
+    }
+
+    public void complete() {
+        this.completed = true;
+        this.updatedAt = new Date();
+    }
+
+    @Override
+    public String toString() {
+        return "FirmwareRolloutCheckpoint{" +
+                "name='" + name + '\'' +
+                ", sourceVersions='" + sourceVersions + '\'' +
+                ", targetVersion='" + targetVersion + '\'' +
+                ", lastCardId=" + lastCardId +
+                ", updatedCards=" + updatedCards +
+                ", chunks=" + chunks +
+                ", completed=" + completed +
+                ", updatedAt=" + updatedAt +
+                '}';
+    }
+}
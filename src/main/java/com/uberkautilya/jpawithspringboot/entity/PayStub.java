@@ -1,12 +1,20 @@
 package com.uberkautilya.jpawithspringboot.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import java.util.Date;
 
+/**
+ * The index on payPeriodStart serves the PayStubArchiveService, which moves the closed periods out of the table
+ */
 @Entity
+@Table(indexes = @Index(name = "IDX_PAY_STUB_PERIOD", columnList = "payPeriodStart"))
 public class PayStub {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "pay_stub_id")
+    @GenericGenerator(name = "pay_stub_id", strategy = "com.uberkautilya.jpawithspringboot.id.StripedPooledLoGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "pay_stub_seq"))
     private int id;
     private Date payPeriodStart;
     private Date payPeriodEnd;
@@ -0,0 +1,38 @@
+package com.uberkautilya.jpawithspringboot.id;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out ids from blocks reserved in the DB, pooled-lo style: a reserved value lo stands for the block [lo, lo + blockSize)
+ * Every thread owns its current block, so handing out an id is a ThreadLocal lookup and an increment - no lock, no CAS.
+ * Only when a thread's block runs out does it go to the DB (the reserveBlock supplier) for a new one
+ * The price is gaps: ids reserved by a thread that stops inserting are never used. Ids are unique, not dense nor ordered across threads
+ */
+public class StripedIdBlockAllocator {
+    private final int blockSize;
+    /**
+     * [0] is the next id to hand out, [1] the first id past the end of the block. A long[] instead of an object keeps it allocation free
+     */
+    private final ThreadLocal<long[]> threadBlock = ThreadLocal.withInitial(() -> new long[2]);
+
+    public StripedIdBlockAllocator(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive, was " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    public long next(LongSupplier reserveBlock) {
+        long[] block = threadBlock.get();
+        if (block[0] >= block[1]) {
+            long lo = reserveBlock.getAsLong();
+            block[0] = lo;
+            block[1] = lo + blockSize;
+        }
+        return block[0]++;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+}
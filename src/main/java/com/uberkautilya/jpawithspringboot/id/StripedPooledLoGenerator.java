@@ -0,0 +1,80 @@
+package com.uberkautilya.jpawithspringboot.id;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Sequence based generator where each thread draws ids from its own block - see StripedIdBlockAllocator
+ * The built-in pooled optimizer shares one block between all sessions behind a lock. Here the sequence is only used to reserve blocks,
+ * it is exported with "increment by" equal to the block size, just like the default generator does with its allocationSize
+ *
+ * Used on an entity with:
+ * <pre>
+ * &#64;GeneratedValue(generator = "employee_id")
+ * &#64;GenericGenerator(name = "employee_id", strategy = "com.uberkautilya.jpawithspringboot.id.StripedPooledLoGenerator",
+ *         parameters = @Parameter(name = "sequence_name", value = "employee_seq"))
+ * </pre>
+ * The sequence_name has to be the one the entity used so far: [jpa entity name]_seq, the implicit name of @GeneratedValue(SEQUENCE)
+ * The block size is looked up in the hibernate settings (spring.jpa.properties.*) as app.id.block-size.[jpa entity name],
+ * then app.id.block-size.default, then falls back to 50.
+ * It must be the "increment by" of the existing sequence. Hibernate compares the two at startup, as it does for any sequence generator,
+ * and by default (hibernate.id.sequence.increment_size_mismatch_strategy=exception) fails on a mismatch. With "fix" it logs it
+ * and the sequence's increment is used as the block size instead. See db/upgrade-existing-schema.sql to change it
+ *
+ * The id field can be a BigInteger, Integer/int or Long/long. nextLong() gives the primitive value without any boxing,
+ * IdGeneratorBenchmark compares the two
+ */
+public class StripedPooledLoGenerator extends SequenceStyleGenerator {
+    public static final String BLOCK_SIZE_PREFIX = "app.id.block-size.";
+    private static final int DEFAULT_BLOCK_SIZE = 50;
+
+    private StripedIdBlockAllocator allocator;
+    private Class<?> idClass;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Map<String, Object> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        int blockSize = blockSize(settings, params.getProperty(IdentifierGenerator.JPA_ENTITY_NAME));
+        params.setProperty(OptimizableGenerator.INCREMENT_PARAM, Integer.toString(blockSize));
+        params.setProperty(OptimizableGenerator.OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+        // Adjusted by the mismatch strategy to the increment of the sequence found in the DB, when not failing on it
+        this.allocator = new StripedIdBlockAllocator(getOptimizer().getIncrementSize());
+        this.idClass = type.getReturnedClass();
+    }
+
+    private static int blockSize(Map<String, Object> settings, String entityName) {
+        Object value = settings.get(BLOCK_SIZE_PREFIX + entityName);
+        if (value == null) {
+            value = settings.get(BLOCK_SIZE_PREFIX + "default");
+        }
+        return value == null ? DEFAULT_BLOCK_SIZE : Integer.parseInt(value.toString().trim());
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        long id = nextLong(session);
+        if (idClass == BigInteger.class) {
+            return BigInteger.valueOf(id);
+        }
+        if (idClass == Integer.class || idClass == int.class) {
+            return Math.toIntExact(id);
+        }
+        return id;
+    }
+
+    public long nextLong(SharedSessionContractImplementor session) {
+        return allocator.next(() -> getDatabaseStructure().buildCallback(session).getNextValue().makeValue().longValue());
+    }
+}
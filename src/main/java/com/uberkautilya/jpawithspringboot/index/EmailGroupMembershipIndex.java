@@ -0,0 +1,313 @@
+package com.uberkautilya.jpawithspringboot.index;
+
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeBulkChangeEvent;
+import com.uberkautilya.jpawithspringboot.startup.StartupWarmup;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory copy of EMAIL_GROUP_MAPPING: for every EmailGroup id, the ids of its employees in a CompressedBitmap
+ * "In groups A and B but not C" is then two bitmap intersections and a difference instead of a join per group,
+ * and the size of a group a count of bits instead of loading EmailGroup.employeeList. See EmployeeMembershipRepository
+ *
+ * Built from the table at startup through the StartupWarmup - lookups wait for it to finish. Kept in sync from the Hibernate collection events of
+ * Employee.emailGroupList - fired at flush, when the new groups of the employee are known - which register a process
+ * applying them once the transaction has committed. Nothing changes for a rolled back one.
+ * A change of groups increments the @Version of the employee, so of two transactions changing the same employee one fails,
+ * and the index never applies them out of order
+ * Bulk deletes of employees bypass the events, they come through the EmployeeBulkChangeEvent
+ * The changes applied while a rebuild reads the table are kept, and applied again to its result before it replaces the index:
+ * each sets the whole state of an employee or a group, so those already read are applied twice to the same effect
+ *
+ * Employee ids must fit in an int - sequence generated, they have a long way to go
+ */
+@Component
+public class EmailGroupMembershipIndex implements PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+        PostCollectionRemoveEventListener, PostDeleteEventListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmailGroupMembershipIndex.class);
+
+    @PersistenceUnit
+    EntityManagerFactory emFactory;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    StartupWarmup startupWarmup;
+
+    private final Map<Integer, CompressedBitmap> membersByGroup = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<Consumer<Map<Integer, CompressedBitmap>>> changedDuringRebuild;
+    private CompletableFuture<Void> built;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        built = startupWarmup.run("email group membership index", this::rebuild);
+    }
+
+    /**
+     * Replaces the whole index with the content of EMAIL_GROUP_MAPPING
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        changedDuringRebuild = new ArrayList<>();
+        lock.writeLock().unlock();
+        try {
+            Map<Integer, CompressedBitmap> rebuilt = new HashMap<>();
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("select EMAIL_GROUP_ID, EMPLOYEE_ID from EMAIL_GROUP_MAPPING")) {
+                while (resultSet.next()) {
+                    rebuilt.computeIfAbsent(resultSet.getInt(1), groupId -> new CompressedBitmap()).add(resultSet.getInt(2));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not read EMAIL_GROUP_MAPPING", e);
+            }
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild.forEach(change -> change.accept(rebuilt));
+                membersByGroup.clear();
+                membersByGroup.putAll(rebuilt);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            LOGGER.info("Email group membership index built in {}ms: {} groups", (System.nanoTime() - start) / 1_000_000, rebuilt.size());
+        } finally {
+            lock.writeLock().lock();
+            changedDuringRebuild = null;
+            lock.writeLock().unlock();
+        }
+    }
+
+    public CompressedBitmap members(int groupId) {
+        built.join();
+        lock.readLock().lock();
+        try {
+            CompressedBitmap members = membersByGroup.get(groupId);
+            return members == null ? new CompressedBitmap() : members.copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the employees in every one of the groups. Intersected smallest group first, so the intermediate results stay small
+     */
+    public CompressedBitmap inAll(Collection<Integer> groupIds) {
+        if (groupIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one group is needed");
+        }
+        built.join();
+        lock.readLock().lock();
+        try {
+            List<CompressedBitmap> groups = new ArrayList<>(groupIds.size());
+            for (Integer groupId : groupIds) {
+                CompressedBitmap members = membersByGroup.get(groupId);
+                if (members == null) {
+                    return new CompressedBitmap();
+                }
+                groups.add(members);
+            }
+            groups.sort((left, right) -> Integer.compare(left.cardinality(), right.cardinality()));
+            CompressedBitmap result = groups.get(0).copy();
+            for (int i = 1; i < groups.size() && !result.isEmpty(); i++) {
+                result = result.and(groups.get(i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the employees in at least one of the groups
+     */
+    public CompressedBitmap inAny(Collection<Integer> groupIds) {
+        built.join();
+        lock.readLock().lock();
+        try {
+            CompressedBitmap result = new CompressedBitmap();
+            for (Integer groupId : groupIds) {
+                CompressedBitmap members = membersByGroup.get(groupId);
+                if (members != null) {
+                    result = result.or(members);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of employees of every group with at least one, by group id
+     */
+    public Map<Integer, Integer> groupSizes() {
+        built.join();
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> sizes = new LinkedHashMap<>();
+            membersByGroup.forEach((groupId, members) -> sizes.put(groupId, members.cardinality()));
+            return sizes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long sizeInBytes() {
+        built.join();
+        lock.readLock().lock();
+        try {
+            return membersByGroup.values().stream().mapToLong(CompressedBitmap::sizeInBytes).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        membershipChanged(event, false);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        membershipChanged(event, false);
+    }
+
+    /**
+     * The employee is being deleted. Or it was given another collection instance - then the removed one is no longer
+     * the employee's, and the recreate event of the new one follows
+     */
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        membershipChanged(event, true);
+    }
+
+    /*
+     * The events come for every collection, the role of which isn't always set yet - hence the comparison with the collection of the owner
+     */
+    private void membershipChanged(AbstractCollectionEvent event, boolean removed) {
+        if (!(event.getAffectedOwnerOrNull() instanceof Employee employee) || event.getCollection() != employee.getEmailGroupList()) {
+            return;
+        }
+        int employeeId = employeeId(employee.getId());
+        List<Integer> groupIds = new ArrayList<>();
+        if (!removed) {
+            for (Object emailGroup : (Collection<?>) event.getCollection()) {
+                groupIds.add(((EmailGroup) emailGroup).getId());
+            }
+        }
+        event.getSession().getActionQueue().registerProcess((success, session) -> {
+            if (success) {
+                setGroups(employeeId, groupIds);
+            }
+        });
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof EmailGroup emailGroup) {
+            int groupId = emailGroup.getId();
+            event.getSession().getActionQueue().registerProcess((success, session) -> {
+                if (success) {
+                    removeGroup(groupId);
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    @TransactionalEventListener
+    public void onBulkChange(EmployeeBulkChangeEvent event) {
+        if (event.removed()) {
+            List<Integer> employeeIds = event.ids().stream().map(EmailGroupMembershipIndex::employeeId).toList();
+            apply(target -> {
+                for (int employeeId : employeeIds) {
+                    target.values().forEach(members -> members.remove(employeeId));
+                }
+                target.values().removeIf(CompressedBitmap::isEmpty);
+            });
+        }
+    }
+
+    private void setGroups(int employeeId, List<Integer> groupIds) {
+        apply(target -> {
+            target.forEach((groupId, members) -> {
+                if (!groupIds.contains(groupId)) {
+                    members.remove(employeeId);
+                }
+            });
+            for (Integer groupId : groupIds) {
+                target.computeIfAbsent(groupId, id -> new CompressedBitmap()).add(employeeId);
+            }
+            target.values().removeIf(CompressedBitmap::isEmpty);
+        });
+    }
+
+    private void removeGroup(int groupId) {
+        apply(target -> target.remove(groupId));
+    }
+
+    private void apply(Consumer<Map<Integer, CompressedBitmap>> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(membersByGroup);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int employeeId(Object id) {
+        return ((BigInteger) id).intValueExact();
+    }
+}
@@ -0,0 +1,380 @@
+package com.uberkautilya.jpawithspringboot.index;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeBulkChangeEvent;
+import com.uberkautilya.jpawithspringboot.startup.StartupWarmup;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Type-ahead over employees: the words of their names and their SSNs, looked up by prefix
+ * Prefix only: "mit" does not find Smith. Matching within words would take an entry per suffix of every word
+ * Every (word, employee id) pair is an entry of a ConcurrentSkipListSet sorted by word - a prefix lookup is a range scan
+ * from the prefix to the prefix followed by the highest char, stopping at the limit. No lock on either lookups or updates
+ * A query of several words matches the employees having a word starting with each of them: "jo sm" finds John Smith.
+ * Only the range of the most selective of them is scanned
+ *
+ * Kept in sync by Hibernate's post commit listeners, like the EmployeeQueryCacheInvalidator, and by the EmployeeBulkChangeEvent
+ * for bulk renames. The words last indexed for each employee are kept by id, so an update removes exactly those
+ *
+ * Built at startup by employee.search.rebuild-parallelism threads, each reading an id range of EMPLOYEE_DATA.
+ * The build is a StartupWarmup task, lookups wait for it to finish. In the background, the application commits changes while it runs:
+ * the ids of the employees changed are noted, and they are read again right before the new index is swapped in
+ */
+@Component
+public class EmployeeSearchIndex implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmployeeSearchIndex.class);
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator.comparing(Entry::word).thenComparingInt(Entry::employeeId);
+    private static final String EMPLOYEES = "select id, emp_name, ssn from employee_data";
+    private static final int SELECTIVITY_SCAN = 512;
+
+    @PersistenceUnit
+    EntityManagerFactory emFactory;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    StartupWarmup startupWarmup;
+
+    private final int parallelism;
+    private final int partitionSize;
+    private volatile Entries entries = new Entries();
+    /**
+     * Updates hold the read lock - they don't exclude each other - and the swap of a rebuilt index the write lock
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private Set<Integer> changedDuringRebuild;
+    private CompletableFuture<Void> built;
+
+    public EmployeeSearchIndex(@Value("${employee.search.rebuild-parallelism:4}") int parallelism,
+                               @Value("${employee.search.partition-size:10000}") int partitionSize) {
+        if (parallelism < 1 || partitionSize < 1) {
+            throw new IllegalArgumentException("employee.search rebuild-parallelism and partition-size must be positive");
+        }
+        this.parallelism = parallelism;
+        this.partitionSize = partitionSize;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+        built = startupWarmup.run("employee search index", this::rebuild);
+    }
+
+    /**
+     * Builds a new index from EMPLOYEE_DATA and swaps it in
+     * A partition may have been read before a change committed: the employees changed in the meantime are read again, with the
+     * swap held back until they are - updates wait for it, lookups go on with the index being replaced
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        swapLock.writeLock().lock();
+        changedDuringRebuild = ConcurrentHashMap.newKeySet();
+        swapLock.writeLock().unlock();
+        try {
+            Entries rebuilt = build();
+            swapLock.writeLock().lock();
+            try {
+                reload(rebuilt, changedDuringRebuild);
+                entries = rebuilt;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            LOGGER.info("Employee search index built in {}ms: {} employees, {} entries", (System.nanoTime() - start) / 1_000_000,
+                    rebuilt.wordsById.size(), rebuilt.words.size());
+        } finally {
+            swapLock.writeLock().lock();
+            changedDuringRebuild = null;
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private Entries build() {
+        long[] range = idRange();
+        Entries rebuilt = new Entries();
+        if (range != null) {
+            int threads = (int) Math.min(parallelism, (range[1] - range[0]) / partitionSize + 1);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> partitions = new ArrayList<>();
+                for (long from = range[0]; from <= range[1]; from += partitionSize) {
+                    long fromId = from;
+                    partitions.add(executor.submit(() -> load(rebuilt, "where id >= ? and id < ?", fromId, fromId + partitionSize)));
+                }
+                for (Future<?> partition : partitions) {
+                    partition.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while building the employee search index", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not build the employee search index", e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        }
+        return rebuilt;
+    }
+
+    private long[] idRange() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select min(id), max(id) from employee_data")) {
+            resultSet.next();
+            long min = resultSet.getLong(1);
+            return resultSet.wasNull() ? null : new long[]{min, resultSet.getLong(2)};
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the employee id range", e);
+        }
+    }
+
+    /**
+     * Applies a change to the index - and, while it is being rebuilt, notes the employees it concerns
+     */
+    private void update(Collection<Integer> employeeIds, Consumer<Entries> change) {
+        swapLock.readLock().lock();
+        try {
+            change.accept(entries);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.addAll(employeeIds);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the entries of the employees with their rows as they are now - none for those that are gone
+     */
+    private void reload(Entries target, Collection<Integer> employeeIds) {
+        List<Integer> ids = List.copyOf(employeeIds);
+        ids.forEach(target::remove);
+        for (int from = 0; from < ids.size(); from += 1000) {
+            List<Integer> batch = ids.subList(from, Math.min(from + 1000, ids.size()));
+            load(target, "where id in (" + String.join(",", batch.stream().map(id -> "?").toList()) + ")", batch.toArray());
+        }
+    }
+
+    private void load(Entries target, String where, Object... parameters) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(EMPLOYEES + " " + where)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    target.put(resultSet.getInt(1), resultSet.getString(2), resultSet.getString(3));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read employees for the search index", e);
+        }
+    }
+
+    /**
+     * The scan runs over the most selective word of the query - the one with the fewest entries, counted up to SELECTIVITY_SCAN,
+     * the longest one when several reach it.
+     * The other words are checked against the words the employees found were indexed under, so no other range is read
+     * @param query words, each matched against the start of the words of the name or the start of the SSN, case insensitive
+     * @return ids of at most limit matching employees, in the order of their word matching the most selective word of the query
+     */
+    public List<BigInteger> search(String query, int limit) {
+        List<String> words = words(query);
+        if (words.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        built.join();
+        Entries current = entries;
+        String driver = words.get(0);
+        long fewest = Long.MAX_VALUE;
+        for (String word : words.size() == 1 ? List.<String>of() : words) {
+            long count = current.prefixScan(word).stream().limit(SELECTIVITY_SCAN).count();
+            if (count < fewest || (count == fewest && word.length() > driver.length())) {
+                fewest = count;
+                driver = word;
+            }
+        }
+        List<String> others = new ArrayList<>(words);
+        others.remove(driver);
+        Set<Integer> found = new LinkedHashSet<>();
+        for (Entry entry : current.prefixScan(driver)) {
+            if (!found.contains(entry.employeeId()) && current.matchesAll(entry.employeeId(), others)) {
+                found.add(entry.employeeId());
+                if (found.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return found.stream().map(BigInteger::valueOf).toList();
+    }
+
+    public int size() {
+        built.join();
+        return entries.wordsById.size();
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.getMappedClass() == Employee.class;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Employee employee) {
+            int id = employee.getId().intValueExact();
+            update(List.of(id), target -> target.put(id, employee.getName(), employee.getSsn()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Employee employee) {
+            int id = employee.getId().intValueExact();
+            update(List.of(id), target -> target.put(id, employee.getName(), employee.getSsn()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Employee) {
+            int id = ((BigInteger) event.getId()).intValueExact();
+            update(List.of(id), target -> target.remove(id));
+        }
+    }
+
+    /**
+     * Renamed employees are read again by id. A rename by criteria - which no repository method does today - rebuilds the index
+     */
+    @TransactionalEventListener
+    public void onBulkChange(EmployeeBulkChangeEvent event) {
+        List<Integer> ids = event.ids().stream().map(BigInteger::intValueExact).toList();
+        if (event.removed()) {
+            update(ids, target -> ids.forEach(target::remove));
+        } else if (event.changed("name")) {
+            if (ids.isEmpty()) {
+                rebuild();
+                return;
+            }
+            update(ids, target -> reload(target, ids));
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    private static List<String> words(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    record Entry(String word, int employeeId) {
+    }
+
+    /**
+     * The entries, and the words each employee was indexed under
+     * An SSN is indexed as its parts and as the parts put together, so "12-34", "12 34" and "1234" all find 12-345
+     * The entries of an employee are changed within the compute of its wordsById mapping, so two changes to the same employee
+     * - an event and a reload, say - are applied one after the other, and never leave the words of both
+     */
+    static final class Entries {
+        private final NavigableSet<Entry> words = new ConcurrentSkipListSet<>(ENTRY_ORDER);
+        private final ConcurrentHashMap<Integer, List<String>> wordsById = new ConcurrentHashMap<>();
+
+        void put(int employeeId, String name, String ssn) {
+            List<String> indexed = new ArrayList<>(words(name));
+            List<String> ssnParts = words(ssn);
+            indexed.addAll(ssnParts);
+            if (ssnParts.size() > 1) {
+                indexed.add(String.join("", ssnParts));
+            }
+            wordsById.compute(employeeId, (id, previous) -> {
+                if (previous != null) {
+                    previous.stream().filter(word -> !indexed.contains(word)).forEach(word -> words.remove(new Entry(word, employeeId)));
+                }
+                indexed.forEach(word -> words.add(new Entry(word, employeeId)));
+                return indexed;
+            });
+        }
+
+        void remove(int employeeId) {
+            wordsById.computeIfPresent(employeeId, (id, previous) -> {
+                previous.forEach(word -> words.remove(new Entry(word, employeeId)));
+                return null;
+            });
+        }
+
+        boolean matchesAll(int employeeId, List<String> prefixes) {
+            List<String> indexed = wordsById.getOrDefault(employeeId, List.of());
+            return prefixes.stream().allMatch(prefix -> indexed.stream().anyMatch(word -> word.startsWith(prefix)));
+        }
+
+        NavigableSet<Entry> prefixScan(String prefix) {
+            return words.subSet(new Entry(prefix, Integer.MIN_VALUE), true, new Entry(prefix + Character.MAX_VALUE, Integer.MIN_VALUE), false);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs a sample of the @log method calls from a background thread, so the calling thread never waits on the log output
+ * method-metrics.log.sample-rate is the fraction of calls logged - 0, the default, turns it off. Failed calls are always offered
+ * When the queue is full, entries are dropped rather than blocking the caller - see getDropped()
+ */
+@Component
+public class AsyncSampledLogger {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSampledLogger.class);
+
+    private final double sampleRate;
+    private final BlockingQueue<Entry> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+
+    public AsyncSampledLogger(@Value("${method-metrics.log.sample-rate:0}") double sampleRate,
+                              @Value("${method-metrics.log.queue-capacity:1024}") int queueCapacity) {
+        this.sampleRate = sampleRate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::drain, "method-metrics-logger");
+        this.writer.setDaemon(true);
+        if (sampleRate > 0) {
+            this.writer.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    public void maybeLog(String method, long nanos, Throwable failure) {
+        if (sampleRate <= 0) {
+            return;
+        }
+        if (failure == null && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        if (!queue.offer(new Entry(method, nanos, failure))) {
+            dropped.increment();
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void drain() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Entry entry = queue.poll(1, TimeUnit.SECONDS);
+                if (entry == null) {
+                    continue;
+                }
+                if (entry.failure == null) {
+                    LOGGER.info("{} took {} us", entry.method, TimeUnit.NANOSECONDS.toMicros(entry.nanos));
+                } else {
+                    LOGGER.info("{} failed after {} us with {}", entry.method, TimeUnit.NANOSECONDS.toMicros(entry.nanos), entry.failure.toString());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        writer.interrupt();
+    }
+
+    private record Entry(String method, long nanos, Throwable failure) {
+    }
+}
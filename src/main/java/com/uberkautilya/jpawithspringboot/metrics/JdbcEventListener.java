@@ -0,0 +1,16 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+/**
+ * Told about every statement run and every row read through the MeteredDataSource
+ * Called on the thread doing the JDBC work, so implementations have to be cheap and must not block
+ */
+public interface JdbcEventListener {
+
+    /**
+     * @param sql the SQL as prepared, with ? placeholders - null for a batch of plain Statements
+     * @param nanos time spent in the execute call
+     */
+    void statementExecuted(String sql, long nanos);
+
+    void rowFetched();
+}
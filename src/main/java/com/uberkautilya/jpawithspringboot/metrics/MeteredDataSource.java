@@ -0,0 +1,136 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Wraps the connections of a DataSource so that every executed statement and every row read is reported to the JdbcEventListeners
+ * Connections, statements and result sets are wrapped in JDK dynamic proxies - only the methods of interest do any extra work,
+ * everything else is passed straight on to the real object
+ */
+public class MeteredDataSource extends DelegatingDataSource implements AutoCloseable {
+    private final Supplier<List<JdbcEventListener>> listenerSupplier;
+    private volatile List<JdbcEventListener> listeners;
+
+    /**
+     * @param listenerSupplier called on the connections until it returns the listeners, then no more. Until then, null -
+     *                         the connections are not metered. They are not resolved while the context is still being created
+     */
+    public MeteredDataSource(DataSource target, Supplier<List<JdbcEventListener>> listenerSupplier) {
+        super(target);
+        this.listenerSupplier = listenerSupplier;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    /**
+     * Closes the pool underneath - Spring calls this on shutdown, as it would have on the DataSource bean before it was wrapped
+     */
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        List<JdbcEventListener> current = listeners;
+        if (current == null) {
+            List<JdbcEventListener> resolved = listenerSupplier.get();
+            if (resolved == null) {
+                return connection;
+            }
+            current = listeners = List.copyOf(resolved);
+        }
+        if (current.isEmpty()) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection, current.toArray(JdbcEventListener[]::new)));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record ConnectionHandler(Connection target, JdbcEventListener[] listeners) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = MeteredDataSource.invoke(target, method, args);
+            String name = method.getName();
+            if (result instanceof Statement statement && (name.startsWith("prepare") || name.equals("createStatement"))) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                        : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{type},
+                        new StatementHandler(statement, sql, listeners));
+            }
+            return result;
+        }
+    }
+
+    private record StatementHandler(Statement target, String sql, JdbcEventListener[] listeners) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                Object result = MeteredDataSource.invoke(target, method, args);
+                return name.equals("getResultSet") && result != null ? wrap((ResultSet) result) : result;
+            }
+            String executed = args != null && args.length > 0 && args[0] instanceof String text ? text : sql;
+            long start = System.nanoTime();
+            try {
+                Object result = MeteredDataSource.invoke(target, method, args);
+                return result instanceof ResultSet resultSet ? wrap(resultSet) : result;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                for (JdbcEventListener listener : listeners) {
+                    listener.statementExecuted(executed, nanos);
+                }
+            }
+        }
+
+        private ResultSet wrap(ResultSet resultSet) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    new ResultSetHandler(resultSet, listeners));
+        }
+    }
+
+    private record ResultSetHandler(ResultSet target, JdbcEventListener[] listeners) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = MeteredDataSource.invoke(target, method, args);
+            if (result == Boolean.TRUE && method.getName().equals("next")) {
+                for (JdbcEventListener listener : listeners) {
+                    listener.rowFetched();
+                }
+            }
+            return result;
+        }
+    }
+}
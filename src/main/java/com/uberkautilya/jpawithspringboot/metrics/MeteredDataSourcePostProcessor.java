@@ -0,0 +1,41 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps every DataSource bean in a MeteredDataSource, when one of its JdbcEventListeners is on: the persistence metrics
+ * (persistence-metrics.enabled=true) or the SqlStatistics (sql-statistics.enabled, on unless set to false). With both off,
+ * the DataSource is left as it is - the proxies of the MeteredDataSource cost a reflective call per JDBC method, on every statement and row
+ * The listeners are looked up once all the singletons are created. A connection taken before that - by the EntityManagerFactory
+ * bootstrap, which may run on a thread of its own (spring.data.jpa.repositories.bootstrap-mode=deferred) - is not metered:
+ * looking them up from that thread would wait on the lock held by the main thread, itself waiting for the EntityManagerFactory
+ */
+@Component
+@ConditionalOnExpression("${persistence-metrics.enabled:false} or ${sql-statistics.enabled:true}")
+public class MeteredDataSourcePostProcessor implements BeanPostProcessor, SmartInitializingSingleton {
+    private final ObjectProvider<JdbcEventListener> listeners;
+    private volatile boolean singletonsCreated;
+
+    public MeteredDataSourcePostProcessor(ObjectProvider<JdbcEventListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof MeteredDataSource)) {
+            return new MeteredDataSource(dataSource, () -> singletonsCreated ? listeners.orderedStream().toList() : null);
+        }
+        return bean;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        singletonsCreated = true;
+    }
+}
@@ -0,0 +1,37 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MethodStats of every method seen by the LoggingAspect, keyed by the Method itself - a lookup, no String built per call
+ */
+@Component
+public class MethodMetricsRegistry {
+    private final Map<Method, MethodStats> stats = new ConcurrentHashMap<>();
+
+    public MethodStats stats(Method method) {
+        MethodStats methodStats = stats.get(method);
+        if (methodStats != null) {
+            return methodStats;
+        }
+        return stats.computeIfAbsent(method, m -> new MethodStats(m.getDeclaringClass().getSimpleName() + "." + m.getName()));
+    }
+
+    /**
+     * @return the stats by method name, e.g. TransactionalDemo.updateEmployee. Overloads share a name and keep the last one
+     */
+    public Map<String, MethodStatsSnapshot> snapshot() {
+        Map<String, MethodStatsSnapshot> snapshot = new TreeMap<>();
+        stats.values().forEach(methodStats -> snapshot.put(methodStats.getName(), methodStats.snapshot()));
+        return snapshot;
+    }
+
+    public void reset() {
+        stats.values().forEach(MethodStats::reset);
+    }
+}
@@ -0,0 +1,37 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error count of one @log method
+ */
+public class MethodStats {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    MethodStats(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MethodStatsSnapshot snapshot() {
+        return new MethodStatsSnapshot(name, latency.count(), errors.sum(), latency.mean(),
+                latency.percentile(50), latency.percentile(99), latency.percentile(99.9), latency.max());
+    }
+
+    void reset() {
+        latency.reset();
+        errors.reset();
+    }
+}
@@ -0,0 +1,8 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+/**
+ * Point in time read out of MethodStats. Durations are in nanoseconds
+ */
+public record MethodStatsSnapshot(String method, long calls, long errors, long meanNanos,
+                                  long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+}
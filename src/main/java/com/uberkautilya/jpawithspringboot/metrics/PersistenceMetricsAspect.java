@@ -0,0 +1,57 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+
+/**
+ * Attributes persistence work to the public methods of the service classes
+ * Ordered first, so it runs outside the transaction interceptor: the commit - and the flush it triggers - is part of the measured call,
+ * and it can tell whether the call is a transaction boundary - @Transactional with no transaction active yet
+ * As with any Spring proxy, calls from within the same class aren't seen: a service method calling another one of its class
+ * goes through its own proxy to have it measured - as updateEmployeeAndAccessCard() does for updateEmployee()
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "persistence-metrics.enabled", havingValue = "true")
+public class PersistenceMetricsAspect {
+    @Autowired
+    PersistenceMetricsRegistry registry;
+
+    @Around("execution(public * com.uberkautilya.jpawithspringboot.service..*(..))")
+    public Object measure(ProceedingJoinPoint proceedingPoint) throws Throwable {
+        Method method = ((MethodSignature) proceedingPoint.getSignature()).getMethod();
+        boolean transactionBoundary = !TransactionSynchronizationManager.isActualTransactionActive() && isTransactional(method);
+        PersistenceWork work = PersistenceWorkTracker.open();
+        long start = System.nanoTime();
+        try {
+            return proceedingPoint.proceed();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            PersistenceWorkTracker.close(work);
+            String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+            registry.record(PersistenceMetricsRegistry.METHOD_PREFIX + name, work, elapsed);
+            if (transactionBoundary) {
+                registry.record(PersistenceMetricsRegistry.TRANSACTION_PREFIX + name, work, elapsed);
+            }
+        }
+    }
+
+    private static boolean isTransactional(Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, jakarta.transaction.Transactional.class)
+                || AnnotatedElementUtils.hasAnnotation(method, org.springframework.transaction.annotation.Transactional.class)
+                || AnnotatedElementUtils.hasAnnotation(method.getDeclaringClass(), jakarta.transaction.Transactional.class)
+                || AnnotatedElementUtils.hasAnnotation(method.getDeclaringClass(), org.springframework.transaction.annotation.Transactional.class);
+    }
+}
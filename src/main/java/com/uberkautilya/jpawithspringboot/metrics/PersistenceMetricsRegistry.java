@@ -0,0 +1,38 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistence work per service method - "method:TransactionalDemo.updateEmployee" - and per transaction boundary -
+ * "tx:TransactionalDemo.updateEmployeeAndAccessCard", recorded for the method that started the transaction
+ */
+@Component
+public class PersistenceMetricsRegistry {
+    public static final String METHOD_PREFIX = "method:";
+    public static final String TRANSACTION_PREFIX = "tx:";
+
+    private final Map<String, PersistenceStats> stats = new ConcurrentHashMap<>();
+
+    public void record(String name, PersistenceWork work, long nanos) {
+        stats.computeIfAbsent(name, key -> new PersistenceStats()).record(work, nanos);
+    }
+
+    public Map<String, PersistenceStatsSnapshot> snapshot() {
+        Map<String, PersistenceStatsSnapshot> snapshot = new TreeMap<>();
+        stats.forEach((name, persistenceStats) -> snapshot.put(name, persistenceStats.snapshot(name)));
+        return snapshot;
+    }
+
+    public PersistenceStatsSnapshot snapshot(String name) {
+        PersistenceStats persistenceStats = stats.get(name);
+        return persistenceStats == null ? new PersistenceStats().snapshot(name) : persistenceStats.snapshot(name);
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+}
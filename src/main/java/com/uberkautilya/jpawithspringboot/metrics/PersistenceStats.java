@@ -0,0 +1,34 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals of the PersistenceWork of every call to one service method, or of every transaction it started
+ */
+class PersistenceStats {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+    private final LongAdder statementNanos = new LongAdder();
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder entitiesLoaded = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    void record(PersistenceWork work, long nanos) {
+        calls.increment();
+        statements.add(work.statements);
+        maxStatements.accumulate(work.statements);
+        statementNanos.add(work.statementNanos);
+        rowsFetched.add(work.rowsFetched);
+        entitiesLoaded.add(work.entitiesLoaded);
+        flushes.add(work.flushes);
+        totalNanos.add(nanos);
+    }
+
+    PersistenceStatsSnapshot snapshot(String name) {
+        return new PersistenceStatsSnapshot(name, calls.sum(), statements.sum(), maxStatements.get(), statementNanos.sum(),
+                rowsFetched.sum(), entitiesLoaded.sum(), flushes.sum(), totalNanos.sum());
+    }
+}
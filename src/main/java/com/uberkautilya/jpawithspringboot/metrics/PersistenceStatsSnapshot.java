@@ -0,0 +1,13 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+/**
+ * Point in time read out of the persistence work of a service method or transaction boundary
+ * maxStatements is the most statements a single call issued. Durations are in nanoseconds
+ */
+public record PersistenceStatsSnapshot(String name, long calls, long statements, long maxStatements, long statementNanos,
+                                       long rowsFetched, long entitiesLoaded, long flushes, long totalNanos) {
+
+    public double statementsPerCall() {
+        return calls == 0 ? 0 : (double) statements / calls;
+    }
+}
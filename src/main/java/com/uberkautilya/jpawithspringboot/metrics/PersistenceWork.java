@@ -0,0 +1,44 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+/**
+ * Persistence work counted while one scope - a service method or a transaction - was open on a thread
+ * Only ever touched by the thread that opened it, so plain fields are enough
+ */
+public class PersistenceWork {
+    long statements;
+    long statementNanos;
+    long rowsFetched;
+    long entitiesLoaded;
+    long flushes;
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getStatementNanos() {
+        return statementNanos;
+    }
+
+    public long getRowsFetched() {
+        return rowsFetched;
+    }
+
+    public long getEntitiesLoaded() {
+        return entitiesLoaded;
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    @Override
+    public String toString() {
+        return "PersistenceWork{" +
+                "statements=" + statements +
+                ", statementNanos=" + statementNanos +
+                ", rowsFetched=" + rowsFetched +
+                ", entitiesLoaded=" + entitiesLoaded +
+                ", flushes=" + flushes +
+                '}';
+    }
+}
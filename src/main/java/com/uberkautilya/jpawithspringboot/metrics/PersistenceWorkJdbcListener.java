@@ -0,0 +1,22 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds the PersistenceWorkTracker with the statements and rows seen by the MeteredDataSource
+ */
+@Component
+@ConditionalOnProperty(name = "persistence-metrics.enabled", havingValue = "true")
+public class PersistenceWorkJdbcListener implements JdbcEventListener {
+
+    @Override
+    public void statementExecuted(String sql, long nanos) {
+        PersistenceWorkTracker.statementExecuted(nanos);
+    }
+
+    @Override
+    public void rowFetched() {
+        PersistenceWorkTracker.rowFetched();
+    }
+}
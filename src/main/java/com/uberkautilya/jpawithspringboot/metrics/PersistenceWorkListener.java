@@ -0,0 +1,56 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds the PersistenceWorkTracker with the entities loaded and the flushes, from Hibernate events
+ * Statements and rows come from the MeteredDataSource, through the PersistenceWorkJdbcListener - a separate bean, as the DataSource
+ * needs its listeners before the EntityManagerFactory this one registers with can exist
+ * The flush listeners are appended after Hibernate's own, so they run once the flush is done.
+ * An auto flush - before a query - only counts when there was something to flush
+ */
+@Component
+@ConditionalOnProperty(name = "persistence-metrics.enabled", havingValue = "true")
+public class PersistenceWorkListener implements PostLoadEventListener, FlushEventListener, AutoFlushEventListener {
+    @PersistenceUnit
+    EntityManagerFactory emFactory;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, this);
+        registry.appendListeners(EventType.FLUSH, this);
+        registry.appendListeners(EventType.AUTO_FLUSH, this);
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        PersistenceWorkTracker.entityLoaded();
+    }
+
+    @Override
+    public void onFlush(FlushEvent event) {
+        PersistenceWorkTracker.flushed();
+    }
+
+    @Override
+    public void onAutoFlush(AutoFlushEvent event) {
+        if (event.isFlushRequired()) {
+            PersistenceWorkTracker.flushed();
+        }
+    }
+}
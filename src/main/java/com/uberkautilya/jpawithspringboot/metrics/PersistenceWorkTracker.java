@@ -0,0 +1,58 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps the open PersistenceWork scopes of each thread. Work reported on a thread is added to all of its open scopes,
+ * so a service method called from another one counts towards both - each gets its own inclusive total
+ * Static, as it is fed from places Spring doesn't create: the JDBC proxies and the Hibernate listeners
+ */
+public final class PersistenceWorkTracker {
+    private static final ThreadLocal<Deque<PersistenceWork>> SCOPES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private PersistenceWorkTracker() {
+    }
+
+    public static PersistenceWork open() {
+        PersistenceWork work = new PersistenceWork();
+        SCOPES.get().push(work);
+        return work;
+    }
+
+    /**
+     * Scopes have to be closed in the reverse order they were opened
+     */
+    public static void close(PersistenceWork work) {
+        Deque<PersistenceWork> scopes = SCOPES.get();
+        if (scopes.peek() != work) {
+            throw new IllegalStateException("Closing a persistence work scope that is not the innermost one");
+        }
+        scopes.pop();
+    }
+
+    static void statementExecuted(long nanos) {
+        for (PersistenceWork work : SCOPES.get()) {
+            work.statements++;
+            work.statementNanos += nanos;
+        }
+    }
+
+    static void rowFetched() {
+        for (PersistenceWork work : SCOPES.get()) {
+            work.rowsFetched++;
+        }
+    }
+
+    static void entityLoaded() {
+        for (PersistenceWork work : SCOPES.get()) {
+            work.entitiesLoaded++;
+        }
+    }
+
+    static void flushed() {
+        for (PersistenceWork work : SCOPES.get()) {
+            work.flushes++;
+        }
+    }
+}
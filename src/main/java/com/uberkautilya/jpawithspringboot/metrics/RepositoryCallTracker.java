@@ -0,0 +1,55 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers which repository method the current thread is in, so a slow statement can be traced back to it
+ * Only the join point is kept per call. It is turned into a name - e.g. EmployeeRepository.findById - only when asked for
+ * SqlStatistics is the one asking: without it, nothing is tracked
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "sql-statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class RepositoryCallTracker {
+    private static final ThreadLocal<JoinPoint> CURRENT = new ThreadLocal<>();
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object track(ProceedingJoinPoint proceedingPoint) throws Throwable {
+        JoinPoint outer = CURRENT.get();
+        CURRENT.set(proceedingPoint);
+        try {
+            return proceedingPoint.proceed();
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    /**
+     * @return the repository method running on this thread, or null outside any repository call
+     */
+    public static String currentMethod() {
+        JoinPoint joinPoint = CURRENT.get();
+        if (joinPoint == null) {
+            return null;
+        }
+        String repository = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        for (Class<?> proxied : AopProxyUtils.proxiedUserInterfaces(joinPoint.getThis())) {
+            if (Repository.class.isAssignableFrom(proxied)) {
+                repository = proxied.getSimpleName();
+                break;
+            }
+        }
+        return repository + "." + joinPoint.getSignature().getName();
+    }
+}
@@ -0,0 +1,28 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a SQL statement to its shape, so that statements differing only in their values are counted together:
+ * literals become ?, lists of values or placeholders in an IN (...) become a single ?, whitespace is collapsed
+ * Hibernate binds values as ? already, the lists are what vary - e.g. batch loads of 3 or 50 ids
+ */
+final class SqlNormalizer {
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SqlNormalizer() {
+    }
+
+    static String normalize(String sql) {
+        if (sql == null) {
+            return "<batch>";
+        }
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,17 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+/**
+ * Point in time read out of the statistics of one statement shape. Durations are in nanoseconds
+ * Only a sample of the statements is aggregated, except the slow ones which always are: sampledCount is what was aggregated,
+ * estimatedCount scales it back up by the sample rate
+ */
+public record SqlShapeSnapshot(String shape, long sampledCount, double sampleRate, long totalNanos, long maxNanos, long slowCount) {
+
+    public long estimatedCount() {
+        return sampleRate >= 1 ? sampledCount : Math.round((sampledCount - slowCount) / sampleRate + slowCount);
+    }
+
+    public long meanNanos() {
+        return sampledCount == 0 ? 0 : totalNanos / sampledCount;
+    }
+}
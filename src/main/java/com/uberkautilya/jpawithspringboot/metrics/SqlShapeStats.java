@@ -0,0 +1,27 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated timings of one statement shape - see SqlNormalizer
+ */
+class SqlShapeStats {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder slowCount = new LongAdder();
+
+    void record(long nanos, boolean slow) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        if (slow) {
+            slowCount.increment();
+        }
+    }
+
+    SqlShapeSnapshot snapshot(String shape, double sampleRate) {
+        return new SqlShapeSnapshot(shape, count.sum(), sampleRate, totalNanos.sum(), maxNanos.get(), slowCount.sum());
+    }
+}
@@ -0,0 +1,148 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregate statistics per statement shape and a slow statement log - in place of spring.jpa.show-sql
+ *
+ * On the JDBC thread only a sampling decision is made: sampled statements, and all statements slower than sql-statistics.slow-threshold,
+ * are put on a bounded queue. A background thread normalizes them, aggregates count, total and max time per shape
+ * and logs the slow ones along with the repository method that ran them. A full queue drops the statement rather than wait
+ * The number of shapes is bounded by sql-statistics.max-shapes, "<other>" included: one slot is kept for it, and once
+ * the others are taken new shapes are aggregated under it
+ * With sql-statistics.report-interval set, the shapes with the most total time are logged at that interval
+ * On unless sql-statistics.enabled=false, whether persistence-metrics.enabled is or not: it is what replaces show-sql
+ */
+@Component
+@ConditionalOnProperty(name = "sql-statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatistics implements JdbcEventListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlStatistics.class);
+    static final String OTHER = "<other>";
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+    private final int maxShapes;
+    private final long reportIntervalNanos;
+    private final BlockingQueue<Sample> queue;
+    private final Map<String, SqlShapeStats> shapes = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread aggregator;
+
+    public SqlStatistics(@Value("${sql-statistics.sample-rate:0.1}") double sampleRate,
+                         @Value("${sql-statistics.slow-threshold:100ms}") Duration slowThreshold,
+                         @Value("${sql-statistics.max-shapes:500}") int maxShapes,
+                         @Value("${sql-statistics.queue-capacity:4096}") int queueCapacity,
+                         @Value("${sql-statistics.report-interval:0s}") Duration reportInterval) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.maxShapes = maxShapes;
+        this.reportIntervalNanos = reportInterval.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.aggregator = new Thread(this::aggregate, "sql-statistics");
+        this.aggregator.setDaemon(true);
+        this.aggregator.start();
+    }
+
+    @Override
+    public void statementExecuted(String sql, long nanos) {
+        boolean slow = nanos >= slowThresholdNanos;
+        if (!slow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        if (!queue.offer(new Sample(sql, nanos, slow, slow ? RepositoryCallTracker.currentMethod() : null))) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void rowFetched() {
+    }
+
+    /**
+     * @return the statistics of every shape, the most total time first
+     */
+    public List<SqlShapeSnapshot> snapshot() {
+        return shapes.entrySet().stream()
+                .map(entry -> entry.getValue().snapshot(entry.getKey(), sampleRate))
+                .sorted(Comparator.comparingLong(SqlShapeSnapshot::totalNanos).reversed())
+                .toList();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public void reset() {
+        shapes.clear();
+    }
+
+    private void aggregate() {
+        long nextReport = System.nanoTime() + reportIntervalNanos;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Sample sample = queue.poll(1, TimeUnit.SECONDS);
+                if (sample != null) {
+                    record(sample);
+                }
+                if (reportIntervalNanos > 0 && System.nanoTime() - nextReport >= 0) {
+                    report();
+                    nextReport = System.nanoTime() + reportIntervalNanos;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(Sample sample) {
+        String shape = SqlNormalizer.normalize(sample.sql);
+        SqlShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            stats = shapes.computeIfAbsent(shapes.size() < maxShapes - 1 ? shape : OTHER, key -> new SqlShapeStats());
+        }
+        stats.record(sample.nanos, sample.slow);
+        if (sample.slow) {
+            LOGGER.warn("Slow statement: {} ms in {} - {}", TimeUnit.NANOSECONDS.toMillis(sample.nanos),
+                    sample.repositoryMethod == null ? "<no repository call>" : sample.repositoryMethod, shape);
+        }
+    }
+
+    private void report() {
+        List<SqlShapeSnapshot> top = snapshot().stream().limit(10).toList();
+        if (top.isEmpty()) {
+            return;
+        }
+        StringBuilder report = new StringBuilder("Statements by total time (sample rate ").append(sampleRate).append("):");
+        for (SqlShapeSnapshot shape : top) {
+            report.append(System.lineSeparator())
+                    .append(String.format("  ~%d x, mean %d us, max %d us, %d slow: %s", shape.estimatedCount(),
+                            TimeUnit.NANOSECONDS.toMicros(shape.meanNanos()), TimeUnit.NANOSECONDS.toMicros(shape.maxNanos()),
+                            shape.slowCount(), shape.shape()));
+        }
+        LOGGER.info(report.toString());
+    }
+
+    @PreDestroy
+    public void stop() {
+        aggregator.interrupt();
+    }
+
+    private record Sample(String sql, long nanos, boolean slow, String repositoryMethod) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.uberkautilya.jpawithspringboot.payroll;
+
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+
+/**
+ * The PayStub row a PayrollComputation is handed, one at a time
+ * All primitives, and a single instance per partition refilled for every row - no object, boxed float or Date per row
+ * Only valid during the accumulate() call: copy what has to be kept
+ */
+public final class PayStubRow {
+    private static final EmployeeType[] TYPES = EmployeeType.values();
+
+    private int payStubId;
+    private long employeeId;
+    private long payPeriodStartMillis;
+    private int typeOrdinal;
+    private float salary;
+
+    void set(int payStubId, long employeeId, long payPeriodStartMillis, int typeOrdinal, float salary) {
+        this.payStubId = payStubId;
+        this.employeeId = employeeId;
+        this.payPeriodStartMillis = payPeriodStartMillis;
+        this.typeOrdinal = typeOrdinal;
+        this.salary = salary;
+    }
+
+    public int getPayStubId() {
+        return payStubId;
+    }
+
+    /**
+     * 0 for a pay stub without an employee
+     */
+    public long getEmployeeId() {
+        return employeeId;
+    }
+
+    public long getPayPeriodStartMillis() {
+        return payPeriodStartMillis;
+    }
+
+    /**
+     * @return the ordinal of the employee's EmployeeType, -1 when it has none
+     */
+    public int getTypeOrdinal() {
+        return typeOrdinal;
+    }
+
+    public EmployeeType getType() {
+        return typeOrdinal < 0 ? null : TYPES[typeOrdinal];
+    }
+
+    public float getSalary() {
+        return salary;
+    }
+}
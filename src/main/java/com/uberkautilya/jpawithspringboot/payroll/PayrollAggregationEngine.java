@@ -0,0 +1,229 @@
+package com.uberkautilya.jpawithspringboot.payroll;
+
+import com.uberkautilya.jpawithspringboot.archive.PayStubArchive;
+import com.uberkautilya.jpawithspringboot.dto.PayStubSummary;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs a PayrollComputation over every PayStub in parallel, for what a GROUP BY can't express
+ *
+ * The id range of the PAY_STUB table is split in halves by a fork/join task until a half holds at most partition-size ids.
+ * Each such partition is one query on the primary key - "where p.id >= ? and p.id < ?" - streamed with a JDBC fetch size into
+ * an accumulator of its own, then the accumulators are combined up the tree of tasks
+ *
+ * Plain JDBC on purpose: a JPA query would build a PayStub entity, or at least an Object[] with a boxed Float, per row.
+ * Here the columns are read straight into the primitive fields of one reused PayStubRow per partition
+ * Every partition holds a connection while it streams, so the parallelism is capped at the connection pool size
+ *
+ * The closed periods moved to the PayStubArchive are scanned as well, a task per period reading its blocks. Their rows get the
+ * EmployeeType the employee has now - one select of the types, as the table rows get it from the join - and none once the
+ * employee is removed. A pay stub in both tiers, its delete from the table not committed yet, is only scanned in the table
+ */
+@Component
+public class PayrollAggregationEngine {
+    private static final String MIN_MAX_ID = "select min(id), max(id) from pay_stub";
+    private static final String PARTITION = "select p.id, p.emp_id, p.pay_period_start, p.salary, e.type " +
+            "from pay_stub p left join employee_data e on e.id = p.emp_id where p.id >= ? and p.id < ?";
+    private static final String PAY_STUB_IDS_BEFORE = "select id from pay_stub where pay_period_start < ?";
+    private static final String EMPLOYEE_TYPES = "select id, type from employee_data where type is not null";
+    private static final EmployeeType[] TYPES = EmployeeType.values();
+
+    private final DataSource dataSource;
+    private final PayStubArchive archive;
+    private final int partitionSize;
+    private final int fetchSize;
+    private final ForkJoinPool pool;
+
+    public PayrollAggregationEngine(DataSource dataSource, PayStubArchive archive,
+                                    @Value("${payroll.aggregation.parallelism:4}") int parallelism,
+                                    @Value("${payroll.aggregation.partition-size:50000}") int partitionSize,
+                                    @Value("${payroll.aggregation.fetch-size:1000}") int fetchSize,
+                                    @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize) {
+        if (parallelism < 1 || partitionSize < 1 || fetchSize < 1) {
+            throw new IllegalArgumentException("payroll.aggregation parallelism, partition-size and fetch-size must all be positive");
+        }
+        this.dataSource = dataSource;
+        this.archive = archive;
+        this.partitionSize = partitionSize;
+        this.fetchSize = fetchSize;
+        this.pool = new ForkJoinPool(Math.min(parallelism, connectionPoolSize), forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("payroll-aggregation-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * @return the combined accumulator of all partitions and archived periods - a fresh one if there are no pay stubs
+     */
+    public <A> A run(PayrollComputation<A> computation) {
+        List<ForkJoinTask<A>> parts = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(MIN_MAX_ID)) {
+            resultSet.next();
+            long minId = resultSet.getLong(1);
+            if (!resultSet.wasNull()) {
+                parts.add(pool.submit(new PartitionTask<>(computation, minId, resultSet.getLong(2) + 1)));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the PayStub id range", e);
+        }
+        Date archivedUntil = archive.archivedUntil();
+        if (archivedUntil != null) {
+            Set<Integer> inTable = payStubIdsBefore(archivedUntil);
+            Map<Long, Integer> typeOrdinals = typeOrdinals();
+            for (YearMonth period : archive.getPeriods()) {
+                parts.add(pool.submit(() -> scanArchived(computation, period, inTable, typeOrdinals)));
+            }
+        }
+        A result = computation.newAccumulator();
+        for (ForkJoinTask<A> part : parts) {
+            result = computation.combine(result, part.join());
+        }
+        return result;
+    }
+
+    private <A> A scanArchived(PayrollComputation<A> computation, YearMonth period, Set<Integer> inTable, Map<Long, Integer> typeOrdinals) {
+        A accumulator = computation.newAccumulator();
+        PayStubRow row = new PayStubRow();
+        for (PayStubSummary payStub : archive.read(period)) {
+            if (inTable.contains(payStub.id())) {
+                continue;
+            }
+            long employeeId = payStub.employeeId() == null ? 0 : payStub.employeeId().longValueExact();
+            row.set(payStub.id(), employeeId, payStub.payPeriodStart().getTime(), typeOrdinals.getOrDefault(employeeId, -1),
+                    payStub.salary());
+            computation.accumulate(accumulator, row);
+        }
+        return accumulator;
+    }
+
+    /**
+     * The pay stubs still in the table from the archived periods - none, unless an archive run failed before its delete committed
+     */
+    private Set<Integer> payStubIdsBefore(Date date) {
+        Set<Integer> ids = new HashSet<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(PAY_STUB_IDS_BEFORE)) {
+            statement.setTimestamp(1, new Timestamp(date.getTime()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the PayStub ids before " + date, e);
+        }
+        return ids;
+    }
+
+    private Map<Long, Integer> typeOrdinals() {
+        Map<Long, Integer> typeOrdinals = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(EMPLOYEE_TYPES)) {
+            while (resultSet.next()) {
+                typeOrdinals.put(resultSet.getLong(1), typeOrdinal(resultSet.getString(2)));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the employee types", e);
+        }
+        return typeOrdinals;
+    }
+
+    private <A> A scan(PayrollComputation<A> computation, long fromId, long toId) {
+        A accumulator = computation.newAccumulator();
+        PayStubRow row = new PayStubRow();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(PARTITION)) {
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, fromId);
+            statement.setLong(2, toId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Timestamp payPeriodStart = resultSet.getTimestamp(3);
+                    row.set(resultSet.getInt(1), resultSet.getLong(2),
+                            payPeriodStart == null ? 0 : payPeriodStart.getTime(),
+                            typeOrdinal(resultSet.getString(5)), resultSet.getFloat(4));
+                    computation.accumulate(accumulator, row);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not scan PayStub ids [" + fromId + ", " + toId + ")", e);
+        }
+        return accumulator;
+    }
+
+    private static int typeOrdinal(String type) {
+        if (type == null) {
+            return -1;
+        }
+        for (EmployeeType candidate : TYPES) {
+            if (candidate.name().equals(type)) {
+                return candidate.ordinal();
+            }
+        }
+        return -1;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Ids [fromId, toId) - scanned directly when small enough, else split in two halves running in parallel
+     */
+    private class PartitionTask<A> extends RecursiveTask<A> {
+        private final PayrollComputation<A> computation;
+        private final long fromId;
+        private final long toId;
+
+        PartitionTask(PayrollComputation<A> computation, long fromId, long toId) {
+            this.computation = computation;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected A compute() {
+            if (toId - fromId <= partitionSize) {
+                return scan(computation, fromId, toId);
+            }
+            long middle = fromId + (toId - fromId) / 2;
+            PartitionTask<A> right = new PartitionTask<>(computation, middle, toId);
+            right.fork();
+            A left = new PartitionTask<>(computation, fromId, middle).compute();
+            return computation.combine(left, right.join());
+        }
+    }
+}
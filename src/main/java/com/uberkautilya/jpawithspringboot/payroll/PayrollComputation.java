@@ -0,0 +1,19 @@
+package com.uberkautilya.jpawithspringboot.payroll;
+
+/**
+ * A custom payroll computation run by the PayrollAggregationEngine
+ * Every partition of the PayStub table gets its own accumulator from newAccumulator() and feeds it its rows through accumulate().
+ * The partition results are then merged pairwise with combine() - which must not depend on the order the partitions ran in
+ * Accumulators are only ever used by one thread at a time, so they need no synchronization. Keep them to primitive fields and arrays
+ */
+public interface PayrollComputation<A> {
+
+    A newAccumulator();
+
+    void accumulate(A accumulator, PayStubRow row);
+
+    /**
+     * @return the merge of both - may be left, updated in place
+     */
+    A combine(A left, A right);
+}
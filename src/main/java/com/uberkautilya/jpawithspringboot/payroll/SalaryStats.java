@@ -0,0 +1,99 @@
+package com.uberkautilya.jpawithspringboot.payroll;
+
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+
+import java.util.Arrays;
+
+/**
+ * Count, sum, min and max of the salaries per EmployeeType - the accumulator of SalaryStats.byType()
+ * Kept in arrays indexed by the type ordinal, with one slot past the last for employees without a type
+ */
+public final class SalaryStats {
+    private static final int SLOTS = EmployeeType.values().length + 1;
+
+    private final long[] count = new long[SLOTS];
+    private final double[] sum = new double[SLOTS];
+    private final float[] min = new float[SLOTS];
+    private final float[] max = new float[SLOTS];
+
+    SalaryStats() {
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+    }
+
+    public static PayrollComputation<SalaryStats> byType() {
+        return new PayrollComputation<>() {
+            @Override
+            public SalaryStats newAccumulator() {
+                return new SalaryStats();
+            }
+
+            @Override
+            public void accumulate(SalaryStats stats, PayStubRow row) {
+                stats.add(row.getTypeOrdinal() < 0 ? SLOTS - 1 : row.getTypeOrdinal(), row.getSalary());
+            }
+
+            @Override
+            public SalaryStats combine(SalaryStats left, SalaryStats right) {
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    left.count[slot] += right.count[slot];
+                    left.sum[slot] += right.sum[slot];
+                    left.min[slot] = Math.min(left.min[slot], right.min[slot]);
+                    left.max[slot] = Math.max(left.max[slot], right.max[slot]);
+                }
+                return left;
+            }
+        };
+    }
+
+    private void add(int slot, float salary) {
+        count[slot]++;
+        sum[slot] += salary;
+        if (salary < min[slot]) {
+            min[slot] = salary;
+        }
+        if (salary > max[slot]) {
+            max[slot] = salary;
+        }
+    }
+
+    private static int slot(EmployeeType type) {
+        return type == null ? SLOTS - 1 : type.ordinal();
+    }
+
+    /**
+     * @param type null for the employees without a type
+     */
+    public long count(EmployeeType type) {
+        return count[slot(type)];
+    }
+
+    public double sum(EmployeeType type) {
+        return sum[slot(type)];
+    }
+
+    public double mean(EmployeeType type) {
+        int slot = slot(type);
+        return count[slot] == 0 ? 0 : sum[slot] / count[slot];
+    }
+
+    public float min(EmployeeType type) {
+        return count[slot(type)] == 0 ? 0 : min[slot(type)];
+    }
+
+    public float max(EmployeeType type) {
+        return count[slot(type)] == 0 ? 0 : max[slot(type)];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("SalaryStats{");
+        for (int slot = 0; slot < SLOTS; slot++) {
+            EmployeeType type = slot < SLOTS - 1 ? EmployeeType.values()[slot] : null;
+            builder.append(slot == 0 ? "" : ", ").append(type).append("=[count=").append(count(type))
+                    .append(", mean=").append(String.format("%.2f", mean(type)))
+                    .append(", min=").append(min(type)).append(", max=").append(max(type)).append(']');
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -1,7 +1,19 @@
 package com.uberkautilya.jpawithspringboot.repository;
 
+import com.uberkautilya.jpawithspringboot.dto.AccessCardSummary;
 import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
-public interface AccessCardRepository extends CrudRepository<AccessCard, Integer> {
+import java.util.List;
+
+public interface AccessCardRepository extends CrudRepository<AccessCard, Integer>, AccessCardStreamingRepository {
+
+    @Query("select new com.uberkautilya.jpawithspringboot.dto.AccessCardSummary(c.id, c.issueDate, c.isActive, c.firmwareVersion) " +
+            "from AccessCard c order by c.id")
+    List<AccessCardSummary> findAllSummaries();
+
+    @Query("select new com.uberkautilya.jpawithspringboot.dto.AccessCardSummary(c.id, c.issueDate, c.isActive, c.firmwareVersion) " +
+            "from AccessCard c where c.isActive = true order by c.id")
+    List<AccessCardSummary> findActiveSummaries();
 }
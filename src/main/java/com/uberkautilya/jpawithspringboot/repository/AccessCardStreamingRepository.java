@@ -0,0 +1,15 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+
+import java.util.stream.Stream;
+
+/**
+ * Constant memory alternative to findAll() - see EmployeeStreamingRepository
+ */
+public interface AccessCardStreamingRepository {
+
+    Stream<AccessCard> streamAll();
+
+    Stream<AccessCard> streamAll(int fetchSize, int detachEvery);
+}
@@ -0,0 +1,33 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.stream.Stream;
+
+/**
+ * The owner of an AccessCard is the non-owning side of a @OneToOne, which JPA always loads eagerly
+ * Join fetching it avoids a separate query for the owner of every card
+ */
+class AccessCardStreamingRepositoryImpl implements AccessCardStreamingRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${jpa.streaming.fetch-size:500}")
+    private int fetchSize;
+    @Value("${jpa.streaming.detach-every:500}")
+    private int detachEvery;
+
+    @Override
+    public Stream<AccessCard> streamAll() {
+        return streamAll(fetchSize, detachEvery);
+    }
+
+    @Override
+    public Stream<AccessCard> streamAll(int fetchSize, int detachEvery) {
+        return StreamingQuerySupport.stream(entityManager,
+                entityManager.createQuery("select c from AccessCard c left join fetch c.owner order by c.id", AccessCard.class),
+                fetchSize, detachEvery);
+    }
+}
@@ -0,0 +1,36 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Published for every set-based change to employees - by the EmployeeBulkUpdateRepository and the EmployeeOffboardingService
+ * Bulk statements bypass the entity listeners, so this is how caches learn what changed: the attributes written and the row count,
+ * or that the employees were removed altogether - and the ids of the employees, when the statement was on given ones.
+ * Those are the employees the statement changed, not merely the ones it was asked for: ids that matched no row are left out
+ * A removal also carries the ids of the pay stubs removed with the employees
+ * Listen with @TransactionalEventListener to act only once the change has committed
+ */
+public record EmployeeBulkChangeEvent(Set<String> attributes, int rows, boolean removed, Collection<BigInteger> ids,
+                                      Collection<Integer> removedPayStubIds) {
+
+    /**
+     * For a statement on given employees. ids stays empty for one selecting them by criteria
+     */
+    public static EmployeeBulkChangeEvent updated(int rows, Collection<BigInteger> ids, String... attributes) {
+        return new EmployeeBulkChangeEvent(Set.of(attributes), rows, false, List.copyOf(ids), List.of());
+    }
+
+    public static EmployeeBulkChangeEvent removed(Collection<BigInteger> ids, Collection<Integer> payStubIds) {
+        return new EmployeeBulkChangeEvent(Set.of(), ids.size(), true, List.copyOf(ids), List.copyOf(payStubIds));
+    }
+
+    /**
+     * @return true if the attribute was written - or the employees removed, which changes every attribute
+     */
+    public boolean changed(String attribute) {
+        return removed || attributes.contains(attribute);
+    }
+}
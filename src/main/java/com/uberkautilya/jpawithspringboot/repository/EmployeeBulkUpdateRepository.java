@@ -0,0 +1,19 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+
+import java.math.BigInteger;
+import java.util.Collection;
+
+/**
+ * Set-based changes to employees: a single JPQL UPDATE, without loading a single entity
+ * Each statement increments the @Version of the rows it writes, so concurrent optimistic writers of those employees conflict
+ * instead of overwriting the change. Every call publishes an EmployeeBulkChangeEvent
+ * @return the number of employees changed
+ */
+public interface EmployeeBulkUpdateRepository {
+
+    int updateNameByIds(Collection<BigInteger> ids, String name);
+
+    int updateTypeByMinAge(int minAge, EmployeeType type);
+}
@@ -0,0 +1,62 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hibernate evicts the Employee second level cache region for a bulk statement on it, but nothing else knows about the change -
+ * the event tells the rest. The persistence context is cleared afterwards, as its employees no longer match their rows
+ * (what @Modifying(clearAutomatically = true) does for a @Query method)
+ */
+class EmployeeBulkUpdateRepositoryImpl implements EmployeeBulkUpdateRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Override
+    @Transactional
+    public int updateNameByIds(Collection<BigInteger> ids, String name) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int rows = entityManager.createQuery("update Employee e set e.name = :name, e.version = e.version + 1 where e.id in :ids")
+                .setParameter("name", name)
+                .setParameter("ids", ids)
+                .executeUpdate();
+        if (rows < Set.copyOf(ids).size()) {
+            // Some of the ids matched no employee: the event names those that were written
+            ids = entityManager.createQuery("select e.id from Employee e where e.id in :ids", BigInteger.class)
+                    .setParameter("ids", ids)
+                    .getResultList();
+        }
+        return published(rows, ids, "name");
+    }
+
+    @Override
+    @Transactional
+    public int updateTypeByMinAge(int minAge, EmployeeType type) {
+        int rows = entityManager.createQuery("update Employee e set e.type = :type, e.version = e.version + 1 where e.age >= :minAge")
+                .setParameter("type", type)
+                .setParameter("minAge", minAge)
+                .executeUpdate();
+        return published(rows, List.of(), "type");
+    }
+
+    private int published(int rows, Collection<BigInteger> ids, String... attributes) {
+        entityManager.clear();
+        if (rows > 0) {
+            eventPublisher.publishEvent(EmployeeBulkChangeEvent.updated(rows, ids, attributes));
+        }
+        return rows;
+    }
+}
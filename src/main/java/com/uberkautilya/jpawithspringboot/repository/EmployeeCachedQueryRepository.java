@@ -0,0 +1,14 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+
+import java.util.List;
+
+/**
+ * The "emp name asc" listing served from the QueryResultCache
+ * The ids of the result are cached per minAge, the employees themselves come from the second level entity cache
+ */
+public interface EmployeeCachedQueryRepository {
+
+    List<Employee> findByMinAgeOrderByNameCached(int minAge);
+}
@@ -0,0 +1,50 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.cache.EmployeeQueryCacheInvalidator;
+import com.uberkautilya.jpawithspringboot.cache.QueryKey;
+import com.uberkautilya.jpawithspringboot.cache.QueryResultCache;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+
+class EmployeeCachedQueryRepositoryImpl implements EmployeeCachedQueryRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    /**
+     * Read-only transaction as the query and the loads by id have to share one session
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Employee> findByMinAgeOrderByNameCached(int minAge) {
+        QueryKey key = QueryKey.of(EmployeeQueryCacheInvalidator.EMP_NAME_ASC, minAge);
+        List<Object> ids = queryResultCache.get(key);
+        if (ids == null) {
+            long generation = queryResultCache.generation();
+            List<BigInteger> loaded = entityManager.createNamedQuery("emp ids name asc", BigInteger.class)
+                    .setParameter("minAge", minAge)
+                    .getResultList();
+            queryResultCache.put(key, loaded, generation);
+            ids = List.copyOf(loaded);
+        }
+        /*
+         * multiLoad keeps the order of the ids, and looks each one up in the persistence context and the entity cache
+         * before loading the rest from the DB in batches. An employee deleted since comes back as null and is dropped
+         */
+        return entityManager.unwrap(Session.class)
+                .byMultipleIds(Employee.class)
+                .multiLoad(ids)
+                .stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
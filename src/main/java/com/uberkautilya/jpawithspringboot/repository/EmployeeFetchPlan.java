@@ -0,0 +1,28 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+/**
+ * The associations to load along with an Employee, each backed by a @NamedEntityGraph on the entity
+ * The graph is applied as a fetch graph: what it lists is joined into the same SQL query, everything else stays LAZY
+ */
+public enum EmployeeFetchPlan {
+    /**
+     * Only the columns of EMPLOYEE_DATA
+     */
+    SUMMARY("Employee.summary"),
+    WITH_CARD("Employee.withCard"),
+    WITH_GROUPS("Employee.withGroups"),
+    /**
+     * The card and the groups. Only one collection is joined, so the row count stays employees x groups
+     */
+    FULL("Employee.full");
+
+    private final String graphName;
+
+    EmployeeFetchPlan(String graphName) {
+        this.graphName = graphName;
+    }
+
+    public String getGraphName() {
+        return graphName;
+    }
+}
@@ -0,0 +1,22 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Finder methods where the caller picks what is loaded with the employees - one SQL query per call whatever the plan
+ */
+public interface EmployeeFetchPlanRepository {
+
+    Optional<Employee> findById(BigInteger id, EmployeeFetchPlan plan);
+
+    List<Employee> findAll(EmployeeFetchPlan plan);
+
+    /**
+     * The "emp name asc" named query - employees of at least minAge, by name
+     */
+    List<Employee> findByMinAgeOrderByName(int minAge, EmployeeFetchPlan plan);
+}
@@ -0,0 +1,57 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Hibernate;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+class EmployeeFetchPlanRepositoryImpl implements EmployeeFetchPlanRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * An employee found in the second level cache comes back without the graph applied: its associations are uninitialized proxies,
+     * which fail once the employee is used outside the transaction. They are initialized here - from the AccessCard and collection
+     * caches when possible - so the plan holds whichever way the employee was found. For one loaded by the query they already are
+     * Read-only transaction so that the initialization has the session the find used
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Employee> findById(BigInteger id, EmployeeFetchPlan plan) {
+        Employee employee = entityManager.find(Employee.class, id,
+                Map.of(AvailableHints.HINT_SPEC_FETCH_GRAPH, entityManager.getEntityGraph(plan.getGraphName())));
+        if (employee != null) {
+            if (plan == EmployeeFetchPlan.WITH_CARD || plan == EmployeeFetchPlan.FULL) {
+                Hibernate.initialize(employee.getAccessCard());
+            }
+            if (plan == EmployeeFetchPlan.WITH_GROUPS || plan == EmployeeFetchPlan.FULL) {
+                Hibernate.initialize(employee.getEmailGroupList());
+            }
+        }
+        return Optional.ofNullable(employee);
+    }
+
+    @Override
+    public List<Employee> findAll(EmployeeFetchPlan plan) {
+        return withPlan(entityManager.createQuery("select e from Employee e", Employee.class), plan).getResultList();
+    }
+
+    @Override
+    public List<Employee> findByMinAgeOrderByName(int minAge, EmployeeFetchPlan plan) {
+        return withPlan(entityManager.createNamedQuery("emp name asc", Employee.class), plan)
+                .setParameter("minAge", minAge)
+                .getResultList();
+    }
+
+    private <T> TypedQuery<T> withPlan(TypedQuery<T> query, EmployeeFetchPlan plan) {
+        return query.setHint(AvailableHints.HINT_SPEC_FETCH_GRAPH, entityManager.getEntityGraph(plan.getGraphName()));
+    }
+}
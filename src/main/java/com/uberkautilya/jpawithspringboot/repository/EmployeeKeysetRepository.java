@@ -0,0 +1,16 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+
+/**
+ * Pages through the "emp name asc" listing - employees of at least minAge by name - with keyset pagination
+ * Instead of an offset, which makes the DB read and skip every row before the page, each page starts right after the (name, id)
+ * of the previous page's last row. Ties on name are broken by id so no row is skipped or repeated
+ */
+public interface EmployeeKeysetRepository {
+
+    /**
+     * @param continuationToken null for the first page, else the nextToken of the previous page - for the same minAge
+     */
+    KeysetPage<Employee> findPageByMinAgeOrderByName(int minAge, String continuationToken, int pageSize);
+}
@@ -0,0 +1,51 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+
+/**
+ * Names sort nulls first, so a page ending on a null name continues with the remaining null names by id, then every named row
+ */
+class EmployeeKeysetRepositoryImpl implements EmployeeKeysetRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public KeysetPage<Employee> findPageByMinAgeOrderByName(int minAge, String continuationToken, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive, was " + pageSize);
+        }
+        TypedQuery<Employee> query;
+        if (continuationToken == null) {
+            query = entityManager.createNamedQuery("emp name asc keyset first", Employee.class);
+        } else {
+            EmployeeKeysetToken after = EmployeeKeysetToken.decode(continuationToken);
+            if (after.minAge() != minAge) {
+                throw new IllegalArgumentException("Continuation token was issued for minAge " + after.minAge() + ", not " + minAge);
+            }
+            if (after.name() == null) {
+                query = entityManager.createNamedQuery("emp name asc keyset after null name", Employee.class);
+            } else {
+                query = entityManager.createNamedQuery("emp name asc keyset after", Employee.class)
+                        .setParameter("name", after.name());
+            }
+            query.setParameter("id", after.id());
+        }
+        /*
+         * One row more than asked tells whether there is a next page, without a count query
+         */
+        List<Employee> rows = query.setParameter("minAge", minAge)
+                .setMaxResults(pageSize + 1)
+                .getResultList();
+        if (rows.size() <= pageSize) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<Employee> content = rows.subList(0, pageSize);
+        Employee last = content.get(pageSize - 1);
+        return new KeysetPage<>(List.copyOf(content), new EmployeeKeysetToken(minAge, last.getName(), last.getId()).encode());
+    }
+}
@@ -0,0 +1,36 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a page of the "emp name asc" listing: its (name, id), along with the minAge the listing was made for
+ * Handed to callers as an opaque URL-safe string, so they can't depend on what's inside
+ */
+record EmployeeKeysetToken(int minAge, String name, BigInteger id) {
+    private static final String VERSION = "1";
+
+    String encode() {
+        String plain = VERSION + ':' + minAge + ':' + id + ':' + (name == null ? "-" : "+" + name);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static EmployeeKeysetToken decode(String token) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 4);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed continuation token", e);
+        }
+        if (parts.length != 4 || !VERSION.equals(parts[0]) || parts[3].isEmpty()) {
+            throw new IllegalArgumentException("Malformed continuation token");
+        }
+        try {
+            String name = parts[3].charAt(0) == '+' ? parts[3].substring(1) : null;
+            return new EmployeeKeysetToken(Integer.parseInt(parts[1]), name, new BigInteger(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed continuation token", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set algebra over the employees of EmailGroups, answered by the EmailGroupMembershipIndex without touching the DB
+ * Only loading the matching employees, with findInEmailGroups, goes to the DB - or to the second level cache
+ * Groups are given by id. Ids come back in increasing order
+ */
+public interface EmployeeMembershipRepository {
+
+    /**
+     * @param allOf groups the employees must all be in - at least one
+     * @param noneOf groups the employees must not be in - may be empty
+     */
+    List<BigInteger> findIdsInEmailGroups(Collection<Integer> allOf, Collection<Integer> noneOf);
+
+    List<BigInteger> findIdsInAnyEmailGroup(Collection<Integer> groupIds);
+
+    /**
+     * findIdsInEmailGroups, with the employees then loaded by id in batches
+     */
+    List<Employee> findInEmailGroups(Collection<Integer> allOf, Collection<Integer> noneOf);
+
+    /**
+     * @return the number of employees per group id, for every group with at least one
+     */
+    Map<Integer, Integer> countEmployeesByEmailGroup();
+}
@@ -0,0 +1,71 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.index.CompressedBitmap;
+import com.uberkautilya.jpawithspringboot.index.EmailGroupMembershipIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The employees are loaded with Hibernate's multiLoad: the ones in the second level cache come from it, the others
+ * in batches of "where id in (...)" - a single query for most results
+ */
+class EmployeeMembershipRepositoryImpl implements EmployeeMembershipRepository {
+    private static final int LOAD_BATCH = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private EmailGroupMembershipIndex membershipIndex;
+
+    @Override
+    public List<BigInteger> findIdsInEmailGroups(Collection<Integer> allOf, Collection<Integer> noneOf) {
+        return ids(select(allOf, noneOf));
+    }
+
+    @Override
+    public List<BigInteger> findIdsInAnyEmailGroup(Collection<Integer> groupIds) {
+        return ids(membershipIndex.inAny(groupIds));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Employee> findInEmailGroups(Collection<Integer> allOf, Collection<Integer> noneOf) {
+        List<BigInteger> ids = findIdsInEmailGroups(allOf, noneOf);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Employee> employees = entityManager.unwrap(Session.class).byMultipleIds(Employee.class)
+                .withBatchSize(LOAD_BATCH)
+                .multiLoad(ids);
+        // Employees removed since the index was read come back as null
+        employees.removeIf(Objects::isNull);
+        return employees;
+    }
+
+    @Override
+    public Map<Integer, Integer> countEmployeesByEmailGroup() {
+        return membershipIndex.groupSizes();
+    }
+
+    private CompressedBitmap select(Collection<Integer> allOf, Collection<Integer> noneOf) {
+        CompressedBitmap selected = membershipIndex.inAll(allOf);
+        return noneOf.isEmpty() || selected.isEmpty() ? selected : selected.andNot(membershipIndex.inAny(noneOf));
+    }
+
+    private static List<BigInteger> ids(CompressedBitmap bitmap) {
+        List<BigInteger> ids = new ArrayList<>(bitmap.cardinality());
+        bitmap.forEach(id -> ids.add(BigInteger.valueOf(id)));
+        return ids;
+    }
+}
@@ -1,16 +1,48 @@
 package com.uberkautilya.jpawithspringboot.repository;
 
+import com.uberkautilya.jpawithspringboot.dto.EmployeeSummary;
 import com.uberkautilya.jpawithspringboot.entity.Employee;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * The generic CrudRepository takes in the type of the entity and its ID type
  * The CrudRepository provides all the crud operations
+ * Additional interfaces - fragments - add methods implemented by hand, in classes named after the fragment with an Impl suffix
  */
 @Repository
-public interface EmployeeRepository extends CrudRepository<Employee, BigInteger> {
+public interface EmployeeRepository extends CrudRepository<Employee, BigInteger>, EmployeeStreamingRepository, EmployeeFetchPlanRepository,
+        EmployeeKeysetRepository, EmployeeCachedQueryRepository, EmployeeBulkUpdateRepository, EmployeeMembershipRepository,
+        EmployeeSearchRepository {
 
+    /**
+     * Redeclared to attach a fetch plan: the card comes with the employee, as most callers of findById print it
+     * Use findById(id, EmployeeFetchPlan) to load something else. It is that method which also makes sure the card is loaded
+     * when the employee comes from the second level cache - an @EntityGraph on this method is ignored in that case
+     */
+    @Override
+    default Optional<Employee> findById(BigInteger id) {
+        return findById(id, EmployeeFetchPlan.WITH_CARD);
+    }
+
+    /**
+     * Display-only reads: the columns go straight into immutable records, skipping entity hydration and dirty checking
+     */
+    @Query("select new com.uberkautilya.jpawithspringboot.dto.EmployeeSummary(e.id, e.name, e.age, e.type) from Employee e where e.id = :id")
+    Optional<EmployeeSummary> findSummaryById(BigInteger id);
+
+    @Query("select new com.uberkautilya.jpawithspringboot.dto.EmployeeSummary(e.id, e.name, e.age, e.type) from Employee e order by e.id")
+    List<EmployeeSummary> findAllSummaries();
+
+    /**
+     * The projection counterpart of the "emp name asc" named query
+     */
+    @Query("select new com.uberkautilya.jpawithspringboot.dto.EmployeeSummary(e.id, e.name, e.age, e.type) from Employee e " +
+            "where e.age >= :minAge order by e.name")
+    List<EmployeeSummary> findSummariesByMinAgeOrderByName(int minAge);
 }
@@ -0,0 +1,19 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Type-ahead search by the start of the words of the name or of the SSN - answered by the EmployeeSearchIndex, not a LIKE scan
+ */
+public interface EmployeeSearchRepository {
+
+    List<BigInteger> searchIds(String query, int limit);
+
+    /**
+     * searchIds, with the employees then loaded in one batch, in the same order
+     */
+    List<Employee> search(String query, int limit);
+}
@@ -0,0 +1,42 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.index.EmployeeSearchIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Loaded like EmployeeMembershipRepositoryImpl does: multiLoad, from the second level cache or a single "where id in (...)"
+ */
+class EmployeeSearchRepositoryImpl implements EmployeeSearchRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private EmployeeSearchIndex searchIndex;
+
+    @Override
+    public List<BigInteger> searchIds(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Employee> search(String query, int limit) {
+        List<BigInteger> ids = searchIndex.search(query, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Employee> employees = entityManager.unwrap(Session.class).byMultipleIds(Employee.class)
+                .withBatchSize(ids.size())
+                .multiLoad(ids);
+        employees.removeIf(Objects::isNull);
+        return employees;
+    }
+}
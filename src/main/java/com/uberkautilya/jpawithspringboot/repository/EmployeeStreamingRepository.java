@@ -0,0 +1,17 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+
+import java.util.stream.Stream;
+
+/**
+ * Constant memory alternative to findAll(). Has to be called within a transaction, and the Stream closed after use
+ * fetchSize is the JDBC fetch size, detachEvery the number of rows after which the already read ones are detached
+ * The no-arg version takes both from jpa.streaming.fetch-size and jpa.streaming.detach-every
+ */
+public interface EmployeeStreamingRepository {
+
+    Stream<Employee> streamAll();
+
+    Stream<Employee> streamAll(int fetchSize, int detachEvery);
+}
@@ -0,0 +1,33 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.stream.Stream;
+
+/**
+ * Spring Data finds this implementation by the name of the fragment interface followed by Impl, and mixes it into EmployeeRepository
+ * The accessCard is join fetched, so it comes with the row instead of a query per employee
+ */
+class EmployeeStreamingRepositoryImpl implements EmployeeStreamingRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${jpa.streaming.fetch-size:500}")
+    private int fetchSize;
+    @Value("${jpa.streaming.detach-every:500}")
+    private int detachEvery;
+
+    @Override
+    public Stream<Employee> streamAll() {
+        return streamAll(fetchSize, detachEvery);
+    }
+
+    @Override
+    public Stream<Employee> streamAll(int fetchSize, int detachEvery) {
+        return StreamingQuerySupport.stream(entityManager,
+                entityManager.createQuery("select e from Employee e left join fetch e.accessCard order by e.id", Employee.class),
+                fetchSize, detachEvery);
+    }
+}
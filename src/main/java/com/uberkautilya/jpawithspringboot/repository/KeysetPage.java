@@ -0,0 +1,14 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import java.util.List;
+
+/**
+ * A page read by keyset (seek) pagination
+ * nextToken is passed back to get the following page. It is null on the last page
+ */
+public record KeysetPage<T>(List<T> content, String nextToken) {
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
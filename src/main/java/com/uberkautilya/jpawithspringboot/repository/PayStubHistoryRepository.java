@@ -0,0 +1,43 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.dto.PayStubSummary;
+import com.uberkautilya.jpawithspringboot.dto.PayrollTotal;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * PayStub queries over both tiers: the PAY_STUB table for the recent periods and the PayStubArchive for the closed ones
+ * - see PayStubArchiveService. Callers get a single list either way, ordered by period
+ */
+public interface PayStubHistoryRepository {
+
+    List<PayStubSummary> findSummariesByEmployeeId(BigInteger employeeId);
+
+    /**
+     * Pay stubs whose payPeriodStart is in [from, to). Only the archived periods overlapping it are read -
+     * none when the range is within the periods still in the table
+     */
+    List<PayStubSummary> findSummariesByEmployeeIdBetween(BigInteger employeeId, Date from, Date to);
+
+    /**
+     * Pay stub count and salary sum per payPeriodStart. The archived periods come from their index, without reading a pay stub
+     */
+    List<PayrollTotal<Date>> totalsByPeriod();
+
+    /**
+     * Pay stub count and salary sum per EmployeeType. For the pay stubs in the table, the type the employee has now. The archived
+     * periods keep their totals by type in their index - by the type the employee had when they were archived - and are read
+     * from there, without reading a pay stub or an employee. Those of employees since removed still count. Pay stubs without
+     * an employee are left out
+     */
+    List<PayrollTotal<EmployeeType>> totalsByType();
+
+    /**
+     * Per email group, ordered by name - the groups the employees are in now, and for the archived periods the groups they were
+     * in when archived, from the index as for totalsByType
+     */
+    List<PayrollTotal<String>> totalsByEmailGroup();
+}
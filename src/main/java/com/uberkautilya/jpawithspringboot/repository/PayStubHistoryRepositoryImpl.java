@@ -0,0 +1,136 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.archive.EmailGroupKey;
+import com.uberkautilya.jpawithspringboot.archive.PayStubArchive;
+import com.uberkautilya.jpawithspringboot.dto.PayStubSummary;
+import com.uberkautilya.jpawithspringboot.dto.PayrollTotal;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A pay stub in both tiers - archived, but its delete from the table not committed yet - is read from the table only
+ * (the rollups, from the archive index alone, count it in both)
+ */
+class PayStubHistoryRepositoryImpl implements PayStubHistoryRepository {
+    private static final String SUMMARY = "select new com.uberkautilya.jpawithspringboot.dto.PayStubSummary(p.id, p.employee.id, " +
+            "p.payPeriodStart, p.payPeriodEnd, p.salary) from PayStub p where p.employee.id = :employeeId";
+    private static final String ORDER = " order by p.payPeriodStart, p.id";
+    private static final Comparator<PayStubSummary> PERIOD_ORDER = Comparator.comparing((PayStubSummary row) -> row.payPeriodStart().getTime())
+            .thenComparingInt(PayStubSummary::id);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private PayStubArchive archive;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PayStubSummary> findSummariesByEmployeeId(BigInteger employeeId) {
+        List<PayStubSummary> hot = entityManager.createQuery(SUMMARY + ORDER, PayStubSummary.class)
+                .setParameter("employeeId", employeeId)
+                .getResultList();
+        return merge(hot, archive.findByEmployeeId(employeeId, null, null));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PayStubSummary> findSummariesByEmployeeIdBetween(BigInteger employeeId, Date from, Date to) {
+        List<PayStubSummary> hot = entityManager.createQuery(SUMMARY + " and p.payPeriodStart >= :from and p.payPeriodStart < :to" + ORDER,
+                        PayStubSummary.class)
+                .setParameter("employeeId", employeeId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+        List<PayStubSummary> archived = new ArrayList<>();
+        YearMonth lastPeriod = archive.periodOf(new Date(to.getTime() - 1));
+        for (PayStubSummary row : archive.findByEmployeeId(employeeId, archive.periodOf(from), lastPeriod)) {
+            if (!row.payPeriodStart().before(from) && row.payPeriodStart().before(to)) {
+                archived.add(row);
+            }
+        }
+        return merge(hot, archived);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<PayrollTotal<Date>> totalsByPeriod() {
+        TreeMap<Long, PayrollTotal<Date>> byStart = new TreeMap<>();
+        List<PayrollTotal<Date>> hot = entityManager.createQuery("select new com.uberkautilya.jpawithspringboot.dto.PayrollTotal(" +
+                        "p.payPeriodStart, count(p), sum(p.salary)) from PayStub p group by p.payPeriodStart", PayrollTotal.class)
+                .getResultList().stream().map(total -> (PayrollTotal<Date>) total).toList();
+        for (List<PayrollTotal<Date>> tier : List.of(archive.totalsByPeriod(), hot)) {
+            for (PayrollTotal<Date> total : tier) {
+                byStart.merge(total.key().getTime(), total, PayStubHistoryRepositoryImpl::plus);
+            }
+        }
+        return new ArrayList<>(byStart.values());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PayrollTotal<EmployeeType>> totalsByType() {
+        Map<EmployeeType, PayrollTotal<EmployeeType>> byType = new LinkedHashMap<>();
+        for (Object[] row : entityManager.createQuery("select e.type, count(p), sum(p.salary) from PayStub p join p.employee e " +
+                "group by e.type", Object[].class).getResultList()) {
+            EmployeeType type = (EmployeeType) row[0];
+            byType.merge(type, new PayrollTotal<>(type, (Long) row[1], (Double) row[2]), PayStubHistoryRepositoryImpl::plus);
+        }
+        for (PayrollTotal<EmployeeType> total : archive.totalsByType()) {
+            byType.merge(total.key(), total, PayStubHistoryRepositoryImpl::plus);
+        }
+        return new ArrayList<>(byType.values());
+    }
+
+    /**
+     * Keyed by group id: groups of the same name are distinct groups
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<PayrollTotal<String>> totalsByEmailGroup() {
+        Map<Integer, PayrollTotal<String>> byGroup = new HashMap<>();
+        for (Object[] row : entityManager.createQuery("select g.id, g.name, count(p), sum(p.salary) " +
+                "from PayStub p join p.employee e join e.emailGroupList g group by g.id, g.name", Object[].class).getResultList()) {
+            byGroup.merge((Integer) row[0], new PayrollTotal<>((String) row[1], (Long) row[2], (Double) row[3]), PayStubHistoryRepositoryImpl::plus);
+        }
+        for (PayrollTotal<EmailGroupKey> total : archive.totalsByEmailGroup()) {
+            byGroup.merge(total.key().id(), new PayrollTotal<>(total.key().name(), total.payStubs(), total.totalSalary()),
+                    PayStubHistoryRepositoryImpl::plus);
+        }
+        List<PayrollTotal<String>> totals = new ArrayList<>(byGroup.values());
+        totals.sort(Comparator.comparing(PayrollTotal::key));
+        return totals;
+    }
+
+    private static <K> PayrollTotal<K> plus(PayrollTotal<K> left, PayrollTotal<K> right) {
+        return new PayrollTotal<>(left.key(), left.payStubs() + right.payStubs(), left.totalSalary() + right.totalSalary());
+    }
+
+    private static List<PayStubSummary> merge(List<PayStubSummary> hot, List<PayStubSummary> archived) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Set<Integer> hotIds = new HashSet<>();
+        hot.forEach(row -> hotIds.add(row.id()));
+        List<PayStubSummary> merged = new ArrayList<>(hot);
+        archived.stream().filter(row -> !hotIds.contains(row.id())).forEach(merged::add);
+        merged.sort(PERIOD_ORDER);
+        return merged;
+    }
+}
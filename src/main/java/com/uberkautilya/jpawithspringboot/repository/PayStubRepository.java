@@ -0,0 +1,10 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.PayStub;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Reads of the pay stubs of an employee, and the payroll rollups, span the table and the archive - see PayStubHistoryRepository
+ */
+public interface PayStubRepository extends CrudRepository<PayStub, Integer>, PayStubHistoryRepository {
+}
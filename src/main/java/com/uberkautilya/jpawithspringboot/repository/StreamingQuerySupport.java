@@ -0,0 +1,57 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns a query into a Stream that reads the result set forward only, instead of getResultList() which materializes every row
+ * fetchSize is the number of rows the JDBC driver pulls per round trip
+ * The results are loaded read-only - no snapshot is kept for dirty checking
+ * Every detachEvery rows the persistence context is cleared BEFORE the next row is read - so the rows already handed to the caller
+ * are detached and can be garbage collected, while the row being handed out is still managed (its LAZY associations still load)
+ * Memory use is thus bounded by detachEvery, whatever the number of rows
+ *
+ * Note that clear() detaches everything in the persistence context of the current transaction, not only the streamed rows.
+ * Run the stream in its own read-only transaction and close it when done - try-with-resources - to release the cursor
+ */
+final class StreamingQuerySupport {
+
+    private StreamingQuerySupport() {
+    }
+
+    static <T> Stream<T> stream(EntityManager entityManager, TypedQuery<T> typedQuery, int fetchSize, int detachEvery) {
+        if (fetchSize < 1 || detachEvery < 1) {
+            throw new IllegalArgumentException("fetchSize and detachEvery must be positive");
+        }
+        Query<T> query = typedQuery.unwrap(Query.class);
+        query.setFetchSize(fetchSize);
+        query.setReadOnly(true);
+        ScrollableResults<T> results = query.scroll(ScrollMode.FORWARD_ONLY);
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private long count;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (count > 0 && count % detachEvery == 0) {
+                    entityManager.clear();
+                }
+                if (!results.next()) {
+                    return false;
+                }
+                count++;
+                action.accept(results.get());
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(results::close);
+    }
+}
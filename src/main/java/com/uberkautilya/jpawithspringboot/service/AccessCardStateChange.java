@@ -0,0 +1,38 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.dto.AccessCardSummary;
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+
+/**
+ * The changes to the state of one AccessCard not yet written - a null field is left as it is
+ * Several changes to the same card coalesce into one with then(): the newer value of each field wins
+ */
+record AccessCardStateChange(Boolean active, String firmwareVersion) {
+
+    static AccessCardStateChange activation(boolean active) {
+        return new AccessCardStateChange(active, null);
+    }
+
+    static AccessCardStateChange firmware(String firmwareVersion) {
+        return new AccessCardStateChange(null, firmwareVersion);
+    }
+
+    AccessCardStateChange then(AccessCardStateChange newer) {
+        return new AccessCardStateChange(newer.active != null ? newer.active : active,
+                newer.firmwareVersion != null ? newer.firmwareVersion : firmwareVersion);
+    }
+
+    void applyTo(AccessCard card) {
+        if (active != null) {
+            card.setActive(active);
+        }
+        if (firmwareVersion != null) {
+            card.setFirmwareVersion(firmwareVersion);
+        }
+    }
+
+    AccessCardSummary applyTo(AccessCardSummary card) {
+        return new AccessCardSummary(card.id(), card.issueDate(), active != null ? active : card.active(),
+                firmwareVersion != null ? firmwareVersion : card.firmwareVersion());
+    }
+}
@@ -0,0 +1,248 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.dto.AccessCardSummary;
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Card activations and firmware reports - high frequency changes to the state of AccessCards, often many for the same card in a burst
+ *
+ * access-card.write-mode=synchronous, the default, writes each change in a transaction of its own before returning.
+ * With write-behind a change goes into a buffer keyed by card instead, where it coalesces with the changes to that card not yet
+ * written - the newer value of each field wins. The buffer is written in one transaction, card rows loaded access-card.write-behind.batch-size
+ * at a time and updated in JDBC batches, every access-card.write-behind.interval or as soon as access-card.write-behind.max-pending
+ * cards are waiting. Rows written per interval are thus at most the distinct cards changed in it, however many changes came in
+ *
+ * find() sees the buffered state: the buffered changes over the ones being written over the row. A change is moved from the buffer to
+ * the changes being written under the lock of its key, and only dropped from those once its transaction committed - there is no
+ * moment where a reader would miss it. A flush that fails puts its changes back, under the newer ones buffered meanwhile, for the next
+ * The buffer is drained on shutdown. What is buffered when the JVM dies is lost - write-behind trades that window for the write rate.
+ * Changes to cards that don't exist are accepted, and dropped at the flush - see missingCards
+ *
+ * The write of a change doesn't check what happened to the card since it was made. The bulk statements on the cards -
+ * EmployeeOffboardingService, FirmwareRolloutService - call flush() first, so a change made before one is never written after it.
+ * A change made while one runs is ordered after it
+ */
+@Service
+public class AccessCardStateService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccessCardStateService.class);
+
+    public enum Mode {SYNCHRONOUS, WRITE_BEHIND}
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Mode mode;
+    private final TransactionTemplate writeTransaction;
+    private final int maxPending;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+    private final Map<Integer, AccessCardStateChange> pending = new ConcurrentHashMap<>();
+    private final Map<Integer, AccessCardStateChange> inFlight = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder cardsWritten = new LongAdder();
+    private final LongAdder missingCards = new LongAdder();
+    private volatile boolean closed;
+
+    public AccessCardStateService(PlatformTransactionManager transactionManager,
+                                  @Value("${access-card.write-mode:synchronous}") String mode,
+                                  @Value("${access-card.write-behind.interval:1s}") Duration interval,
+                                  @Value("${access-card.write-behind.max-pending:1000}") int maxPending,
+                                  @Value("${access-card.write-behind.batch-size:500}") int batchSize) {
+        if (maxPending < 1 || batchSize < 1 || interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("access-card.write-behind interval, max-pending and batch-size must be positive");
+        }
+        this.mode = Mode.valueOf(mode.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        if (this.mode == Mode.WRITE_BEHIND) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "access-card-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::flushQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setActive(int cardId, boolean active) {
+        update(cardId, AccessCardStateChange.activation(active));
+    }
+
+    public void reportFirmware(int cardId, String firmwareVersion) {
+        if (firmwareVersion == null) {
+            throw new IllegalArgumentException("A firmware report needs a version");
+        }
+        update(cardId, AccessCardStateChange.firmware(firmwareVersion));
+    }
+
+    /**
+     * The card as the changes made so far leave it - written or not
+     */
+    public Optional<AccessCardSummary> find(int cardId) {
+        // The buffer first: a change leaves it for inFlight, never the other way
+        AccessCardStateChange buffered = pending.get(cardId);
+        AccessCardStateChange writing = inFlight.get(cardId);
+        AccessCard card = entityManager.find(AccessCard.class, cardId);
+        if (card == null) {
+            return Optional.empty();
+        }
+        AccessCardSummary summary = new AccessCardSummary(card.getId(), card.getIssueDate(), card.isActive(), card.getFirmwareVersion());
+        if (writing != null) {
+            summary = writing.applyTo(summary);
+        }
+        if (buffered != null) {
+            summary = buffered.applyTo(summary);
+        }
+        return Optional.of(summary);
+    }
+
+    /**
+     * Writes what is buffered now, on the calling thread - and waits for a flush under way. Nothing to do in synchronous mode
+     * Not to be called in a transaction holding locks on cards: the write has one of its own
+     * @throws RuntimeException what the write failed with - the changes are buffered again
+     */
+    public void flush() {
+        if (mode == Mode.WRITE_BEHIND) {
+            flushPending();
+        }
+    }
+
+    public AccessCardWriteStats stats() {
+        return new AccessCardWriteStats(updates.sum(), coalesced.sum(), flushes.sum(), failedFlushes.sum(), cardsWritten.sum(),
+                missingCards.sum(), pending.size());
+    }
+
+    private void update(int cardId, AccessCardStateChange change) {
+        if (closed) {
+            throw new IllegalStateException("The AccessCardStateService is shut down");
+        }
+        updates.increment();
+        if (mode == Mode.SYNCHRONOUS) {
+            writeTransaction.executeWithoutResult(status -> write(Map.of(cardId, change)));
+            return;
+        }
+        pending.compute(cardId, (id, older) -> {
+            if (older == null) {
+                return change;
+            }
+            coalesced.increment();
+            return older.then(change);
+        });
+        if (pending.size() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flushPending();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Writing the buffered access card changes failed, retrying at the next flush", e);
+        }
+    }
+
+    /**
+     * Synchronized: the scheduled flushes, the size triggered ones, flush() and the drain at shutdown write one at a time
+     */
+    private synchronized void flushPending() {
+        flushRequested.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Integer, AccessCardStateChange> batch = new HashMap<>();
+        for (Integer cardId : pending.keySet()) {
+            pending.computeIfPresent(cardId, (id, change) -> {
+                inFlight.put(id, change);
+                batch.put(id, change);
+                return null;
+            });
+        }
+        try {
+            writeTransaction.executeWithoutResult(status -> write(batch));
+            flushes.increment();
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            batch.forEach((id, change) -> pending.merge(id, change, (newer, older) -> older.then(newer)));
+            throw e;
+        } finally {
+            batch.forEach(inFlight::remove);
+        }
+    }
+
+    /**
+     * Loads the cards batch-size ids at a time and applies the changes - Hibernate writes the dirty ones in JDBC batches at the flush
+     */
+    private void write(Map<Integer, AccessCardStateChange> changes) {
+        List<Integer> ids = new ArrayList<>(changes.keySet());
+        int found = 0;
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            List<AccessCard> cards = entityManager.createQuery("select c from AccessCard c where c.id in :ids", AccessCard.class)
+                    .setParameter("ids", chunk)
+                    .getResultList();
+            for (AccessCard card : cards) {
+                changes.get(card.getId()).applyTo(card);
+            }
+            found += cards.size();
+            entityManager.flush();
+            entityManager.clear();
+        }
+        cardsWritten.add(found);
+        if (found < ids.size()) {
+            missingCards.add(ids.size() - found);
+            LOGGER.warn("{} of {} access cards changed were not found, their changes are dropped", ids.size() - found, ids.size());
+        }
+    }
+
+    /**
+     * Stops taking changes, lets a flush under way finish, and writes what is left in the buffer
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closed = true;
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+            LOGGER.warn("The access card write-behind flush did not finish in 30s");
+        }
+        flushPending();
+    }
+}
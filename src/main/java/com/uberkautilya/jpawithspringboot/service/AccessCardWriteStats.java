@@ -0,0 +1,17 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+/**
+ * Counters of the AccessCardStateService since startup
+ * updates is what callers asked for, cardsWritten the card rows written for them - with write-behind, at most one per card per flush.
+ * coalesced counts the updates folded into one already buffered for the same card, missingCards the buffered cards found deleted
+ */
+public record AccessCardWriteStats(long updates, long coalesced, long flushes, long failedFlushes, long cardsWritten, long missingCards,
+                                   int pending) {
+
+    /**
+     * Updates per row written - 1 when every update is written on its own
+     */
+    public double coalescingRatio() {
+        return cardsWritten == 0 ? 0 : (double) updates / cardsWritten;
+    }
+}
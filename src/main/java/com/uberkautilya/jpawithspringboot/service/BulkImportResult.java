@@ -0,0 +1,46 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of a single run of the EmployeeBulkImportService
+ * rows is the number of Employee rows written, chunks the number of transactions it took to write them
+ * failures the chunks that were rolled back, none of their rows written
+ */
+public record BulkImportResult(long rows, int chunks, Duration elapsed, List<FailedChunk> failures) {
+
+    public BulkImportResult {
+        failures = List.copyOf(failures);
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    public long failedRows() {
+        return failures.stream().mapToLong(FailedChunk::rows).sum();
+    }
+
+    public double rowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : rows * 1_000_000_000d / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkImportResult{" +
+                "rows=" + rows +
+                ", chunks=" + chunks +
+                ", elapsed=" + elapsed.toMillis() + "ms" +
+                ", rowsPerSecond=" + String.format("%.1f", rowsPerSecond()) +
+                ", failedChunks=" + failures.size() +
+                '}';
+    }
+
+    /**
+     * A chunk of the input that could not be written: its position in the input - firstRow counts from 0 - and why
+     */
+    public record FailedChunk(int chunk, long firstRow, int rows, Throwable cause) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.PersistenceUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Writes large numbers of employees without going through EmployeeRepository.save() one row at a time
+ * The incoming stream is cut into chunks. Each chunk is written on a worker thread in its own EntityManager and transaction,
+ * the same way saveWithEntityManagerFactory() in the main class does it for a single row
+ * Within a chunk the rows are persisted, and every hibernate.jdbc.batch_size rows the context is flushed and cleared.
+ * The flush turns the pending inserts into JDBC batches (hibernate.order_inserts groups them per table),
+ * the clear drops the written entities so memory stays bounded whatever the size of the input
+ * At most parallelism * 2 chunks are held in memory at any time - the reader blocks until a worker frees a slot
+ */
+@Service
+public class EmployeeBulkImportService {
+    @PersistenceUnit
+    EntityManagerFactory emFactory;
+
+    private final int chunkSize;
+    private final int flushSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    public EmployeeBulkImportService(@Value("${employee.import.chunk-size:1000}") int chunkSize,
+                                     @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int flushSize,
+                                     @Value("${employee.import.parallelism:4}") int parallelism) {
+        if (chunkSize < 1 || flushSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("chunk-size, batch_size and parallelism must all be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.flushSize = flushSize;
+        this.parallelism = parallelism;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "employee-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Persists every employee of the stream along with its AccessCard if one is set
+     * EmailGroups in the emailGroupList are linked by id - they must already exist, as the same group is typically shared
+     * by employees that end up in different chunks and hence different transactions
+     * Chunks commit independently. One that fails is rolled back and listed in the failures of the result - which rows of the
+     * input it held and why - the rest still commit. Only an interruption of the caller ends the import with an exception
+     */
+    public BulkImportResult importEmployees(Stream<Employee> employees) {
+        long start = System.nanoTime();
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        List<SubmittedChunk> submitted = new ArrayList<>();
+        List<Employee> chunk = new ArrayList<>(chunkSize);
+        long read = 0;
+        try (employees) {
+            for (Employee employee : (Iterable<Employee>) employees::iterator) {
+                chunk.add(employee);
+                if (chunk.size() == chunkSize) {
+                    submitted.add(submit(submitted.size(), read, chunk, inFlight));
+                    read += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            submitted.add(submit(submitted.size(), read, chunk, inFlight));
+        }
+
+        long rows = 0;
+        List<BulkImportResult.FailedChunk> failures = new ArrayList<>();
+        for (SubmittedChunk submittedChunk : submitted) {
+            try {
+                rows += submittedChunk.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the import to finish", e);
+            } catch (ExecutionException e) {
+                failures.add(new BulkImportResult.FailedChunk(submittedChunk.index, submittedChunk.firstRow, submittedChunk.rows, e.getCause()));
+            }
+        }
+        return new BulkImportResult(rows, submitted.size(), Duration.ofNanos(System.nanoTime() - start), failures);
+    }
+
+    private SubmittedChunk submit(int index, long firstRow, List<Employee> chunk, Semaphore inFlight) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing an import chunk", e);
+        }
+        try {
+            return new SubmittedChunk(index, firstRow, chunk.size(), executor.submit(() -> {
+                try {
+                    return writeChunk(chunk);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private int writeChunk(List<Employee> chunk) {
+        EntityManager eManager = emFactory.createEntityManager();
+        EntityTransaction transaction = eManager.getTransaction();
+        try {
+            transaction.begin();
+            int written = 0;
+            for (Employee employee : chunk) {
+                AccessCard accessCard = employee.getAccessCard();
+                if (accessCard != null && accessCard.getId() == 0) {
+                    eManager.persist(accessCard);
+                }
+                Set<EmailGroup> emailGroups = new HashSet<>();
+                for (EmailGroup emailGroup : employee.getEmailGroupList()) {
+                    if (emailGroup.getId() == 0) {
+                        throw new IllegalArgumentException("EmailGroup '" + emailGroup.getName() + "' has to be saved before importing its members");
+                    }
+                    emailGroups.add(eManager.getReference(EmailGroup.class, emailGroup.getId()));
+                }
+                employee.setEmailGroupList(emailGroups);
+                eManager.persist(employee);
+                if (++written % flushSize == 0) {
+                    eManager.flush();
+                    eManager.clear();
+                }
+            }
+            eManager.flush();
+            eManager.clear();
+            transaction.commit();
+            return written;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            eManager.close();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private record SubmittedChunk(int index, long firstRow, int rows, Future<Integer> future) {
+    }
+}
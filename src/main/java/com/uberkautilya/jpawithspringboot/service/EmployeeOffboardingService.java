@@ -0,0 +1,108 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.repository.EmployeeBulkChangeEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Removes employees along with everything that depends on them, with six set-based statements per batch
+ *
+ * employeeRepository.delete() goes through CascadeType.REMOVE on payStubList: it loads every PayStub of the employee and deletes
+ * them one by one - for years of monthly pay stubs, hundreds of selects and deletes per employee. Here, per batch of ids:
+ * the employees that exist are locked, with a select of their ids, and the ids of their pay stubs are read - the
+ * EmployeeBulkChangeEvent names exactly the rows removed. The pay stubs go with one DELETE (using the index on the emp_id foreign key), the access cards are deactivated - the card rows stay,
+ * they are only unlinked by the removal of their employee - and then the employees go with one JPQL DELETE.
+ * For that one Hibernate first deletes the EMAIL_GROUP_MAPPING rows of the employees, as the table of a collection Employee owns
+ * Each batch of employee.offboarding.batch-size ids is its own transaction
+ * Pay stubs already in the PayStubArchive are kept: the archive is the payroll history, it is not rewritten for a departure
+ * The changes the AccessCardStateService buffers in write-behind mode are written before each batch: an activation made before
+ * the offboarding must not be written after it, over the deactivation
+ *
+ * Keeping the caches consistent: Hibernate evicts the second level cache regions of the entities a bulk JPQL statement touches,
+ * and of the collections those entities take part in - Employee.emailGroupList here. The persistence context is cleared after
+ * each batch, as the employees it may hold are gone, and an EmployeeBulkChangeEvent lets the query result cache drop what it holds
+ */
+@Service
+public class EmployeeOffboardingService {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate batchTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AccessCardStateService accessCardStateService;
+    private final int batchSize;
+
+    public EmployeeOffboardingService(PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                                      AccessCardStateService accessCardStateService,
+                                      @Value("${employee.offboarding.batch-size:500}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("employee.offboarding.batch-size must be positive, was " + batchSize);
+        }
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+        this.accessCardStateService = accessCardStateService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Batches commit independently: if one fails, the batches before it stay committed and the exception is thrown
+     * Ids of employees that don't exist are ignored
+     */
+    public OffboardingResult offboard(Collection<BigInteger> employeeIds) {
+        long start = System.nanoTime();
+        List<BigInteger> ids = List.copyOf(employeeIds);
+        OffboardingResult result = new OffboardingResult(0, 0, 0, 0, Duration.ZERO);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<BigInteger> batch = new ArrayList<>(ids.subList(from, Math.min(from + batchSize, ids.size())));
+            accessCardStateService.flush();
+            result = result.plus(batchTransaction.execute(status -> offboardBatch(batch)));
+        }
+        return new OffboardingResult(result.employees(), result.payStubs(), result.accessCardsDeactivated(),
+                result.batches(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private OffboardingResult offboardBatch(List<BigInteger> requestedIds) {
+        List<BigInteger> ids = entityManager.createQuery("select e.id from Employee e where e.id in :ids order by e.id", BigInteger.class)
+                .setParameter("ids", requestedIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        if (ids.isEmpty()) {
+            return new OffboardingResult(0, 0, 0, 1, Duration.ZERO);
+        }
+        List<Integer> payStubIds = entityManager.createQuery("select p.id from PayStub p where p.employee.id in :ids", Integer.class)
+                .setParameter("ids", ids)
+                .getResultList();
+        int payStubs = entityManager.createQuery("delete from PayStub p where p.employee.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        if (payStubs != payStubIds.size()) {
+            // Pay stubs added in between for an employee being removed: the event would miss them
+            throw new IllegalStateException("Pay stubs were added to employees being offboarded, " + payStubs + " deleted for "
+                    + payStubIds.size() + " read. Nothing of this batch is removed, run it again");
+        }
+        int accessCards = entityManager.createQuery("update AccessCard c set c.isActive = false " +
+                        "where c.id in (select e.accessCard.id from Employee e where e.id in :ids)")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        int employees = entityManager.createQuery("delete from Employee e where e.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        entityManager.clear();
+        eventPublisher.publishEvent(EmployeeBulkChangeEvent.removed(ids, payStubIds));
+        return new OffboardingResult(employees, payStubs, accessCards, 1, Duration.ZERO);
+    }
+}
@@ -0,0 +1,21 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import java.time.Duration;
+
+/**
+ * Reported by the FirmwareRolloutService after every chunk it commits
+ * lastCardId out of maxCardId - the highest id when the run started - tells how far through the table the rollout is
+ */
+public record FirmwareRolloutProgress(String name, int lastCardId, int maxCardId, long updatedCards, int chunks, Duration elapsed,
+                                      boolean completed) {
+
+    public double percentDone() {
+        return completed || maxCardId <= 0 ? 100 : Math.min(100, lastCardId * 100d / maxCardId);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.1f%% (card %d of %d), %d cards updated in %d chunks, %d ms%s", name, percentDone(), lastCardId,
+                maxCardId, updatedCards, chunks, elapsed.toMillis(), completed ? ", completed" : "");
+    }
+}
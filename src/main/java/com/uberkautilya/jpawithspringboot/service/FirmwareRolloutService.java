@@ -0,0 +1,158 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.entity.FirmwareRolloutCheckpoint;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Moves the firmware of every active AccessCard on one of the source versions to the target version, without loading a single card
+ * Only the versions named are moved: a card already past the target - or on a version nobody meant to replace - is left as it is,
+ * and so is a card with no firmware reported
+ *
+ * The cards are walked in id order, chunk-size ids at a time. Each chunk is one UPDATE limited to its id range - "where id > lo and id <= hi" -
+ * committed in its own transaction together with the FirmwareRolloutCheckpoint. So the only rows locked at any time are the matching
+ * cards of one chunk, and a rollout that stops - failure, shutdown - resumes after the last committed chunk when run again with the same name
+ * Between chunks the job pauses for firmware-rollout.pause, leaving room to the regular traffic on the table
+ *
+ * Hibernate evicts the AccessCard second level cache region after each chunk's UPDATE, as for any bulk statement on a cached entity
+ * The firmware reports the AccessCardStateService buffers in write-behind mode are written before each chunk, so that none made
+ * before it is written after it
+ */
+@Service
+public class FirmwareRolloutService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FirmwareRolloutService.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate chunkTransaction;
+    private final AccessCardStateService accessCardStateService;
+    private final int chunkSize;
+    private final Duration pause;
+
+    public FirmwareRolloutService(PlatformTransactionManager transactionManager, AccessCardStateService accessCardStateService,
+                                  @Value("${firmware-rollout.chunk-size:500}") int chunkSize,
+                                  @Value("${firmware-rollout.pause:100ms}") Duration pause) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("firmware-rollout.chunk-size must be positive, was " + chunkSize);
+        }
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.accessCardStateService = accessCardStateService;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+    }
+
+    public FirmwareRolloutProgress rollout(String name, Set<String> sourceVersions, String targetVersion) {
+        return rollout(name, sourceVersions, targetVersion, progress -> LOGGER.info("Firmware rollout {}", progress));
+    }
+
+    /**
+     * Runs the rollout called name, or resumes it if it has run before - with the same versions. A completed rollout is not run again
+     * @param sourceVersions the versions to move from. Must not include the target, nor contain a comma
+     * @param progressListener called after each chunk has committed. Whatever it throws stops the rollout - after that chunk
+     * @return the progress when the rollout completed
+     */
+    public FirmwareRolloutProgress rollout(String name, Set<String> sourceVersions, String targetVersion,
+                                           Consumer<FirmwareRolloutProgress> progressListener) {
+        if (sourceVersions.isEmpty() || sourceVersions.contains(targetVersion)
+                || sourceVersions.stream().anyMatch(version -> version.contains(","))) {
+            throw new IllegalArgumentException("Source versions " + sourceVersions + " must be given, without commas and without the target "
+                    + targetVersion);
+        }
+        long start = System.nanoTime();
+        String sources = String.join(",", new TreeSet<>(sourceVersions));
+        FirmwareRolloutCheckpoint checkpoint = chunkTransaction.execute(status -> checkpoint(name, sources, targetVersion));
+        Integer maxCardId = chunkTransaction.execute(status -> entityManager.createQuery("select max(c.id) from AccessCard c", Integer.class)
+                .getSingleResult());
+        int maxId = maxCardId == null ? 0 : maxCardId;
+
+        while (!checkpoint.isCompleted()) {
+            accessCardStateService.flush();
+            checkpoint = chunkTransaction.execute(status -> runChunk(name));
+            FirmwareRolloutProgress progress = new FirmwareRolloutProgress(name, checkpoint.getLastCardId(), maxId, checkpoint.getUpdatedCards(),
+                    checkpoint.getChunks(), Duration.ofNanos(System.nanoTime() - start), checkpoint.isCompleted());
+            progressListener.accept(progress);
+            if (!checkpoint.isCompleted()) {
+                pause();
+            }
+        }
+        return new FirmwareRolloutProgress(name, checkpoint.getLastCardId(), maxId, checkpoint.getUpdatedCards(), checkpoint.getChunks(),
+                Duration.ofNanos(System.nanoTime() - start), true);
+    }
+
+    private FirmwareRolloutCheckpoint checkpoint(String name, String sourceVersions, String targetVersion) {
+        FirmwareRolloutCheckpoint checkpoint = entityManager.find(FirmwareRolloutCheckpoint.class, name);
+        if (checkpoint == null) {
+            checkpoint = new FirmwareRolloutCheckpoint(name, sourceVersions, targetVersion);
+            entityManager.persist(checkpoint);
+        } else if (!checkpoint.getTargetVersion().equals(targetVersion) || !checkpoint.getSourceVersions().equals(sourceVersions)) {
+            throw new IllegalStateException("Rollout " + name + " was started from versions " + checkpoint.getSourceVersions()
+                    + " to " + checkpoint.getTargetVersion() + ", not from " + sourceVersions + " to " + targetVersion);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * The upper bound of the chunk is the chunk-size-th id past the checkpoint - or the last id - read from the primary key index
+     * The checkpoint row is read with the chunk, so two runs of the same rollout at once would update it in turn rather than skip cards
+     */
+    private FirmwareRolloutCheckpoint runChunk(String name) {
+        FirmwareRolloutCheckpoint checkpoint = entityManager.find(FirmwareRolloutCheckpoint.class, name,
+                LockModeType.PESSIMISTIC_WRITE);
+        int lo = checkpoint.getLastCardId();
+        List<Integer> upper = entityManager.createQuery("select c.id from AccessCard c where c.id > :lo order by c.id", Integer.class)
+                .setParameter("lo", lo)
+                .setFirstResult(chunkSize - 1)
+                .setMaxResults(1)
+                .getResultList();
+        int hi;
+        if (upper.isEmpty()) {
+            Integer last = entityManager.createQuery("select max(c.id) from AccessCard c where c.id > :lo", Integer.class)
+                    .setParameter("lo", lo)
+                    .getSingleResult();
+            if (last == null) {
+                checkpoint.complete();
+                return checkpoint;
+            }
+            hi = last;
+        } else {
+            hi = upper.get(0);
+        }
+        int updated = entityManager.createQuery("update AccessCard c set c.firmwareVersion = :target " +
+                        "where c.id > :lo and c.id <= :hi and c.isActive = true and c.firmwareVersion in :sources")
+                .setParameter("target", checkpoint.getTargetVersion())
+                .setParameter("sources", List.of(checkpoint.getSourceVersions().split(",")))
+                .setParameter("lo", lo)
+                .setParameter("hi", hi)
+                .executeUpdate();
+        checkpoint.chunkDone(hi, updated);
+        return checkpoint;
+    }
+
+    private void pause() {
+        if (pause.isZero() || pause.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted between chunks - the rollout resumes from its checkpoint when run again", e);
+        }
+    }
+}
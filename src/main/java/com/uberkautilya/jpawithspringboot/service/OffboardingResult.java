@@ -0,0 +1,15 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a run of the EmployeeOffboardingService: the rows removed or changed per table, and the transactions it took
+ */
+public record OffboardingResult(long employees, long payStubs, long accessCardsDeactivated, int batches,
+                                Duration elapsed) {
+
+    OffboardingResult plus(OffboardingResult batch) {
+        return new OffboardingResult(employees + batch.employees, payStubs + batch.payStubs,
+                accessCardsDeactivated + batch.accessCardsDeactivated, batches + batch.batches, elapsed);
+    }
+}
@@ -0,0 +1,9 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a run of the PayStubArchiveService: the pay periods archived and the pay stubs moved out of the PAY_STUB table
+ */
+public record PayStubArchiveResult(int periods, long payStubs, Duration elapsed) {
+}
@@ -0,0 +1,180 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.archive.EmailGroupKey;
+import com.uberkautilya.jpawithspringboot.archive.PayStubArchive;
+import com.uberkautilya.jpawithspringboot.archive.RollupKeys;
+import com.uberkautilya.jpawithspringboot.dto.PayStubSummary;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the PAY_STUB table down to the last paystub.archive.hot-periods months, moving the older pay stubs to the PayStubArchive
+ * The pay stubs only ever grow, but nearly every query is about the last few periods. With the closed periods out of the table,
+ * its indexes and the cost of an insert stay the same whatever the years of history. PayStubRepository reads both tiers
+ *
+ * Periods are archived oldest first, each in its own transaction: the rows of the month are read as PayStubSummary records,
+ * written to the archive - merged with what it already holds for that month - and then deleted by id.
+ * The type and email groups of their employees are read along, for the archive to keep the totals by type and by group of the
+ * period in its index: the rollups read those, so they keep counting the pay stubs of employees offboarded since
+ * By id and not by date, so that a pay stub inserted meanwhile stays in the table, to be archived by the next run.
+ * The archive files are on disk before the delete commits: if it fails, the rows are in both tiers for a while,
+ * and the repository reads the table's copy. Running the job again moves them
+ *
+ * With paystub.archive.interval set, archiveClosedPeriods() runs at that interval on a thread of its own, the first time one
+ * interval after startup. Left at 0 - the default - it only runs when called
+ * The interval requires an absolute paystub.archive.directory: a directory relative to wherever the application was started from
+ * would hide the archived pay stubs from an instance started elsewhere, as they are no longer in the table
+ */
+@Service
+public class PayStubArchiveService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PayStubArchiveService.class);
+    private static final int DELETE_BATCH = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final PayStubArchive archive;
+    private final TransactionTemplate periodTransaction;
+    private final int hotPeriods;
+    private final ScheduledExecutorService scheduler;
+
+    public PayStubArchiveService(PayStubArchive archive, PlatformTransactionManager transactionManager,
+                                 @Value("${paystub.archive.hot-periods:3}") int hotPeriods,
+                                 @Value("${paystub.archive.interval:0s}") Duration interval) {
+        if (hotPeriods < 1) {
+            throw new IllegalArgumentException("paystub.archive.hot-periods must be at least 1, was " + hotPeriods);
+        }
+        this.archive = archive;
+        this.periodTransaction = new TransactionTemplate(transactionManager);
+        this.periodTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.hotPeriods = hotPeriods;
+        if (interval.isZero() || interval.isNegative()) {
+            this.scheduler = null;
+        } else {
+            if (!archive.getDirectory().isAbsolute()) {
+                throw new IllegalArgumentException("paystub.archive.interval is set, paystub.archive.directory must be an absolute path - was "
+                        + archive.getDirectory());
+            }
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "paystub-archive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.scheduler.scheduleWithFixedDelay(this::archiveQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void archiveQuietly() {
+        try {
+            archiveClosedPeriods();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Archiving the closed pay periods failed, retrying at the next interval", e);
+        }
+    }
+
+    /**
+     * Archives every period before the last hot-periods months, the current one included
+     */
+    public PayStubArchiveResult archiveClosedPeriods() {
+        return archiveBefore(YearMonth.now().minusMonths(hotPeriods - 1));
+    }
+
+    public PayStubArchiveResult archiveBefore(YearMonth firstHotPeriod) {
+        long start = System.nanoTime();
+        Date cutoff = archive.startOf(firstHotPeriod);
+        int periods = 0;
+        long payStubs = 0;
+        Integer archived;
+        while ((archived = periodTransaction.execute(status -> archiveOldestBefore(cutoff))) != null) {
+            periods++;
+            payStubs += archived;
+        }
+        PayStubArchiveResult result = new PayStubArchiveResult(periods, payStubs, Duration.ofNanos(System.nanoTime() - start));
+        LOGGER.info("Pay stubs before {} archived: {}", firstHotPeriod, result);
+        return result;
+    }
+
+    /**
+     * @return the number of pay stubs archived, null when there was no period left to archive
+     */
+    private Integer archiveOldestBefore(Date cutoff) {
+        Date oldest = entityManager.createQuery("select min(p.payPeriodStart) from PayStub p where p.payPeriodStart < :cutoff", Date.class)
+                .setParameter("cutoff", cutoff)
+                .getSingleResult();
+        if (oldest == null) {
+            return null;
+        }
+        YearMonth period = archive.periodOf(oldest);
+        List<PayStubSummary> payStubs = entityManager.createQuery(
+                        "select new com.uberkautilya.jpawithspringboot.dto.PayStubSummary(p.id, e.id, p.payPeriodStart, p.payPeriodEnd, p.salary) " +
+                                "from PayStub p left join p.employee e where p.payPeriodStart >= :from and p.payPeriodStart < :to", PayStubSummary.class)
+                .setParameter("from", archive.startOf(period))
+                .setParameter("to", archive.startOf(period.plusMonths(1)))
+                .getResultList();
+        archive.write(period, payStubs, rollupKeys(payStubs));
+
+        List<Integer> ids = payStubs.stream().map(PayStubSummary::id).toList();
+        for (int from = 0; from < ids.size(); from += DELETE_BATCH) {
+            entityManager.createQuery("delete from PayStub p where p.id in :ids")
+                    .setParameter("ids", ids.subList(from, Math.min(from + DELETE_BATCH, ids.size())))
+                    .executeUpdate();
+        }
+        entityManager.clear();
+        return payStubs.size();
+    }
+
+    /**
+     * The type and email groups of the employees of the pay stubs, DELETE_BATCH employees a query
+     */
+    private Map<BigInteger, RollupKeys> rollupKeys(List<PayStubSummary> payStubs) {
+        List<BigInteger> employeeIds = payStubs.stream().map(PayStubSummary::employeeId).filter(Objects::nonNull).distinct().toList();
+        Map<BigInteger, EmployeeType> types = new HashMap<>();
+        Map<BigInteger, List<EmailGroupKey>> groups = new HashMap<>();
+        for (int from = 0; from < employeeIds.size(); from += DELETE_BATCH) {
+            List<BigInteger> batch = employeeIds.subList(from, Math.min(from + DELETE_BATCH, employeeIds.size()));
+            for (Object[] row : entityManager.createQuery("select e.id, e.type from Employee e where e.id in :ids", Object[].class)
+                    .setParameter("ids", batch)
+                    .getResultList()) {
+                types.put((BigInteger) row[0], (EmployeeType) row[1]);
+            }
+            for (Object[] row : entityManager.createQuery("select e.id, g.id, g.name from Employee e join e.emailGroupList g " +
+                            "where e.id in :ids", Object[].class)
+                    .setParameter("ids", batch)
+                    .getResultList()) {
+                groups.computeIfAbsent((BigInteger) row[0], id -> new ArrayList<>()).add(new EmailGroupKey((Integer) row[1], (String) row[2]));
+            }
+        }
+        Map<BigInteger, RollupKeys> keys = new HashMap<>();
+        types.forEach((id, type) -> keys.put(id, new RollupKeys(type, groups.getOrDefault(id, List.of()))));
+        return keys;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+}
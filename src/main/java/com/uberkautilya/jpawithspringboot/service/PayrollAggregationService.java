@@ -0,0 +1,53 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.dto.PayrollTotal;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import com.uberkautilya.jpawithspringboot.payroll.PayrollAggregationEngine;
+import com.uberkautilya.jpawithspringboot.payroll.PayrollComputation;
+import com.uberkautilya.jpawithspringboot.repository.PayStubRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Payroll totals over all the PayStubs, without ever loading them with findAll()
+ * The simple rollups - count and sum of the salaries by period, by EmployeeType, by email group - are a GROUP BY in the DB,
+ * only the groups come back. Anything else is a PayrollComputation run by the PayrollAggregationEngine
+ * All of them include the archived periods (see PayStubArchive): the rollups from the totals kept in the archive index,
+ * the engine by reading the archived pay stubs - see PayStubHistoryRepository
+ */
+@Service
+public class PayrollAggregationService {
+    @Autowired
+    private PayStubRepository payStubRepository;
+    @Autowired
+    private PayrollAggregationEngine engine;
+
+    @Transactional(readOnly = true)
+    public List<PayrollTotal<Date>> totalsByPeriod() {
+        return payStubRepository.totalsByPeriod();
+    }
+
+    /**
+     * Pay stubs of employees without a type are under a null key, those without an employee are left out
+     */
+    @Transactional(readOnly = true)
+    public List<PayrollTotal<EmployeeType>> totalsByType() {
+        return payStubRepository.totalsByType();
+    }
+
+    /**
+     * An employee in several groups has their pay stubs counted in each of them, so the totals don't add up to the payroll
+     */
+    @Transactional(readOnly = true)
+    public List<PayrollTotal<String>> totalsByEmailGroup() {
+        return payStubRepository.totalsByEmailGroup();
+    }
+
+    public <A> A compute(PayrollComputation<A> computation) {
+        return engine.run(computation);
+    }
+}
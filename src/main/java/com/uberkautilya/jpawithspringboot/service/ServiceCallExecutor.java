@@ -0,0 +1,129 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs service calls - e.g. TransactionalDemo.updateEmployee() - off the calling thread
+ *
+ * service-executor.mode=platform, the default, runs them on a fixed pool of service-executor.platform-threads threads.
+ * With mode=virtual every call gets its own virtual thread, so a call blocked on JDBC no longer holds a scarce platform thread.
+ * Virtual threads need a Java 21 runtime. The build targets 17, so they are looked up when the executor is created - and on an older
+ * runtime mode=virtual fails the startup rather than run the calls on platform threads
+ *
+ * Either way at most service-executor.max-concurrent-calls calls run at once, by default as many as there are pooled connections.
+ * The rest wait on a semaphore rather than in the connection pool, where they would time out
+ * (spring.datasource.hikari.connection-timeout) and hold a thread - a platform one, or a carrier thread when the JDBC driver pins it
+ */
+@Component
+public class ServiceCallExecutor {
+    public enum Mode {PLATFORM, VIRTUAL}
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrentCalls;
+
+    @Autowired
+    public ServiceCallExecutor(@Value("${service-executor.mode:platform}") String mode,
+                               @Value("${service-executor.platform-threads:64}") int platformThreads,
+                               @Value("${service-executor.max-concurrent-calls:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrentCalls) {
+        this(Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)), platformThreads, maxConcurrentCalls);
+    }
+
+    public ServiceCallExecutor(Mode mode, int platformThreads, int maxConcurrentCalls) {
+        if (platformThreads < 1 || maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("platform-threads and max-concurrent-calls must be positive");
+        }
+        this.mode = mode;
+        if (mode == Mode.VIRTUAL) {
+            this.executor = newVirtualThreadPerTaskExecutor();
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(platformThreads, runnable -> {
+                Thread thread = new Thread(runnable, "service-call-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    /**
+     * @return whether the calls can be run in that mode on this runtime - mode=virtual needs Java 21
+     */
+    public static boolean isSupported(Mode mode) {
+        return mode != Mode.VIRTUAL || Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively, so this still compiles on Java 17
+     * @throws IllegalStateException when the runtime has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            throw new IllegalStateException("service-executor.mode=virtual needs Java 21, this is Java " + Runtime.version().feature(), e);
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                result.complete(call.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<Void> run(Runnable call) {
+        return submit(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * @return the calls waiting for one of the max-concurrent-calls slots
+     */
+    public int getQueued() {
+        return permits.getQueueLength();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,17 +1,23 @@
 package com.uberkautilya.jpawithspringboot.service;
 
+import com.uberkautilya.jpawithspringboot.aspect.RetryOnConflict;
 import com.uberkautilya.jpawithspringboot.aspect.log;
 import com.uberkautilya.jpawithspringboot.entity.AccessCard;
 import com.uberkautilya.jpawithspringboot.entity.Employee;
 import com.uberkautilya.jpawithspringboot.repository.AccessCardRepository;
 import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
 
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.sql.SQLException;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionalDemo {
@@ -19,20 +25,31 @@ public class TransactionalDemo {
     EmployeeRepository employeeRepository;
     @Autowired
     AccessCardRepository accessCardRepository;
+    /**
+     * This bean through its proxy: a call on this goes through no interceptor, self is for the calls that have to -
+     * the transaction, @log and the PersistenceMetricsAspect
+     */
+    @Lazy
+    @Autowired
+    TransactionalDemo self;
 
     /**
      * This method calls updateEmployee() which is another method annotated with @Transactional
      * This should not result in another transaction. If there is an existing transaction when calling updateEmployee(), it should continue within it.
      * Only if there is no existing prior transaction should a fresh transaction be started by updateEmployee()
      * Hence the need for transaction management - by default if there is existing transaction, will continue with it. No new one is created
+     * Not @RetryOnConflict, for the same reason as updateEmployee() - renameEmployee() is the retried write
+     * updateEmployee() is called through self, so that it is logged and measured as a call of its own
      * @param employee
      * @param accessCard
+     * @return the employee as written, with its new version
      */
     @Transactional
     @log
-    public void updateEmployeeAndAccessCard(Employee employee, AccessCard accessCard) {
-        updateEmployee(employee);
+    public Employee updateEmployeeAndAccessCard(Employee employee, AccessCard accessCard) {
+        Employee updated = self.updateEmployee(employee);
         accessCardRepository.save(accessCard);
+        return updated;
     }
 
     /**
@@ -46,19 +63,58 @@ public class TransactionalDemo {
      * value = REQUIRED directs that it requires a transaction, not necessarily new.
      * NOT_SUPPORTED means this method shouldn't be called as a part of any transaction
      * MANDATORY means a new transaction is not created by this method, however it needs it from its parent method
+     *
+     * The change is made on the employee as loaded in this transaction, not by save() of the one passed in:
+     * save() merges the whole detached employee, which writes every column - including a name someone else changed since it was read -
+     * and rewrites its email group rows. The managed employee is checked for changes at commit, and with @DynamicUpdate only
+     * emp_name and the @Version are written
+     * The version of the employee passed in is the one its caller read. If the row has been written since, the change was made on
+     * state that is gone: it fails with an OptimisticLockException rather than overwriting that write. So does a write in between the
+     * load here and the commit. Neither is retried - another attempt would load the same newer version - the caller has to read the
+     * employee again and decide - or call renameEmployee(), which reads it in its own transaction and is retried
      * @param employee
+     * @return the employee as written, with its new version - to pass to the next update instead of the one passed in
      */
     @Transactional(value = Transactional.TxType.REQUIRED,
             rollbackOn = {SQLException.class, IOException.class},
             dontRollbackOn = NullPointerException.class)
     @log
-    public void updateEmployee(Employee employee) {
+    public Employee updateEmployee(Employee employee) {
         employee.setName("Updated Name");
         /*
          * Imperative transaction approach: Where explicitly the transaction has to be started, ended and rollbacks handled
          * SpringBoot's declarative approach: With the concept of proxies that wrap around methods - @Transactional annotation
          */
-        employeeRepository.save(employee);
+        if (employee.getId() == null) {
+            return employeeRepository.save(employee);
+        }
+        Employee managed = employeeRepository.findById(employee.getId())
+                .orElseThrow(() -> new EntityNotFoundException("No employee with id " + employee.getId()));
+        if (managed.getVersion() != employee.getVersion()) {
+            throw new OptimisticLockException("Employee " + employee.getId() + " was read at version " + employee.getVersion()
+                    + " and has been written since, it is at version " + managed.getVersion(), null, employee);
+        }
+        managed.setName(employee.getName());
+        return managed;
+    }
+
+    /**
+     * Renames the employee with the given id, as it is when this transaction reads it - whatever version the caller last saw
+     * A write in between the load here and the commit is a conflict on the @Version: @RetryOnConflict runs the method again,
+     * in a new transaction that loads the version that write left. Only when the attempts run out does it fail
+     * Called inside a transaction that is already running, it is part of that transaction and is not retried - see RetryOnConflictAspect
+     * @param id
+     * @param name
+     * @return the employee as written, with its new version
+     */
+    @Transactional
+    @RetryOnConflict
+    @log
+    public Employee renameEmployee(BigInteger id, String name) {
+        Employee managed = employeeRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("No employee with id " + id));
+        managed.setName(name);
+        return managed;
     }
 
     /**
@@ -67,12 +123,15 @@ public class TransactionalDemo {
      * This inconsistency can be avoided when using a common transaction for fetching data from tables
      * readOnly is available only on the springframework.transaction.annotation.Transactional and not on jakarta
      * This doesn't block writes on the tables while this method is being executed. Also, there is a slight performance gain
+     * The rows are streamed rather than read with findAll(), which would hold every row in the persistence context at once
      */
     @org.springframework.transaction.annotation.Transactional(readOnly = true)
     public void readEmployeeAndAccessCards() {
-        Iterable<Employee> employeeListIterable = employeeRepository.findAll();
-        employeeListIterable.forEach(System.out::println);
-        Iterable<AccessCard> accessCardListIterable = accessCardRepository.findAll();
-        accessCardListIterable.forEach(System.out::println);
+        try (Stream<Employee> employeeStream = employeeRepository.streamAll()) {
+            employeeStream.forEach(System.out::println);
+        }
+        try (Stream<AccessCard> accessCardStream = accessCardRepository.streamAll()) {
+            accessCardStream.forEach(System.out::println);
+        }
     }
 }
@@ -0,0 +1,73 @@
+package com.uberkautilya.jpawithspringboot.startup;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Work done once at startup that nothing has to wait for to finish wiring the application - building the in-memory indexes from
+ * the DB, the startup demo in the main class
+ * By default a task runs right away on the calling thread, the way it would in a plain @PostConstruct.
+ * With startup.warmup.background=true it runs on a single background thread instead and startup carries on without it:
+ * the DB reads, and with a deferred repository bootstrap the wait for the EntityManagerFactory, are taken off the main thread
+ *
+ * Whoever answers requests from what a task builds waits for it through the returned future. Once it is done, join() is a volatile read
+ */
+@Component
+public class StartupWarmup {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final ExecutorService executor;
+    private volatile boolean closing;
+
+    public StartupWarmup(@Value("${startup.warmup.background:false}") boolean background) {
+        this.executor = background ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "startup-warmup");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Runs the task, inline or in the background. Inline, a failure is thrown right here and fails the startup like any @PostConstruct.
+     * In the background it is logged - unless the context was closed under it - and rethrown - wrapped in a CompletionException - to whoever joins the future
+     */
+    public CompletableFuture<Void> run(String name, Runnable task) {
+        if (executor == null) {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            task.run();
+            LOGGER.info("Startup warmup '{}' done in {}ms", name, (System.nanoTime() - start) / 1_000_000);
+        }, executor).whenComplete((result, failure) -> {
+            if (failure != null && !closing) {
+                LOGGER.error("Startup warmup '{}' failed", name, failure);
+            }
+        });
+    }
+
+    /**
+     * Published before any bean is destroyed. A task still running fails on the beans going away, nothing to report
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void contextClosed() {
+        closing = true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.uberkautilya.jpawithspringboot.unitofwork;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Consumer;
+
+/**
+ * A unit of work over an EXTENDED persistence context, kept to a bounded size
+ *
+ * Everything persisted through an extended entity manager stays managed for as long as the context lives, and every flush
+ * dirty checks all of it: in a long job the first level cache grows without bound, and each flush costs more than the last.
+ * Here the context is checkpointed - flushed in a transaction, then cleared - once it holds maxManagedEntities entities, or once
+ * the used heap has grown by maxHeapGrowthBytes since the last checkpoint. A flush then never checks more than maxManagedEntities,
+ * however long the session runs. checkpoint() does the same on demand, at a point that makes sense to the job
+ *
+ * The heap threshold is a backstop for entities much larger than usual: heap growth counts garbage too, so it may checkpoint early,
+ * never late. The heap is measured after every operation, the managed entity count read out of the Hibernate persistence context
+ *
+ * After a checkpoint the entities handed out before are detached - keep ids across checkpoints, not entities. Work on the entity
+ * manager directly (queries, entityManager().find) is counted by the next operation or by afterWork()
+ * Like the extended entity manager itself, a unit of work is for one thread. Closing it checkpoints what is left
+ */
+public class BoundedUnitOfWork implements AutoCloseable {
+    private final String name;
+    private final EntityManager entityManager;
+    private final TransactionTemplate checkpointTransaction;
+    private final int maxManagedEntities;
+    private final long maxHeapGrowthBytes;
+    private final Consumer<BoundedUnitOfWork> onClose;
+
+    private long heapBaseline;
+    private boolean closed;
+    // Written by the owning thread, read by UnitOfWorkFactory.snapshot() from any thread
+    private volatile long operations;
+    private volatile int managedEntities;
+    private volatile int peakManagedEntities;
+    private volatile long checkpoints;
+    private volatile long automaticCheckpoints;
+    private volatile long entitiesFlushed;
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    BoundedUnitOfWork(String name, EntityManager entityManager, TransactionTemplate checkpointTransaction,
+                      int maxManagedEntities, long maxHeapGrowthBytes, Consumer<BoundedUnitOfWork> onClose) {
+        if (maxManagedEntities < 1 || maxHeapGrowthBytes < 0) {
+            throw new IllegalArgumentException("maxManagedEntities must be positive and maxHeapGrowthBytes not negative, were "
+                    + maxManagedEntities + " and " + maxHeapGrowthBytes);
+        }
+        this.name = name;
+        this.entityManager = entityManager;
+        this.checkpointTransaction = checkpointTransaction;
+        this.maxManagedEntities = maxManagedEntities;
+        this.maxHeapGrowthBytes = maxHeapGrowthBytes;
+        this.onClose = onClose;
+        this.heapBaseline = usedHeap();
+        this.managedEntities = countManagedEntities();
+    }
+
+    public void persist(Object entity) {
+        ensureOpen();
+        entityManager.persist(entity);
+        afterWork();
+    }
+
+    /**
+     * @return the managed copy - until the next checkpoint
+     */
+    public <T> T merge(T entity) {
+        ensureOpen();
+        T managed = entityManager.merge(entity);
+        afterWork();
+        return managed;
+    }
+
+    public <T> T find(Class<T> entityClass, Object id) {
+        ensureOpen();
+        T entity = entityManager.find(entityClass, id);
+        afterWork();
+        return entity;
+    }
+
+    public void remove(Object entity) {
+        ensureOpen();
+        entityManager.remove(entity);
+        afterWork();
+    }
+
+    /**
+     * The extended entity manager underneath, for what the operations here don't cover. Call afterWork() when done with it,
+     * so that what it loaded counts towards the thresholds
+     */
+    public EntityManager entityManager() {
+        return entityManager;
+    }
+
+    /**
+     * Checks the thresholds, and checkpoints if one is reached
+     */
+    public void afterWork() {
+        ensureOpen();
+        operations++;
+        int managed = updateManagedEntities();
+        if (managed >= maxManagedEntities || (maxHeapGrowthBytes > 0 && heapGrowth() >= maxHeapGrowthBytes)) {
+            automaticCheckpoints++;
+            checkpoint();
+        }
+    }
+
+    /**
+     * Flushes the pending changes in a transaction - the caller's if it has one, then they commit with it - and clears the context
+     */
+    public void checkpoint() {
+        ensureOpen();
+        int managed = countManagedEntities();
+        long start = System.nanoTime();
+        checkpointTransaction.executeWithoutResult(status -> entityManager.flush());
+        long nanos = System.nanoTime() - start;
+        entityManager.clear();
+        checkpoints++;
+        entitiesFlushed += managed;
+        lastFlushNanos = nanos;
+        maxFlushNanos = Math.max(maxFlushNanos, nanos);
+        managedEntities = 0;
+        heapBaseline = usedHeap();
+    }
+
+    public int managedEntities() {
+        return managedEntities;
+    }
+
+    public UnitOfWorkStats stats() {
+        return new UnitOfWorkStats(name, managedEntities, peakManagedEntities, operations, checkpoints, automaticCheckpoints,
+                entitiesFlushed, lastFlushNanos, maxFlushNanos);
+    }
+
+    /**
+     * Checkpoints what is left. If that fails, the unit of work is closed all the same and the changes not flushed are dropped
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            checkpoint();
+        } finally {
+            closed = true;
+            entityManager.clear();
+            managedEntities = 0;
+            onClose.accept(this);
+        }
+    }
+
+    private int updateManagedEntities() {
+        int managed = countManagedEntities();
+        managedEntities = managed;
+        if (managed > peakManagedEntities) {
+            peakManagedEntities = managed;
+        }
+        return managed;
+    }
+
+    private int countManagedEntities() {
+        return entityManager.unwrap(SessionImplementor.class).getPersistenceContextInternal().getNumberOfManagedEntities();
+    }
+
+    /**
+     * A garbage collection since the baseline lowers the used heap below it - then it becomes the baseline
+     */
+    private long heapGrowth() {
+        long used = usedHeap();
+        if (used < heapBaseline) {
+            heapBaseline = used;
+        }
+        return used - heapBaseline;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Unit of work '" + name + "' is closed");
+        }
+    }
+}
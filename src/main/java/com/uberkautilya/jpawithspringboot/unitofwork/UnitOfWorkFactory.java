@@ -0,0 +1,66 @@
+package com.uberkautilya.jpawithspringboot.unitofwork;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens BoundedUnitOfWorks over EXTENDED entity managers, with the thresholds of unit-of-work.* unless given others,
+ * and keeps the open ones for their gauges - snapshot() reads the managed entity count of each
+ */
+@Component
+public class UnitOfWorkFactory {
+    private final TransactionTemplate checkpointTransaction;
+    private final int maxManagedEntities;
+    private final long maxHeapGrowthBytes;
+    private final Set<BoundedUnitOfWork> open = ConcurrentHashMap.newKeySet();
+
+    public UnitOfWorkFactory(PlatformTransactionManager transactionManager,
+                             @Value("${unit-of-work.max-managed-entities:1000}") int maxManagedEntities,
+                             @Value("${unit-of-work.max-heap-growth:64MB}") DataSize maxHeapGrowth) {
+        this.checkpointTransaction = new TransactionTemplate(transactionManager);
+        this.maxManagedEntities = maxManagedEntities;
+        this.maxHeapGrowthBytes = maxHeapGrowth.toBytes();
+    }
+
+    /**
+     * @param extendedManager an entity manager of PersistenceContextType.EXTENDED, used by the calling thread only while the unit is open
+     */
+    public BoundedUnitOfWork begin(String name, EntityManager extendedManager) {
+        return begin(name, extendedManager, maxManagedEntities, maxHeapGrowthBytes);
+    }
+
+    /**
+     * @param maxHeapGrowthBytes 0 for no memory threshold
+     */
+    public BoundedUnitOfWork begin(String name, EntityManager extendedManager, int maxManagedEntities, long maxHeapGrowthBytes) {
+        BoundedUnitOfWork unitOfWork = new BoundedUnitOfWork(name, extendedManager, checkpointTransaction,
+                maxManagedEntities, maxHeapGrowthBytes, open::remove);
+        open.add(unitOfWork);
+        return unitOfWork;
+    }
+
+    /**
+     * The units of work open right now, by name. Units opened under the same name are reported as name#2, name#3...
+     */
+    public Map<String, UnitOfWorkStats> snapshot() {
+        Map<String, UnitOfWorkStats> snapshot = new TreeMap<>();
+        for (BoundedUnitOfWork unitOfWork : open) {
+            UnitOfWorkStats stats = unitOfWork.stats();
+            String key = stats.name();
+            for (int i = 2; snapshot.containsKey(key); i++) {
+                key = stats.name() + "#" + i;
+            }
+            snapshot.put(key, stats);
+        }
+        return snapshot;
+    }
+}
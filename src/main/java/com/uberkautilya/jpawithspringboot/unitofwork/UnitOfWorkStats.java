@@ -0,0 +1,14 @@
+package com.uberkautilya.jpawithspringboot.unitofwork;
+
+/**
+ * Point in time read out of a unit of work. managedEntities is the gauge - the entities in the persistence context right now -
+ * peakManagedEntities the most it held at once. checkpoints counts all of them, automaticCheckpoints those a threshold triggered
+ * Flush durations are in nanoseconds
+ */
+public record UnitOfWorkStats(String name, int managedEntities, int peakManagedEntities, long operations, long checkpoints,
+                              long automaticCheckpoints, long entitiesFlushed, long lastFlushNanos, long maxFlushNanos) {
+
+    public double entitiesPerCheckpoint() {
+        return checkpoints == 0 ? 0 : (double) entitiesFlushed / checkpoints;
+    }
+}
@@ -0,0 +1,28 @@
+-- Changes to run on a schema created before the current mappings, which spring.jpa.hibernate.ddl-auto=none leaves as it is
+-- A schema created from the entities (ddl-auto=create or update) has them already
+
+-- StripedPooledLoGenerator: the increment of a sequence is the block size of its entity (app.id.block-size.*).
+-- The sequences were created with the increment by 50 of the default allocationSize. Switching from the pooled optimizer to pooled-lo
+-- needs no other change: the next value is past every id handed out so far, whatever the increment
+ALTER SEQUENCE employee_seq INCREMENT BY 100;
+
+-- FirmwareRolloutService: one row per rollout, written with every chunk - see FirmwareRolloutCheckpoint
+CREATE TABLE IF NOT EXISTS firmware_rollout_checkpoint (
+    name VARCHAR(255) NOT NULL PRIMARY KEY,
+    source_versions VARCHAR(255),
+    target_version VARCHAR(255),
+    last_card_id INTEGER NOT NULL,
+    updated_cards BIGINT NOT NULL,
+    chunks INTEGER NOT NULL,
+    completed BOOLEAN NOT NULL,
+    updated_at TIMESTAMP(6)
+);
+
+-- Employee.version: the @Version of optimistic locking. Rows written before it start at 0
+ALTER TABLE employee_data ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+
+-- The keyset pages of "emp name asc" seek on (emp_name, id) - see Employee
+CREATE INDEX IF NOT EXISTS idx_employee_name_id ON employee_data (emp_name, id);
+
+-- PayStubArchiveService selects and deletes the pay stubs of the closed periods by payPeriodStart - see PayStub
+CREATE INDEX IF NOT EXISTS idx_pay_stub_period ON pay_stub (pay_period_start);
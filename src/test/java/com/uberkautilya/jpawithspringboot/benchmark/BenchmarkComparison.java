@@ -0,0 +1,114 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.jayway.jsonpath.JsonPath;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lines up two JMH json result files - e.g. of the commit before and after a change - benchmark by benchmark
+ * A benchmark is matched on its name, mode and @Param values. For each one the score of both runs and the change are printed,
+ * along with gc.alloc.rate.norm, the bytes allocated per operation, when the gc profiler was on
+ * A change is only marked (+ or -) when the two scores are further apart than their error margins together, anything else is noise.
+ * Scores in different units - the @OutputTimeUnit was changed in between - are shown side by side, not compared
+ *
+ * Run the main method with the test classpath: BenchmarkComparison baseline.json current.json
+ */
+public final class BenchmarkComparison {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BenchmarkComparison() {
+    }
+
+    record Result(double score, double error, String unit, double allocation) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json>");
+            System.exit(2);
+        }
+        compare(Path.of(args[0]), Path.of(args[1]), System.out);
+    }
+
+    public static void compare(Path baseline, Path current, PrintStream out) throws IOException {
+        Map<String, Result> before = read(baseline);
+        Map<String, Result> after = read(current);
+        out.printf("%-80s %12s %12s %9s %2s %12s %12s %s%n", "Benchmark (mode, params)", "Baseline", "Current", "Change", "", "B/op before", "B/op after", "Unit");
+        for (Map.Entry<String, Result> entry : after.entrySet()) {
+            Result now = entry.getValue();
+            Result then = before.get(entry.getKey());
+            if (then == null) {
+                out.printf("%-80s %12s %12s %9s %2s %12s %12s %s%n", entry.getKey(), "-", score(now.score()), "new", "", "-",
+                        bytes(now.allocation()), now.unit());
+                continue;
+            }
+            if (!then.unit().equals(now.unit())) {
+                out.printf("%-80s %12s %12s %9s %2s %12s %12s %s%n", entry.getKey(), score(then.score()) + " " + then.unit(),
+                        score(now.score()) + " " + now.unit(), "unit", "", bytes(then.allocation()), bytes(now.allocation()), "");
+                continue;
+            }
+            double change = (now.score() - then.score()) / then.score() * 100;
+            boolean significant = Math.abs(now.score() - then.score()) > nanToZero(then.error()) + nanToZero(now.error());
+            out.printf("%-80s %12s %12s %+8.1f%% %2s %12s %12s %s%n", entry.getKey(), score(then.score()), score(now.score()), change,
+                    significant ? (change > 0 ? "+" : "-") : "", bytes(then.allocation()), bytes(now.allocation()), now.unit());
+        }
+        before.keySet().stream()
+                .filter(key -> !after.containsKey(key))
+                .forEach(key -> out.printf("%-80s %12s %12s %9s%n", key, score(before.get(key).score()), "-", "removed"));
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Result> read(Path file) throws IOException {
+        List<Map<String, Object>> runs = JsonPath.parse(Files.readString(file)).read("$");
+        Map<String, Result> results = new TreeMap<>();
+        for (Map<String, Object> run : runs) {
+            Map<String, Object> primary = (Map<String, Object>) run.get("primaryMetric");
+            Map<String, Object> secondary = (Map<String, Object>) run.getOrDefault("secondaryMetrics", Map.of());
+            Map<String, Object> allocation = (Map<String, Object>) secondary.get(ALLOCATION);
+            results.put(key(run), new Result(number(primary.get("score")), number(primary.get("scoreError")),
+                    (String) primary.get("scoreUnit"), allocation == null ? Double.NaN : number(allocation.get("score"))));
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String key(Map<String, Object> run) {
+        String benchmark = (String) run.get("benchmark");
+        StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1))
+                .append(" (").append(run.get("mode"));
+        Map<String, Object> params = new LinkedHashMap<>((Map<String, Object>) run.getOrDefault("params", Map.of()));
+        params.forEach((name, value) -> key.append(", ").append(name).append('=').append(value));
+        return key.append(')').toString();
+    }
+
+    /**
+     * JMH writes NaN - e.g. the error of a single iteration - as the string "NaN"
+     */
+    private static double number(Object value) {
+        return value instanceof Number number ? number.doubleValue() : Double.parseDouble(String.valueOf(value));
+    }
+
+    /**
+     * Four significant digits whatever the magnitude - 0.0004217 ops/ms as well as 2371 ms/op
+     */
+    private static String score(double score) {
+        return Double.isNaN(score) ? "NaN" : new BigDecimal(score).round(new MathContext(4)).stripTrailingZeros().toPlainString();
+    }
+
+    private static double nanToZero(double value) {
+        return Double.isNaN(value) ? 0 : value;
+    }
+
+    private static String bytes(double allocation) {
+        return Double.isNaN(allocation) ? "-" : String.format("%.0f", allocation);
+    }
+}
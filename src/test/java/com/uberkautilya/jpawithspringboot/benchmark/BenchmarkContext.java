@@ -0,0 +1,127 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.uberkautilya.jpawithspringboot.JpaWithSpringbootApplication;
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import com.uberkautilya.jpawithspringboot.entity.PayStub;
+import com.uberkautilya.jpawithspringboot.service.BulkImportResult;
+import com.uberkautilya.jpawithspringboot.service.EmployeeBulkImportService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Boots the application against a fresh in-memory H2 and fills it with a seeded - hence identical on every run - dataset:
+ * employees, each with an AccessCard, two or three of the email groups and payStubsPerEmployee monthly PayStubs
+ * Shared by the benchmarks so they all measure the same data
+ */
+public final class BenchmarkContext implements AutoCloseable {
+    public static final long SEED = 42;
+    public static final int EMAIL_GROUPS = 20;
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static BenchmarkContext start(int employees, int payStubsPerEmployee, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.show-sql=false",
+                "--second-level-cache.statistics.enabled=false",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(extraArgs));
+        BenchmarkContext benchmarkContext = new BenchmarkContext(SpringApplication.run(JpaWithSpringbootApplication.class, args.toArray(String[]::new)));
+        benchmarkContext.seed(employees, payStubsPerEmployee);
+        return benchmarkContext;
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    private void seed(int employees, int payStubsPerEmployee) {
+        Random random = new Random(SEED);
+        EntityManagerFactory emFactory = getBean(EntityManagerFactory.class);
+        EntityManager eManager = emFactory.createEntityManager();
+        eManager.getTransaction().begin();
+        List<EmailGroup> emailGroups = new ArrayList<>();
+        for (int i = 0; i < EMAIL_GROUPS; i++) {
+            EmailGroup emailGroup = new EmailGroup("group-" + i);
+            eManager.persist(emailGroup);
+            emailGroups.add(emailGroup);
+        }
+        eManager.getTransaction().commit();
+        eManager.close();
+
+        EmployeeType[] types = EmployeeType.values();
+        List<Employee> seeded = IntStream.range(0, employees).mapToObj(i -> {
+            Employee employee = new Employee();
+            employee.setName("Employee " + Integer.toString(random.nextInt(1_000_000), 36) + " " + i);
+            employee.setSsn(Integer.toString(i, 36) + "-" + Integer.toString(random.nextInt(46656), 36));
+            employee.setAge(20 + random.nextInt(45));
+            employee.setDob(new Date(-315619200000L + random.nextInt(1_000_000_000) * 1000L));
+            employee.setType(types[random.nextInt(types.length)]);
+            employee.setAccessCard(new AccessCard(new Date(), random.nextInt(10) != 0, "1." + random.nextInt(5)));
+            int groups = 2 + random.nextInt(2);
+            for (int g = 0; g < groups; g++) {
+                EmailGroup emailGroup = emailGroups.get(random.nextInt(EMAIL_GROUPS));
+                if (!employee.getEmailGroupList().contains(emailGroup)) {
+                    employee.addEmailGroup(emailGroup);
+                }
+            }
+            return employee;
+        }).toList();
+        BulkImportResult imported = getBean(EmployeeBulkImportService.class).importEmployees(seeded.stream());
+        if (!imported.isComplete()) {
+            throw new IllegalStateException("Seeding failed: " + imported, imported.failures().get(0).cause());
+        }
+
+        if (payStubsPerEmployee > 0) {
+            seedPayStubs(emFactory, seeded, payStubsPerEmployee, random);
+        }
+    }
+
+    private static void seedPayStubs(EntityManagerFactory emFactory, List<Employee> employees, int payStubsPerEmployee, Random random) {
+        EntityManager eManager = emFactory.createEntityManager();
+        eManager.getTransaction().begin();
+        int written = 0;
+        for (Employee employee : employees) {
+            BigInteger id = employee.getId();
+            Calendar period = Calendar.getInstance();
+            period.clear();
+            period.set(2020, Calendar.JANUARY, 1);
+            for (int i = 0; i < payStubsPerEmployee; i++) {
+                Date start = period.getTime();
+                period.add(Calendar.MONTH, 1);
+                PayStub payStub = new PayStub(start, new Date(period.getTimeInMillis() - 1), 2000 + random.nextInt(8000));
+                payStub.setEmployee(eManager.getReference(Employee.class, id));
+                eManager.persist(payStub);
+                if (++written % 500 == 0) {
+                    eManager.flush();
+                    eManager.clear();
+                }
+            }
+        }
+        eManager.getTransaction().commit();
+        eManager.close();
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
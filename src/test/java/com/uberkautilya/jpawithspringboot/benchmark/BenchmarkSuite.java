@@ -0,0 +1,72 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs the JMH benchmarks from the maven build: mvn test -P benchmark
+ * The name doesn't match the surefire patterns, so a plain mvn test leaves it out. The profile runs only this class,
+ * and sets jmh.result - without it the test is skipped, so a -Dtest filter that happens to match it doesn't start a benchmark run
+ * Every benchmark seeds its own H2 database through BenchmarkContext, with the gc profiler on. The results are written as json to
+ * target/jmh/[jmh.label].json - keep the file of one commit and pass it as jmh.baseline to the run of the next to see what changed:
+ * <pre>
+ * mvn test -P benchmark -Djmh.label=before
+ * mvn test -P benchmark -Djmh.label=after -Djmh.baseline=target/jmh/before.json
+ * </pre>
+ * Other settings, all optional: jmh.include - regex of the benchmarks to run, jmh.forks, jmh.warmup-iterations, jmh.iterations
+ * and jmh.time (seconds per iteration) to override the annotations of the benchmarks, e.g. for a quick run
+ */
+class BenchmarkSuite {
+
+	@Test
+	@EnabledIfSystemProperty(named = "jmh.result", matches = ".+")
+	void runBenchmarks() throws Exception {
+		Path result = Path.of(System.getProperty("jmh.result"));
+		Files.createDirectories(result.toAbsolutePath().getParent());
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.include(property("jmh.include", BenchmarkSuite.class.getPackageName() + "\\..*Benchmark"))
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result.toString())
+				.shouldFailOnError(true);
+		String value;
+		if ((value = property("jmh.forks", null)) != null) {
+			options.forks(Integer.parseInt(value));
+		}
+		if ((value = property("jmh.warmup-iterations", null)) != null) {
+			options.warmupIterations(Integer.parseInt(value));
+		}
+		if ((value = property("jmh.iterations", null)) != null) {
+			options.measurementIterations(Integer.parseInt(value));
+		}
+		if ((value = property("jmh.time", null)) != null) {
+			options.warmupTime(TimeValue.seconds(Integer.parseInt(value)));
+			options.measurementTime(TimeValue.seconds(Integer.parseInt(value)));
+		}
+		assertFalse(new Runner(options.build()).run().isEmpty(), "No benchmark matched " + property("jmh.include", "the default pattern"));
+
+		String baseline = property("jmh.baseline", null);
+		if (baseline != null) {
+			BenchmarkComparison.compare(Path.of(baseline), result, System.out);
+		}
+	}
+
+	/**
+	 * The profile passes every setting on, unset ones as empty strings
+	 */
+	private static String property(String name, String defaultValue) {
+		String value = System.getProperty(name);
+		return value == null || value.isBlank() ? defaultValue : value;
+	}
+}
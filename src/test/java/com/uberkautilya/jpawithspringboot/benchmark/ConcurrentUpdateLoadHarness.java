@@ -0,0 +1,120 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.uberkautilya.jpawithspringboot.dto.EmployeeSummary;
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.metrics.LatencyHistogram;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeFetchPlan;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import com.uberkautilya.jpawithspringboot.service.ServiceCallExecutor;
+import com.uberkautilya.jpawithspringboot.service.TransactionalDemo;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives N concurrent updaters against H2 and reports throughput and tail latency, platform threads and virtual threads side by side
+ * Each updater renames a random employee with TransactionalDemo.renameEmployee() - a name of its own every call - every other time
+ * it loads one, flips the firmware version of its card and calls updateEmployeeAndAccessCard(), for the given duration
+ * Latency is measured from submission to the ServiceCallExecutor, so the wait for a connection slot is included
+ * Two updaters writing the same employee at once conflict on its version. A rename is retried on fresh state - its retries are part
+ * of its latency - and only counted as failed when its attempts run out. An updateEmployeeAndAccessCard() that loses is failed
+ * Not a JMH benchmark: the point is behaviour under many blocked callers, not the cost of one call
+ *
+ * Run the main method with the test classpath. Arguments, all optional: updaters (default 200), seconds per mode (10), pool size (10)
+ * The virtual thread run needs a Java 21 runtime - the build targets 17. On an older one it is skipped, and its row says so
+ */
+public class ConcurrentUpdateLoadHarness {
+    private static final int EMPLOYEES = 2000;
+    private static final int PLATFORM_THREADS = 64;
+
+    public static void main(String[] args) throws Exception {
+        int updaters = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        try (BenchmarkContext context = BenchmarkContext.start(EMPLOYEES, 0,
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize)) {
+            List<BigInteger> ids = context.getBean(EmployeeRepository.class).findAllSummaries().stream().map(EmployeeSummary::id).toList();
+            List<String> rows = new ArrayList<>();
+            for (ServiceCallExecutor.Mode mode : ServiceCallExecutor.Mode.values()) {
+                if (!ServiceCallExecutor.isSupported(mode)) {
+                    rows.add(String.format("%-22s skipped: needs a Java 21 runtime, this is Java %d", mode.name().toLowerCase(),
+                            Runtime.version().feature()));
+                    continue;
+                }
+                ServiceCallExecutor executor = new ServiceCallExecutor(mode, PLATFORM_THREADS, poolSize);
+                try {
+                    // A short first round warms up the JIT and the pools
+                    run(context, executor, ids, updaters, 2);
+                    rows.add(report(executor, run(context, executor, ids, updaters, seconds), seconds));
+                } finally {
+                    executor.shutdown();
+                }
+            }
+            System.out.printf("%d updaters, %d s per mode, %d pooled connections, %d platform threads%n", updaters, seconds, poolSize, PLATFORM_THREADS);
+            System.out.printf("%-22s %10s %10s %10s %10s %10s %8s%n", "mode", "calls/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "failed");
+            rows.forEach(System.out::println);
+        }
+    }
+
+    private static Result run(BenchmarkContext context, ServiceCallExecutor executor, List<BigInteger> ids, int updaters, int seconds) {
+        EmployeeRepository employeeRepository = context.getBean(EmployeeRepository.class);
+        TransactionalDemo transactionalDemo = context.getBean(TransactionalDemo.class);
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong failed = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        // Each updater is a caller waiting for its previous call before making the next one, like a request thread would
+        List<CompletableFuture<Void>> callers = new ArrayList<>();
+        for (int i = 0; i < updaters; i++) {
+            callers.add(CompletableFuture.runAsync(() -> {
+                long call = 0;
+                while (System.nanoTime() - deadline < 0) {
+                    BigInteger id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                    boolean withCard = call++ % 2 == 0;
+                    long start = System.nanoTime();
+                    try {
+                        executor.run(() -> {
+                            if (withCard) {
+                                Employee employee = employeeRepository.findById(id, EmployeeFetchPlan.WITH_CARD).orElseThrow();
+                                AccessCard accessCard = employee.getAccessCard();
+                                accessCard.setFirmwareVersion(accessCard.getFirmwareVersion().endsWith("-b") ? "2.0-a" : "2.0-b");
+                                transactionalDemo.updateEmployeeAndAccessCard(employee, accessCard);
+                            } else {
+                                transactionalDemo.renameEmployee(id, "Load " + Thread.currentThread().getId() + "-" + System.nanoTime());
+                            }
+                        }).join();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                    latency.record(System.nanoTime() - start);
+                }
+            }, command -> {
+                Thread caller = new Thread(command);
+                caller.setDaemon(true);
+                caller.start();
+            }));
+        }
+        callers.forEach(CompletableFuture::join);
+        return new Result(latency, failed.get());
+    }
+
+    private static String report(ServiceCallExecutor executor, Result result, int seconds) {
+        LatencyHistogram latency = result.latency;
+        return String.format("%-22s %10.1f %10.2f %10.2f %10.2f %10.2f %8d", executor.getMode().name().toLowerCase(), latency.count() / (double) seconds,
+                millis(latency.percentile(50)), millis(latency.percentile(99)), millis(latency.percentile(99.9)), millis(latency.max()), result.failed);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+
+    private record Result(LatencyHistogram latency, long failed) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.uberkautilya.jpawithspringboot.id.StripedIdBlockAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Handing out ids from blocks, on several threads at once, without a DB - the sequence is an AtomicLong:
+ * - sharedBlock: one block behind a lock, the way Hibernate's pooled optimizers share it between sessions
+ * - stripedLong: StripedPooledLoGenerator.nextLong, a block per thread and a primitive key
+ * - stripedBigInteger: the same, boxed into the BigInteger id of Employee as generate() does - the gc profiler shows the allocation
+ *
+ * Run the main method with the test classpath, or all the benchmarks with the "benchmark" maven profile - see BenchmarkSuite
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class IdGeneratorBenchmark {
+    private static final int BLOCK_SIZE = 100;
+
+    private final AtomicLong sequence = new AtomicLong(1);
+    private final LongSupplier reserveBlock = () -> sequence.getAndAdd(BLOCK_SIZE);
+    private final StripedIdBlockAllocator allocator = new StripedIdBlockAllocator(BLOCK_SIZE);
+    private long sharedNext;
+    private long sharedEnd;
+
+    @Benchmark
+    public long sharedBlock() {
+        synchronized (this) {
+            if (sharedNext >= sharedEnd) {
+                sharedNext = reserveBlock.getAsLong();
+                sharedEnd = sharedNext + BLOCK_SIZE;
+            }
+            return sharedNext++;
+        }
+    }
+
+    @Benchmark
+    public long stripedLong() {
+        return allocator.next(reserveBlock);
+    }
+
+    @Benchmark
+    public BigInteger stripedBigInteger() {
+        return BigInteger.valueOf(allocator.next(reserveBlock));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IdGeneratorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
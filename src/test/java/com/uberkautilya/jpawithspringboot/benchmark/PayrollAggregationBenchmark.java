@@ -0,0 +1,80 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.uberkautilya.jpawithspringboot.dto.PayrollTotal;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import com.uberkautilya.jpawithspringboot.payroll.SalaryStats;
+import com.uberkautilya.jpawithspringboot.service.PayrollAggregationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salary totals by EmployeeType over every PayStub: a GROUP BY in the DB vs the PayrollAggregationEngine at several parallelisms
+ * The engine computes more - min and max as well - but has to bring every row over JDBC, the GROUP BY only the groups.
+ * So the GROUP BY is expected to win for what it can express, the engine shows what a custom computation costs
+ * Scores are per run over all the pay stubs, with the gc profiler gc.alloc.rate.norm shows the engine's allocation per run
+ *
+ * Run the main method with the test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayrollAggregationBenchmark {
+    private static final int EMPLOYEES = 2000;
+    private static final int PAY_STUBS_PER_EMPLOYEE = 24;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private BenchmarkContext context;
+    private PayrollAggregationService aggregationService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(EMPLOYEES, PAY_STUBS_PER_EMPLOYEE,
+                "--payroll.aggregation.parallelism=" + parallelism,
+                "--payroll.aggregation.partition-size=" + EMPLOYEES * PAY_STUBS_PER_EMPLOYEE / 16);
+        aggregationService = context.getBean(PayrollAggregationService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<PayrollTotal<EmployeeType>> groupByQuery() {
+        return aggregationService.totalsByType();
+    }
+
+    @Benchmark
+    public SalaryStats forkJoinEngine() {
+        return aggregationService.compute(SalaryStats.byType());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PayrollAggregationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
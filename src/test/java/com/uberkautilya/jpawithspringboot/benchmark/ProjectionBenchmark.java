@@ -0,0 +1,89 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.uberkautilya.jpawithspringboot.dto.EmployeeSummary;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeFetchPlan;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Display-only read of every employee: as managed entities vs as EmployeeSummary records
+ * Both run in a read-write transaction, the way most service methods do, so the entity path also pays for the dirty check at commit
+ * Scores are per row (@OperationsPerInvocation): time in microseconds, and with the gc profiler gc.alloc.rate.norm is the bytes allocated per row
+ *
+ * Run the main method with the test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+    private static final int ROWS = 2000;
+
+    private BenchmarkContext context;
+    private EmployeeRepository employeeRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(ROWS, 0);
+        employeeRepository = context.getBean(EmployeeRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void entities(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Employee> employees = employeeRepository.findAll(EmployeeFetchPlan.SUMMARY);
+            for (Employee employee : employees) {
+                blackhole.consume(employee.getName());
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void projections(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<EmployeeSummary> employees = employeeRepository.findAllSummaries();
+            for (EmployeeSummary employee : employees) {
+                blackhole.consume(employee.name());
+            }
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProjectionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,125 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.uberkautilya.jpawithspringboot.dto.EmployeeSummary;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeFetchPlan;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read paths of EmployeeRepository on the seeded dataset: findById, findAll, the "emp name asc" named query,
+ * and the LAZY associations of an employee loaded on first access - the AccessCard, the email groups and the pay stubs
+ * Each runs with the second level cache on, as configured, and off - so a change to the @Cache mappings shows up in one and not the other
+ * Throughput gives operations per time unit, SampleTime the latency distribution (p0.50 ... p0.9999) of single calls.
+ * With the gc profiler gc.alloc.rate.norm is the bytes allocated per call
+ *
+ * Run the main method with the test classpath, or all the benchmarks with the "benchmark" maven profile - see BenchmarkSuite
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+    private static final int EMPLOYEES = 2000;
+    private static final int PAY_STUBS_PER_EMPLOYEE = 12;
+    /**
+     * About one in nine of the seeded employees (ages 20 to 64) are 60 or older
+     */
+    private static final int MIN_AGE = 60;
+
+    @Param({"true", "false"})
+    public boolean secondLevelCache;
+
+    private BenchmarkContext context;
+    private EmployeeRepository employeeRepository;
+    private TransactionTemplate readOnlyTransaction;
+    private BigInteger[] ids;
+    private final SplittableRandom random = new SplittableRandom(BenchmarkContext.SEED);
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(EMPLOYEES, PAY_STUBS_PER_EMPLOYEE,
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=" + secondLevelCache);
+        employeeRepository = context.getBean(EmployeeRepository.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+        readOnlyTransaction.setReadOnly(true);
+        ids = employeeRepository.findAllSummaries().stream().map(EmployeeSummary::id).toArray(BigInteger[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private BigInteger nextId() {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    @Benchmark
+    public Optional<Employee> findById() {
+        return employeeRepository.findById(nextId());
+    }
+
+    @Benchmark
+    public Iterable<Employee> findAll() {
+        return employeeRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Employee> empNameAsc() {
+        return employeeRepository.findByMinAgeOrderByName(MIN_AGE, EmployeeFetchPlan.SUMMARY);
+    }
+
+    @Benchmark
+    public void loadAccessCard(Blackhole blackhole) {
+        BigInteger id = nextId();
+        readOnlyTransaction.executeWithoutResult(status ->
+                blackhole.consume(employeeRepository.findById(id).orElseThrow().getAccessCard().getFirmwareVersion()));
+    }
+
+    @Benchmark
+    public void loadEmailGroups(Blackhole blackhole) {
+        BigInteger id = nextId();
+        readOnlyTransaction.executeWithoutResult(status ->
+                blackhole.consume(employeeRepository.findById(id).orElseThrow().getEmailGroupList().size()));
+    }
+
+    @Benchmark
+    public void loadPayStubs(Blackhole blackhole) {
+        BigInteger id = nextId();
+        readOnlyTransaction.executeWithoutResult(status ->
+                blackhole.consume(employeeRepository.findById(id).orElseThrow().getPayStubList().size()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RepositoryBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,187 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.uberkautilya.jpawithspringboot.JpaWithSpringbootApplication;
+import com.uberkautilya.jpawithspringboot.index.EmailGroupMembershipIndex;
+import com.uberkautilya.jpawithspringboot.index.EmployeeSearchIndex;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Startup time of the application, with the default bootstrap and with the fast-startup profile, each in fresh JVMs
+ * Every run is a new process, started the way the application would be, so class loading and JIT warmup are part of the figure.
+ * For each configuration three times are reported, measured from the launch of the process:
+ * ready - SpringApplication.run() returned, first query - a repository call returned, warm - the in-memory indexes are built
+ *
+ * The configurations:
+ * embedded - the default bootstrap, only with an in-memory H2 (the default TCP server isn't there to connect to)
+ * fast-startup - the profile: deferred repository bootstrap, warmup on a background thread
+ * + cds - and a class data sharing archive of the classes it loads, dumped at the exit of a training run (-XX:ArchiveClassesAtExit)
+ * + aot - and the beans processed ahead of time. Only when the AOT classes are on the classpath: mvn package -P fast-startup first
+ *
+ * The directories of the classpath - target/classes, target/test-classes - are packed into jars first: a class data sharing archive
+ * only covers classes from jars. All the configurations run on the same jars
+ *
+ * Not a JMH benchmark: JMH measures inside a running JVM, a startup has to be measured from outside
+ * Run the main method with the test classpath. Arguments, all optional: runs per configuration (default 5)
+ */
+public class StartupTimeHarness {
+    private static final Path WORK_DIRECTORY = Path.of("target", "startup");
+    private static final String AOT_INITIALIZER = JpaWithSpringbootApplication.class.getName() + "__ApplicationContextInitializer";
+    private static final List<String> COMMON_ARGUMENTS = List.of(
+            // Only application.properties and its profile variants - not the test config/application.properties on the test classpath
+            "--spring.config.location=classpath:/",
+            "--paystub.archive.directory=" + WORK_DIRECTORY.resolve("paystub-archive"),
+            "--logging.level.root=WARN");
+
+    record Configuration(String name, List<String> jvmArguments, List<String> arguments, String cdsArchive) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Files.createDirectories(WORK_DIRECTORY);
+        String classpath = jarClasspath();
+        boolean aot = StartupTimeHarness.class.getClassLoader().getResource(AOT_INITIALIZER.replace('.', '/') + ".class") != null;
+
+        List<String> embedded = List.of("--spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1", "--spring.jpa.hibernate.ddl-auto=create");
+        List<String> fastStartup = List.of("--spring.profiles.active=fast-startup");
+        List<Configuration> configurations = new ArrayList<>(List.of(
+                new Configuration("embedded", List.of(), embedded, null),
+                new Configuration("fast-startup", List.of(), fastStartup, null),
+                new Configuration("fast-startup + cds", List.of(), fastStartup, "fast-startup.jsa")));
+        if (aot) {
+            configurations.add(new Configuration("fast-startup + aot", List.of("-Dspring.aot.enabled=true"), fastStartup, null));
+            configurations.add(new Configuration("fast-startup + aot + cds", List.of("-Dspring.aot.enabled=true"), fastStartup, "fast-startup-aot.jsa"));
+        } else {
+            System.out.println("No AOT classes on the classpath - run mvn package -P fast-startup for the aot configurations");
+        }
+
+        List<String> rows = new ArrayList<>();
+        for (Configuration configuration : configurations) {
+            List<String> jvmArguments = new ArrayList<>(configuration.jvmArguments());
+            if (configuration.cdsArchive() != null) {
+                Path archive = WORK_DIRECTORY.resolve(configuration.cdsArchive());
+                Files.deleteIfExists(archive);
+                List<String> training = new ArrayList<>(jvmArguments);
+                training.add("-XX:ArchiveClassesAtExit=" + archive);
+                launch(classpath, training, configuration.arguments());
+                jvmArguments.add("-XX:SharedArchiveFile=" + archive);
+            }
+            launch(classpath, jvmArguments, configuration.arguments());
+            long[][] times = new long[3][runs];
+            for (int run = 0; run < runs; run++) {
+                long[] milestones = launch(classpath, jvmArguments, configuration.arguments());
+                for (int i = 0; i < 3; i++) {
+                    times[i][run] = milestones[i];
+                }
+            }
+            rows.add(String.format("%-26s %14s %14s %14s", configuration.name(), summary(times[0]), summary(times[1]), summary(times[2])));
+        }
+        System.out.printf("%n%d runs each, milliseconds from process launch, median (min)%n", runs);
+        System.out.printf("%-26s %14s %14s %14s%n", "Configuration", "ready", "first query", "warm");
+        rows.forEach(System.out::println);
+    }
+
+    /**
+     * Starts a JVM running the Probe, and returns the milliseconds from its launch to each of the milestones it reports
+     */
+    private static long[] launch(String classpath, List<String> jvmArguments, List<String> arguments) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArguments);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(Probe.class.getName());
+        command.addAll(COMMON_ARGUMENTS);
+        command.addAll(arguments);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long[] milestones = new long[3];
+        int reached = 0;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (reached < 3 && line.equals(Probe.MILESTONES[reached])) {
+                    milestones[reached++] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                } else {
+                    output.add(line);
+                }
+            }
+        }
+        if (process.waitFor() != 0 || reached < 3) {
+            output.forEach(System.err::println);
+            throw new IllegalStateException("Startup probe failed: " + String.join(" ", command));
+        }
+        return milestones;
+    }
+
+    /**
+     * The classpath of this JVM, with every directory in it replaced by a jar of its contents in the work directory
+     */
+    private static String jarClasspath() throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path path = Path.of(entry);
+            if (!Files.isDirectory(path)) {
+                entries.add(entry);
+                continue;
+            }
+            Path jar = WORK_DIRECTORY.resolve(path.getFileName() + ".jar");
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)); Stream<Path> files = Files.walk(path)) {
+                // The directories get entries too - classpath scanning for the components lists them
+                for (Path file : (Iterable<Path>) files.filter(file -> !file.equals(path))::iterator) {
+                    String name = path.relativize(file).toString().replace(File.separatorChar, '/');
+                    boolean directory = Files.isDirectory(file);
+                    out.putNextEntry(new JarEntry(directory ? name + "/" : name));
+                    if (!directory) {
+                        Files.copy(file, out);
+                    }
+                    out.closeEntry();
+                }
+            }
+            entries.add(jar.toAbsolutePath().toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static String summary(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] + " (" + sorted[0] + ")";
+    }
+
+    /**
+     * Runs in the launched JVM: starts the application and prints each milestone as it is reached, then exits
+     */
+    public static class Probe {
+        static final String[] MILESTONES = {"startup-probe: ready", "startup-probe: first query", "startup-probe: warm"};
+
+        public static void main(String[] args) {
+            ConfigurableApplicationContext context = SpringApplication.run(JpaWithSpringbootApplication.class, args);
+            System.out.println(MILESTONES[0]);
+            context.getBean(EmployeeRepository.class).count();
+            System.out.println(MILESTONES[1]);
+            context.getBean(EmployeeSearchIndex.class).size();
+            context.getBean(EmailGroupMembershipIndex.class).groupSizes();
+            System.out.println(MILESTONES[2]);
+            context.close();
+            System.exit(0);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.uberkautilya.jpawithspringboot.benchmark;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeFetchPlan;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import com.uberkautilya.jpawithspringboot.service.TransactionalDemo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The write paths of TransactionalDemo, through its proxy - so the transaction and @log advice are part of the score
+ * The employees passed in are detached, loaded with their AccessCard once at setup, the way a caller would hand them over.
+ * Each is replaced by the one the update returns, whose version is current - the one passed in is stale once written
+ *
+ * updateEmployee always sets the same name. Once a row has it, the commit finds nothing dirty and writes nothing: after the warmup
+ * the score is the load, the dirty check and the commit of an unchanged employee. renameEmployee gives every call a name of its own,
+ * so each of its commits writes the row. updateEmployeeAndAccessCard flips the firmware version of the card on every call, so it
+ * always writes the card row
+ *
+ * Run the main method with the test classpath, or all the benchmarks with the "benchmark" maven profile - see BenchmarkSuite
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionalDemoBenchmark {
+    private static final int EMPLOYEES = 2000;
+
+    private BenchmarkContext context;
+    private TransactionalDemo transactionalDemo;
+    private Employee[] employees;
+    private AccessCard[] cards;
+    private final SplittableRandom random = new SplittableRandom(BenchmarkContext.SEED);
+    private BigInteger[] ids;
+    private long renames;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(EMPLOYEES, 0);
+        transactionalDemo = context.getBean(TransactionalDemo.class);
+        List<Employee> loaded = context.getBean(EmployeeRepository.class).findAll(EmployeeFetchPlan.WITH_CARD);
+        employees = loaded.toArray(Employee[]::new);
+        ids = loaded.stream().map(Employee::getId).toArray(BigInteger[]::new);
+        cards = loaded.stream().map(Employee::getAccessCard).toArray(AccessCard[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void updateEmployee() {
+        int i = random.nextInt(employees.length);
+        employees[i] = transactionalDemo.updateEmployee(employees[i]);
+    }
+
+    @Benchmark
+    public Employee renameEmployee() {
+        return transactionalDemo.renameEmployee(ids[random.nextInt(ids.length)], "Benchmarked " + renames++);
+    }
+
+    @Benchmark
+    public void updateEmployeeAndAccessCard() {
+        int i = random.nextInt(employees.length);
+        AccessCard accessCard = cards[i];
+        accessCard.setFirmwareVersion(accessCard.getFirmwareVersion().endsWith("-b") ? "2.0-a" : "2.0-b");
+        employees[i] = transactionalDemo.updateEmployeeAndAccessCard(employees[i], accessCard);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TransactionalDemoBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.uberkautilya.jpawithspringboot.cache;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.AccessCardRepository;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import com.uberkautilya.jpawithspringboot.service.TransactionalDemo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The cache and its statistics are shared with the other tests of the run: counts are compared before and after, except in
+ * the hit ratio test, which clears them
+ */
+@SpringBootTest
+class SecondLevelCacheTests {
+	private static final String EMPLOYEE = Employee.class.getName();
+	private static final String ACCESS_CARD = AccessCard.class.getName();
+
+	@Autowired
+	TransactionalDemo transactionalDemo;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	AccessCardRepository accessCardRepository;
+	@Autowired
+	SecondLevelCacheStatistics cacheStatistics;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@PersistenceContext
+	EntityManager entityManager;
+	@PersistenceUnit
+	EntityManagerFactory emFactory;
+
+	private Employee employee;
+	private AccessCard accessCard;
+
+	@BeforeEach
+	void seed() {
+		accessCard = accessCardRepository.save(new AccessCard(new Date(), true, "1.0"));
+		employee = new Employee();
+		employee.setName("Cached");
+		employee.setSsn("lc" + (System.nanoTime() % 100_000_000));
+		employee.setAccessCard(accessCard);
+		employee = employeeRepository.save(employee);
+	}
+
+	@Test
+	void statisticsAreOnForTheTests() {
+		assertTrue(cacheStatistics.isEnabled());
+	}
+
+	@Test
+	void updateEmployeeAndAccessCardReplacesTheCachedEntries() {
+		transactionTemplate.executeWithoutResult(status -> {
+			entityManager.find(Employee.class, employee.getId());
+			entityManager.find(AccessCard.class, accessCard.getId());
+		});
+		assertTrue(emFactory.getCache().contains(Employee.class, employee.getId()));
+		assertTrue(emFactory.getCache().contains(AccessCard.class, accessCard.getId()));
+		accessCard.setFirmwareVersion("2.0");
+
+		Employee updated = transactionalDemo.updateEmployeeAndAccessCard(employee, accessCard);
+
+		CacheRegionStats employeeBefore = cacheStatistics.snapshot().get(EMPLOYEE);
+		CacheRegionStats accessCardBefore = cacheStatistics.snapshot().get(ACCESS_CARD);
+		transactionTemplate.executeWithoutResult(status -> {
+			Employee cached = entityManager.find(Employee.class, employee.getId());
+			assertEquals("Updated Name", cached.getName());
+			assertEquals(updated.getVersion(), cached.getVersion());
+			assertEquals("2.0", entityManager.find(AccessCard.class, accessCard.getId()).getFirmwareVersion());
+		});
+		// Read from the cache, not the table: the entries written at commit replaced those cached before
+		CacheRegionStats employeeAfter = cacheStatistics.snapshot().get(EMPLOYEE);
+		CacheRegionStats accessCardAfter = cacheStatistics.snapshot().get(ACCESS_CARD);
+		assertEquals(employeeBefore.hits() + 1, employeeAfter.hits());
+		assertEquals(employeeBefore.misses(), employeeAfter.misses());
+		assertEquals(accessCardBefore.hits() + 1, accessCardAfter.hits());
+		assertEquals(accessCardBefore.misses(), accessCardAfter.misses());
+	}
+
+	@Test
+	void reportsTheHitRatioOfARegion() {
+		emFactory.getCache().evict(AccessCard.class, accessCard.getId());
+		cacheStatistics.clear();
+
+		for (int i = 0; i < 4; i++) {
+			transactionTemplate.executeWithoutResult(status -> entityManager.find(AccessCard.class, accessCard.getId()));
+		}
+
+		CacheRegionStats stats = cacheStatistics.snapshot().get(ACCESS_CARD);
+		assertEquals(3, stats.hits());
+		assertEquals(1, stats.misses());
+		assertEquals(1, stats.puts());
+		assertEquals(0.75, stats.hitRatio());
+		assertEquals(0.25, stats.missRatio());
+		assertEquals(0, new CacheRegionStats(ACCESS_CARD, 0, 0, 0).hitRatio());
+	}
+}
@@ -0,0 +1,105 @@
+package com.uberkautilya.jpawithspringboot.cdc;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.entity.PayStub;
+import com.uberkautilya.jpawithspringboot.service.EmployeeOffboardingService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The log is shared with the other tests of the run: only what the cursor reads after its own position is looked at
+ */
+@SpringBootTest
+class ChangeCaptureListenerTests {
+	@Autowired
+	ChangeLog changeLog;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@Autowired
+	EmployeeOffboardingService offboardingService;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@Test
+	void capturesTheChangesOfATransactionTogetherOnceCommitted() {
+		ChangeLogCursor cursor = changeLog.cursor(changeLog.endOffset());
+		BigInteger[] ids = new BigInteger[1];
+		int[] payStubId = new int[1];
+		transactionTemplate.executeWithoutResult(status -> {
+			Employee employee = new Employee();
+			employee.setName("Captured");
+			employee.setSsn("cd" + (System.nanoTime() % 100_000_000));
+			entityManager.persist(employee);
+			PayStub payStub = new PayStub(new Date(), new Date(), 1000);
+			payStub.setEmployee(employee);
+			entityManager.persist(payStub);
+			entityManager.flush();
+			// Nothing until the commit
+			assertEquals(0, cursor.lag());
+			ids[0] = employee.getId();
+			payStubId[0] = payStub.getId();
+		});
+		transactionTemplate.executeWithoutResult(status -> entityManager.find(Employee.class, ids[0]).setName("Captured and renamed"));
+
+		List<ChangeRecord> records = cursor.poll(10);
+		assertEquals(3, records.size());
+		assertEquals(records.get(0).commitId(), records.get(1).commitId());
+		assertTrue(records.stream().limit(2).allMatch(record -> record.type() == ChangeType.INSERT));
+		assertTrue(records.stream().anyMatch(record -> record.entity().equals("Employee") && record.id().equals(ids[0].toString())));
+		assertTrue(records.stream().anyMatch(record -> record.entity().equals("PayStub") && record.id().equals(String.valueOf(payStubId[0]))));
+		ChangeRecord update = records.get(2);
+		assertEquals(ChangeType.UPDATE, update.type());
+		assertEquals(List.of("name"), update.attributes());
+		assertEquals(update.offset(), update.commitId());
+	}
+
+	@Test
+	void anOffboardingIsCapturedAsTheRowsItRemoved() {
+		BigInteger id = transactionTemplate.execute(status -> {
+			Employee employee = new Employee();
+			employee.setName("Leaving");
+			employee.setSsn("lv" + (System.nanoTime() % 100_000_000));
+			entityManager.persist(employee);
+			for (int i = 0; i < 2; i++) {
+				PayStub payStub = new PayStub(new Date(), new Date(), 1000);
+				payStub.setEmployee(employee);
+				entityManager.persist(payStub);
+			}
+			return employee.getId();
+		});
+		ChangeLogCursor cursor = changeLog.cursor(changeLog.endOffset());
+
+		// An id that matches no employee is not captured
+		offboardingService.offboard(List.of(id, BigInteger.valueOf(-1)));
+
+		List<ChangeRecord> records = cursor.poll(10);
+		assertEquals(List.of("PayStub", "PayStub", "Employee"), records.stream().map(ChangeRecord::entity).toList());
+		assertTrue(records.stream().allMatch(record -> record.type() == ChangeType.DELETE && record.commitId() == records.get(0).offset()));
+		assertEquals(id.toString(), records.get(2).id());
+	}
+
+	@Test
+	void aRolledBackTransactionLeavesNothing() {
+		long end = changeLog.endOffset();
+		transactionTemplate.executeWithoutResult(status -> {
+			Employee employee = new Employee();
+			employee.setName("Rolled back");
+			employee.setSsn("rb" + (System.nanoTime() % 100_000_000));
+			entityManager.persist(employee);
+			entityManager.flush();
+			status.setRollbackOnly();
+		});
+		assertEquals(end, changeLog.endOffset());
+	}
+}
@@ -0,0 +1,132 @@
+package com.uberkautilya.jpawithspringboot.cdc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeLogTests {
+	@TempDir
+	Path directory;
+
+	@Test
+	void offsetsSurviveSegmentRollsAndRestarts() throws IOException, InterruptedException {
+		ChangeLog changeLog = new ChangeLog(directory, DataSize.ofKilobytes(1), false);
+		for (int transaction = 0; transaction < 50; transaction++) {
+			List<CapturedChange> changes = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				changes.add(new CapturedChange(ChangeType.UPDATE, "Employee", String.valueOf(transaction * 3 + i), List.of("name", "age")));
+			}
+			assertEquals(transaction * 3L, changeLog.append(changes));
+		}
+		assertEquals(150, changeLog.endOffset());
+		assertTrue(changeLog.segmentCount() > 1);
+		changeLog.close();
+
+		ChangeLog reopened = new ChangeLog(directory, DataSize.ofKilobytes(1), false);
+		assertEquals(150, reopened.endOffset());
+		ChangeLogCursor cursor = reopened.cursor(0);
+		List<ChangeRecord> records = new ArrayList<>();
+		for (List<ChangeRecord> batch = cursor.poll(40); !batch.isEmpty(); batch = cursor.poll(40)) {
+			records.addAll(batch);
+		}
+		assertEquals(150, records.size());
+		for (int i = 0; i < records.size(); i++) {
+			ChangeRecord record = records.get(i);
+			assertEquals(i, record.offset());
+			assertEquals(i - i % 3, record.commitId());
+			assertEquals(String.valueOf(i), record.id());
+			assertEquals(List.of("name", "age"), record.attributes());
+		}
+		assertEquals(0, cursor.lag());
+		assertTrue(cursor.poll(10, Duration.ofMillis(10)).isEmpty());
+
+		reopened.append(List.of(new CapturedChange(ChangeType.DELETE, "Employee", null, List.of())));
+		ChangeRecord bulk = cursor.poll(10).get(0);
+		assertEquals(150, bulk.offset());
+		assertNull(bulk.id());
+		reopened.close();
+	}
+
+	@Test
+	void aTornAppendIsDroppedAtStartup() throws IOException {
+		ChangeLog changeLog = new ChangeLog(directory, DataSize.ofKilobytes(4), false);
+		changeLog.append(List.of(new CapturedChange(ChangeType.INSERT, "PayStub", "1", List.of())));
+		changeLog.close();
+		// A frame whose length made it to the page, its payload not: the checksum fails
+		Path segment;
+		try (Stream<Path> files = Files.list(directory)) {
+			segment = files.findFirst().orElseThrow();
+		}
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			channel.read(header, 0);
+			int next = 8 + header.getInt(0);
+			channel.write(ByteBuffer.allocate(4).putInt(0, 40), next);
+		}
+
+		ChangeLog reopened = new ChangeLog(directory, DataSize.ofKilobytes(4), false);
+		assertEquals(1, reopened.endOffset());
+		reopened.append(List.of(new CapturedChange(ChangeType.INSERT, "PayStub", "2", List.of())));
+		assertEquals(List.of("1", "2"), reopened.read(0, 10).stream().map(ChangeRecord::id).toList());
+		reopened.close();
+	}
+
+	@Test
+	void aTransactionCutShortIsDroppedAsAWhole() throws IOException {
+		ChangeLog changeLog = new ChangeLog(directory, DataSize.ofKilobytes(1), false);
+		changeLog.append(changes(0, 10));
+		// Spans the rest of the first segment and two more
+		changeLog.append(changes(10, 30));
+		assertEquals(3, changeLog.segmentCount());
+		changeLog.close();
+		// The crash came before the length of its last frame was written
+		Path last;
+		try (Stream<Path> files = Files.list(directory)) {
+			last = files.max(Comparator.naturalOrder()).orElseThrow();
+		}
+		try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer length = ByteBuffer.allocate(4);
+			int position = 0;
+			int lastFrame = 0;
+			while (channel.read(length.clear(), position) == 4 && length.getInt(0) > 0) {
+				lastFrame = position;
+				position += 8 + length.getInt(0);
+			}
+			channel.write(ByteBuffer.allocate(4), lastFrame);
+		}
+
+		ChangeLog reopened = new ChangeLog(directory, DataSize.ofKilobytes(1), false);
+		assertEquals(10, reopened.endOffset());
+		assertEquals(1, reopened.segmentCount());
+		assertEquals(10, reopened.append(changes(100, 2)));
+		List<ChangeRecord> records = reopened.read(0, 100);
+		assertEquals(12, records.size());
+		assertEquals(List.of("8", "9", "100", "101"), records.subList(8, 12).stream().map(ChangeRecord::id).toList());
+		assertEquals(10, records.get(11).commitId());
+		reopened.close();
+	}
+
+	private static List<CapturedChange> changes(int firstId, int count) {
+		List<CapturedChange> changes = new ArrayList<>();
+		for (int id = firstId; id < firstId + count; id++) {
+			changes.add(new CapturedChange(ChangeType.UPDATE, "Employee", String.valueOf(id), List.of("name", "age")));
+		}
+		return changes;
+	}
+}
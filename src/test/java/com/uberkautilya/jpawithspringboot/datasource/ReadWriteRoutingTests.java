@@ -0,0 +1,148 @@
+package com.uberkautilya.jpawithspringboot.datasource;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.entity.PayStub;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.h2.Driver;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing between three in-memory H2 databases: the primary "TEST" and the replicas "REPLICA1" and "REPLICA2"
+ * A third replica points at a server that does not exist, its reads have to move on to the others
+ * The replicas get the schema of the entities before the application starts, but no data - replication is not what is tested here,
+ * which database served a statement is told by H2's DATABASE() function
+ * The second-level cache is off: it is shared by all the contexts of the test run, and would answer reads meant for the replicas
+ * Every pool runs the spring.datasource.hikari.connection-init-sql, which sets a variable of the H2 session
+ */
+@SpringBootTest(properties = {
+		"datasource-routing.enabled=true",
+		"datasource-routing.replicas[0].url=jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1",
+		"datasource-routing.replicas[1].url=jdbc:h2:tcp://localhost:1/nowhere",
+		"datasource-routing.replicas[2].url=jdbc:h2:mem:replica2;DB_CLOSE_DELAY=-1",
+		"datasource-routing.connection-timeout=250ms",
+		"datasource-routing.retry-after=1m",
+		"spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+		"spring.datasource.hikari.connection-init-sql=set @pool_settings = 'bound'"
+})
+class ReadWriteRoutingTests {
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@BeforeAll
+	static void createReplicaSchemas() {
+		for (String url : new String[]{"jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1", "jdbc:h2:mem:replica2;DB_CLOSE_DELAY=-1"}) {
+			StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+					.applySetting("hibernate.connection.url", url)
+					.applySetting("hibernate.connection.username", "sa")
+					.applySetting("hibernate.hbm2ddl.auto", "create")
+					.applySetting("hibernate.hbm2ddl.halt_on_error", "true")
+					.applySetting("hibernate.cache.use_second_level_cache", "false")
+					// The table and column names Spring Boot configures Hibernate with
+					.applySetting("hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName())
+					.applySetting("hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName())
+					.build();
+			// Building the session factory creates the schema, closing it leaves the schema in place
+			new MetadataSources(registry)
+					.addAnnotatedClass(Employee.class)
+					.addAnnotatedClass(AccessCard.class)
+					.addAnnotatedClass(EmailGroup.class)
+					.addAnnotatedClass(PayStub.class)
+					.buildMetadata()
+					.buildSessionFactory()
+					.close();
+		}
+	}
+
+	@Test
+	void readWriteTransactionsUseThePrimary() {
+		assertEquals("TEST", database(false));
+	}
+
+	@Test
+	void readOnlyTransactionsAreSpreadOverTheAvailableReplicas() {
+		Set<String> databases = new HashSet<>();
+		for (int i = 0; i < 6; i++) {
+			databases.add(database(true));
+		}
+		assertEquals(Set.of("REPLICA1", "REPLICA2"), databases);
+	}
+
+	@Test
+	void readsFollowWritesToThePrimaryWithinAContext() {
+		try (ReadYourWritesContext.Scope scope = ReadYourWritesContext.open()) {
+			assertEquals("REPLICA", database(true).substring(0, 7));
+			database(false);
+			assertEquals("TEST", database(true));
+		}
+		assertEquals("REPLICA", database(true).substring(0, 7));
+	}
+
+	@Test
+	void everyPoolHasTheHikariSettings() {
+		assertEquals("bound", query(false, "select @pool_settings"));
+		for (int i = 0; i < 4; i++) {
+			assertEquals("bound", query(true, "select @pool_settings"));
+		}
+	}
+
+	@Test
+	void connectionsWithCredentialsComeFromTheRoutedPool() throws Exception {
+		DataSource primary = new SimpleDriverDataSource(new Driver(), "jdbc:h2:mem:credentials-primary;DB_CLOSE_DELAY=-1");
+		DataSource replica = new SimpleDriverDataSource(new Driver(), "jdbc:h2:mem:credentials-replica;DB_CLOSE_DELAY=-1");
+		ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, List.of(replica), 0);
+		assertEquals("CREDENTIALS-PRIMARY", database(routing.getConnection("sa", "")));
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		try {
+			assertEquals("CREDENTIALS-REPLICA", database(routing.getConnection("sa", "")));
+		} finally {
+			TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+		}
+	}
+
+	private String database(boolean readOnly) {
+		return query(readOnly, "select database()");
+	}
+
+	private String query(boolean readOnly, String sql) {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setReadOnly(readOnly);
+		return template.execute(status -> (String) entityManager.createNativeQuery(sql).getSingleResult());
+	}
+
+	private static String database(Connection connection) throws SQLException {
+		try (connection;
+			 Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery("select database()")) {
+			resultSet.next();
+			return resultSet.getString(1);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.uberkautilya.jpawithspringboot.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedIdBlockAllocatorTests {
+	private static final int BLOCK_SIZE = 10;
+
+	/**
+	 * A sequence starting at 1 with the block size as its increment, as pooled-lo uses it
+	 */
+	private static LongSupplier sequence(AtomicLong calls) {
+		return () -> 1 + calls.getAndIncrement() * BLOCK_SIZE;
+	}
+
+	@Test
+	void aBlockIsUsedUpBeforeTheNextIsReserved() {
+		AtomicLong calls = new AtomicLong();
+		StripedIdBlockAllocator allocator = new StripedIdBlockAllocator(BLOCK_SIZE);
+		for (long expected = 1; expected <= BLOCK_SIZE; expected++) {
+			assertEquals(expected, allocator.next(sequence(calls)));
+		}
+		assertEquals(1, calls.get());
+		// The last id of the block is followed by the first of the next one
+		assertEquals(BLOCK_SIZE + 1, allocator.next(sequence(calls)));
+		assertEquals(2, calls.get());
+		assertThrows(IllegalArgumentException.class, () -> new StripedIdBlockAllocator(0));
+	}
+
+	@Test
+	void threadsNeverHandOutTheSameId() throws Exception {
+		int threads = 8;
+		int idsPerThread = 10_005;
+		AtomicLong calls = new AtomicLong();
+		StripedIdBlockAllocator allocator = new StripedIdBlockAllocator(BLOCK_SIZE);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<long[]>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				Callable<long[]> draw = () -> {
+					long[] ids = new long[idsPerThread];
+					for (int i = 0; i < idsPerThread; i++) {
+						ids[i] = allocator.next(sequence(calls));
+					}
+					return ids;
+				};
+				futures.add(executor.submit(draw));
+			}
+			Set<Long> all = new HashSet<>();
+			for (Future<long[]> future : futures) {
+				long[] ids = future.get();
+				for (int i = 0; i < ids.length; i++) {
+					assertTrue(all.add(ids[i]), "Handed out twice: " + ids[i]);
+					// A thread's ids only go up, one block at a time
+					assertTrue(i == 0 || ids[i] > ids[i - 1]);
+				}
+			}
+			assertEquals((long) threads * idsPerThread, all.size());
+			// Every thread reserves a block per BLOCK_SIZE ids, the last one partly used
+			assertEquals(threads * ((idsPerThread + BLOCK_SIZE - 1) / BLOCK_SIZE), calls.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.uberkautilya.jpawithspringboot.id;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class StripedPooledLoGeneratorTests {
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@Test
+	void employeesDrawFromEmployeeSeqInBlocksOfItsIncrement() throws Exception {
+		// The sequence the implicit @GeneratedValue(SEQUENCE) of Employee used, exported with the configured block size
+		assertEquals(100L, jdbcTemplate.queryForObject(
+				"select increment from information_schema.sequences where sequence_name = 'EMPLOYEE_SEQ'", Long.class));
+
+		int threads = 4;
+		int employeesPerThread = 60;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<BigInteger>>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				String ssnPrefix = "sp" + t + "-";
+				futures.add(executor.submit(() -> transactionTemplate.execute(status -> {
+					List<BigInteger> ids = new ArrayList<>();
+					for (int i = 0; i < employeesPerThread; i++) {
+						Employee employee = new Employee();
+						employee.setName("Generated");
+						employee.setSsn(ssnPrefix + i);
+						entityManager.persist(employee);
+						ids.add(employee.getId());
+					}
+					return ids;
+				})));
+			}
+			Set<BigInteger> ids = new HashSet<>();
+			for (Future<List<BigInteger>> future : futures) {
+				ids.addAll(future.get());
+			}
+			assertEquals(threads * employeesPerThread, ids.size());
+			assertTrue(ids.stream().allMatch(id -> id.signum() > 0));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.uberkautilya.jpawithspringboot.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedBitmapTests {
+
+	@Test
+	void setOperationsMatchBitSet() {
+		Random random = new Random(7);
+		// Sparse chunks stay arrays, dense ones turn into bitsets - both kinds on both sides
+		for (int density : new int[]{50, 2_000, 30_000}) {
+			BitSet leftBits = new BitSet();
+			BitSet rightBits = new BitSet();
+			CompressedBitmap left = new CompressedBitmap();
+			CompressedBitmap right = new CompressedBitmap();
+			for (int i = 0; i < density * 4; i++) {
+				int id = random.nextInt(4 * 65536);
+				left.add(id);
+				leftBits.set(id);
+				id = random.nextInt(3 * 65536) + 65536;
+				right.add(id);
+				rightBits.set(id);
+			}
+			assertEquals(leftBits.cardinality(), left.cardinality());
+
+			BitSet and = (BitSet) leftBits.clone();
+			and.and(rightBits);
+			assertArrayEquals(and.stream().toArray(), left.and(right).toArray());
+			BitSet or = (BitSet) leftBits.clone();
+			or.or(rightBits);
+			assertArrayEquals(or.stream().toArray(), left.or(right).toArray());
+			BitSet andNot = (BitSet) leftBits.clone();
+			andNot.andNot(rightBits);
+			assertArrayEquals(andNot.stream().toArray(), left.andNot(right).toArray());
+		}
+	}
+
+	@Test
+	void removingShrinksBackToArrays() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		for (int id = 0; id < 10_000; id++) {
+			assertTrue(bitmap.add(id));
+		}
+		assertFalse(bitmap.add(5));
+		long dense = bitmap.sizeInBytes();
+		for (int id = 0; id < 10_000; id += 2) {
+			assertTrue(bitmap.remove(id));
+		}
+		for (int id = 1; id < 9_000; id += 2) {
+			bitmap.remove(id);
+		}
+		assertEquals(500, bitmap.cardinality());
+		assertTrue(bitmap.contains(9_001));
+		assertFalse(bitmap.contains(9_000));
+		assertTrue(bitmap.copy().sizeInBytes() < dense / 4);
+		for (int id = 9_001; id < 10_000; id += 2) {
+			bitmap.remove(id);
+		}
+		assertTrue(bitmap.isEmpty());
+	}
+}
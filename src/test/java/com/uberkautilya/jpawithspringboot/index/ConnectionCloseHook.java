@@ -0,0 +1,41 @@
+package com.uberkautilya.jpawithspringboot.index;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+/**
+ * Runs an action whenever a connection of the DataSource is closed - to commit a change after a rebuild has read its rows,
+ * and before it swaps them in
+ */
+final class ConnectionCloseHook {
+	private ConnectionCloseHook() {
+	}
+
+	static DataSource onClose(DataSource dataSource, Runnable action) {
+		return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+				(proxy, method, args) -> {
+					Object result = invoke(dataSource, method, args);
+					if (!(result instanceof Connection connection)) {
+						return result;
+					}
+					return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+							(connectionProxy, connectionMethod, connectionArgs) -> {
+								if (connectionMethod.getName().equals("close")) {
+									action.run();
+								}
+								return invoke(connection, connectionMethod, connectionArgs);
+							});
+				});
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.uberkautilya.jpawithspringboot.index;
+
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import com.uberkautilya.jpawithspringboot.service.EmployeeOffboardingService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class EmailGroupMembershipIndexTests {
+	@Autowired
+	EmailGroupMembershipIndex membershipIndex;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	EmployeeOffboardingService offboardingService;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	private int a;
+	private int b;
+	private int c;
+	private BigInteger inAB;
+	private BigInteger inABC;
+	private BigInteger inA;
+
+	@BeforeEach
+	void seed() {
+		a = group("a");
+		b = group("b");
+		c = group("c");
+		inAB = employee(a, b);
+		inABC = employee(a, b, c);
+		inA = employee(a);
+	}
+
+	private int group(String name) {
+		return transactionTemplate.execute(status -> {
+			EmailGroup group = new EmailGroup(name + System.nanoTime());
+			entityManager.persist(group);
+			return group.getId();
+		});
+	}
+
+	private BigInteger employee(int... groupIds) {
+		return transactionTemplate.execute(status -> {
+			Employee employee = new Employee();
+			employee.setName("Member");
+			employee.setSsn("mb" + (System.nanoTime() % 100_000_000));
+			for (int groupId : groupIds) {
+				employee.addEmailGroup(entityManager.getReference(EmailGroup.class, groupId));
+			}
+			entityManager.persist(employee);
+			return employee.getId();
+		});
+	}
+
+	@Test
+	void setQueriesFollowCommittedChanges() {
+		assertEquals(List.of(inAB), employeeRepository.findIdsInEmailGroups(List.of(a, b), List.of(c)));
+		assertEquals(List.of(inAB, inABC, inA), employeeRepository.findIdsInAnyEmailGroup(List.of(a, c)));
+		assertEquals(3, employeeRepository.countEmployeesByEmailGroup().get(a));
+		List<Employee> employees = employeeRepository.findInEmailGroups(List.of(a), List.of(b));
+		assertEquals(List.of(inA), employees.stream().map(Employee::getId).toList());
+
+		// Moved from c to b: visible once committed, and not at all when rolled back
+		transactionTemplate.executeWithoutResult(status -> {
+			Employee employee = entityManager.find(Employee.class, inABC);
+			employee.getEmailGroupList().removeIf(group -> group.getId() == c);
+			entityManager.flush();
+			assertEquals(List.of(inAB), employeeRepository.findIdsInEmailGroups(List.of(a, b), List.of(c)));
+		});
+		assertEquals(List.of(inAB, inABC), employeeRepository.findIdsInEmailGroups(List.of(a, b), List.of(c)));
+		transactionTemplate.executeWithoutResult(status -> {
+			entityManager.find(Employee.class, inA).addEmailGroup(entityManager.getReference(EmailGroup.class, b));
+			entityManager.flush();
+			status.setRollbackOnly();
+		});
+		assertEquals(Set.of(inAB, inABC), Set.copyOf(employeeRepository.findIdsInEmailGroups(List.of(b), List.of())));
+
+		offboardingService.offboard(List.of(inAB));
+		assertEquals(List.of(inABC), employeeRepository.findIdsInEmailGroups(List.of(a, b), List.of()));
+		transactionTemplate.executeWithoutResult(status -> entityManager.remove(entityManager.find(Employee.class, inA)));
+		assertEquals(1, employeeRepository.countEmployeesByEmailGroup().get(a));
+
+		// The rebuild from EMAIL_GROUP_MAPPING agrees with what was kept in sync
+		membershipIndex.rebuild();
+		assertEquals(List.of(inABC), employeeRepository.findIdsInEmailGroups(List.of(a), List.of()));
+		assertEquals(null, employeeRepository.countEmployeesByEmailGroup().get(c));
+	}
+
+	@Test
+	void changesCommittedDuringARebuildAreKept() {
+		DataSource dataSource = membershipIndex.dataSource;
+		AtomicBoolean changed = new AtomicBoolean();
+		// Once EMAIL_GROUP_MAPPING has been read
+		membershipIndex.dataSource = ConnectionCloseHook.onClose(dataSource, () -> {
+			if (changed.compareAndSet(false, true)) {
+				offboardingService.offboard(List.of(inA));
+				transactionTemplate.executeWithoutResult(status -> entityManager.find(Employee.class, inABC).getEmailGroupList()
+						.removeIf(group -> group.getId() == c));
+			}
+		});
+		try {
+			membershipIndex.rebuild();
+		} finally {
+			membershipIndex.dataSource = dataSource;
+		}
+
+		assertEquals(List.of(inAB, inABC), employeeRepository.findIdsInEmailGroups(List.of(a), List.of()));
+		assertEquals(null, employeeRepository.countEmployeesByEmailGroup().get(c));
+	}
+
+	@Test
+	void atLeastOneGroupIsRequired() {
+		assertThrows(InvalidDataAccessApiUsageException.class, () -> employeeRepository.findIdsInEmailGroups(List.of(), List.of(a)));
+	}
+}
@@ -0,0 +1,151 @@
+package com.uberkautilya.jpawithspringboot.index;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import com.uberkautilya.jpawithspringboot.service.EmployeeOffboardingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class EmployeeSearchIndexTests {
+	@Autowired
+	EmployeeSearchIndex searchIndex;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	EmployeeOffboardingService offboardingService;
+
+	private String surname;
+	private String ssnPrefix;
+	private BigInteger ada;
+	private BigInteger alan;
+
+	@BeforeEach
+	void seed() {
+		surname = "Qx" + Long.toString(System.nanoTime(), 36);
+		ssnPrefix = "s" + Long.toString(System.nanoTime() % 1_000_000, 36);
+		ada = save("Ada " + surname, ssnPrefix + "-1");
+		alan = save("Alan " + surname, ssnPrefix + "-2");
+	}
+
+	private BigInteger save(String name, String ssn) {
+		Employee employee = new Employee();
+		employee.setName(name);
+		employee.setSsn(ssn);
+		return employeeRepository.save(employee).getId();
+	}
+
+	@Test
+	void prefixesOfNameWordsAndSsnFindCommittedEmployees() {
+		String prefix = surname.substring(0, surname.length() - 2).toLowerCase();
+		assertEquals(Set.of(ada, alan), Set.copyOf(employeeRepository.searchIds(prefix, 10)));
+		assertEquals(List.of(ada), employeeRepository.searchIds("ad " + surname.toUpperCase(), 10));
+		assertEquals(List.of(alan), employeeRepository.searchIds(ssnPrefix + "-2", 10));
+		assertEquals(List.of(alan), employeeRepository.searchIds(ssnPrefix + "2", 10));
+		assertEquals(1, employeeRepository.searchIds(surname, 1).size());
+		List<Employee> employees = employeeRepository.search(surname + " al", 10);
+		assertEquals(List.of("Alan " + surname), employees.stream().map(Employee::getName).toList());
+
+		Employee renamed = employeeRepository.findById(ada).orElseThrow();
+		renamed.setName("Grace " + surname);
+		employeeRepository.save(renamed);
+		assertEquals(List.of(), employeeRepository.searchIds("ada " + surname, 10));
+		assertEquals(List.of(ada), employeeRepository.searchIds("grace " + surname, 10));
+
+		employeeRepository.updateNameByIds(List.of(alan), "Edsger " + surname);
+		assertEquals(List.of(alan), employeeRepository.searchIds("eds " + surname, 10));
+		assertEquals(List.of(), employeeRepository.searchIds("alan " + surname, 10));
+
+		offboardingService.offboard(List.of(alan));
+		employeeRepository.deleteById(ada);
+		assertEquals(List.of(), employeeRepository.searchIds(surname, 10));
+	}
+
+	@Test
+	void rebuildMatchesTheIncrementalIndex() {
+		List<BigInteger> before = employeeRepository.searchIds(surname, 10);
+
+		searchIndex.rebuild();
+
+		assertEquals(before, employeeRepository.searchIds(surname, 10));
+		// The whole table, employees written by the other test contexts on the shared database included
+		assertEquals(employeeRepository.count(), searchIndex.size());
+		assertTrue(employeeRepository.searchIds("", 10).isEmpty());
+	}
+
+	@Test
+	void changesCommittedDuringARebuildAreKept() {
+		// Renamed each time a partition has been read, on the threads of the build: the last rename comes after every read
+		AtomicInteger renames = new AtomicInteger();
+		Thread caller = Thread.currentThread();
+		DataSource dataSource = searchIndex.dataSource;
+		searchIndex.dataSource = ConnectionCloseHook.onClose(dataSource, () -> {
+			if (Thread.currentThread() == caller) {
+				return;
+			}
+			synchronized (renames) {
+				Employee employee = employeeRepository.findById(ada).orElseThrow();
+				employee.setName("Renamed" + renames.incrementAndGet() + " " + surname);
+				employeeRepository.save(employee);
+			}
+		});
+		try {
+			searchIndex.rebuild();
+		} finally {
+			searchIndex.dataSource = dataSource;
+		}
+
+		assertEquals(List.of(ada), employeeRepository.searchIds("renamed" + renames.get() + " " + surname, 10));
+		assertEquals(List.of(), employeeRepository.searchIds("ada " + surname, 10));
+	}
+
+	@Test
+	void concurrentChangesToAnEmployeeLeaveOnlyTheWordsOfTheLast() throws Exception {
+		EmployeeSearchIndex.Entries entries = new EmployeeSearchIndex.Entries();
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int round = 0; round < 1000; round++) {
+				CyclicBarrier start = new CyclicBarrier(threads);
+				List<Future<?>> writers = new ArrayList<>();
+				for (int t = 0; t < threads; t++) {
+					String name = "n" + round + "w" + t;
+					writers.add(executor.submit(() -> {
+						start.await();
+						if (name.endsWith("w0")) {
+							entries.remove(1);
+						} else {
+							entries.put(1, name, null);
+						}
+						return null;
+					}));
+				}
+				for (Future<?> writer : writers) {
+					writer.get();
+				}
+				// Whichever came last, the entries are those of its words alone
+				List<String> indexed = entries.prefixScan("n" + round + "w").stream().map(EmployeeSearchIndex.Entry::word).toList();
+				assertTrue(indexed.size() <= 1, "Round " + round + " left " + indexed);
+				assertEquals(indexed.isEmpty(), !entries.matchesAll(1, List.of("n")));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
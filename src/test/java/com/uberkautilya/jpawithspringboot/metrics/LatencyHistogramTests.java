@@ -0,0 +1,65 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTests {
+	private static final int LAST_BUCKET = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+
+	@Test
+	void bucketsTileTheRangeOfLongWithinAnEighthOfTheirValue() {
+		for (long value = 0; value < 8; value++) {
+			assertEquals(value, LatencyHistogram.bucketOf(value));
+			assertEquals(value, LatencyHistogram.upperBoundOf((int) value));
+		}
+		for (int bucket = 0; bucket <= LAST_BUCKET; bucket++) {
+			long upperBound = LatencyHistogram.upperBoundOf(bucket);
+			assertEquals(bucket, LatencyHistogram.bucketOf(upperBound));
+			if (bucket < LAST_BUCKET) {
+				assertEquals(bucket + 1, LatencyHistogram.bucketOf(upperBound + 1));
+			}
+			if (bucket >= 8) {
+				long lowerBound = LatencyHistogram.upperBoundOf(bucket - 1) + 1;
+				assertTrue(upperBound - lowerBound + 1 <= lowerBound / 8, "Bucket " + bucket + " is wider than an eighth of its lower bound");
+			}
+		}
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LAST_BUCKET));
+		assertEquals(0, LatencyHistogram.bucketOf(0));
+	}
+
+	@Test
+	void percentilesAreWithinAnEighthAboveTheRecordedValue() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long nanos = 1; nanos <= 100_000; nanos++) {
+			histogram.record(nanos * 1_000);
+		}
+
+		assertEquals(100_000, histogram.count());
+		assertEquals(100_000_000, histogram.max());
+		assertEquals(50_000_500, histogram.mean());
+		for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+			long exact = (long) Math.ceil(percentile * 1_000) * 1_000;
+			long reported = histogram.percentile(percentile);
+			assertTrue(reported >= exact && reported <= exact + exact / 8, percentile + "th percentile " + reported + " for " + exact);
+		}
+		// Capped by the max rather than the upper bound of its bucket
+		assertEquals(100_000_000, histogram.percentile(100));
+	}
+
+	@Test
+	void emptyAndNegativeValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.percentile(99));
+		assertEquals(0, histogram.mean());
+
+		histogram.record(-5);
+		assertEquals(1, histogram.count());
+		assertEquals(0, histogram.percentile(50));
+
+		histogram.reset();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.max());
+	}
+}
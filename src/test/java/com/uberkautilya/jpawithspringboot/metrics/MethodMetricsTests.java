@@ -0,0 +1,64 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MethodMetricsTests {
+
+	@Test
+	void registryKeepsOneStatsPerMethod() throws NoSuchMethodException {
+		MethodMetricsRegistry registry = new MethodMetricsRegistry();
+		Method length = String.class.getMethod("length");
+		Method isEmpty = String.class.getMethod("isEmpty");
+
+		assertSame(registry.stats(length), registry.stats(length));
+		registry.stats(length).record(2_000, false);
+		registry.stats(length).record(4_000, true);
+		registry.stats(isEmpty).record(1_000, false);
+
+		MethodStatsSnapshot snapshot = registry.snapshot().get("String.length");
+		assertEquals(2, snapshot.calls());
+		assertEquals(1, snapshot.errors());
+		assertEquals(3_000, snapshot.meanNanos());
+		assertEquals(4_000, snapshot.maxNanos());
+		assertEquals(1, registry.snapshot().get("String.isEmpty").calls());
+
+		registry.reset();
+		assertEquals(0, registry.snapshot().get("String.length").calls());
+		assertEquals(0, registry.snapshot().get("String.length").errors());
+	}
+
+	@Test
+	void loggerDropsWhatAFullQueueCannotTake() throws InterruptedException {
+		AsyncSampledLogger logger = new AsyncSampledLogger(0.5, 2);
+		// Nothing drains the queue from now on
+		logger.stop();
+		Thread.sleep(100);
+
+		for (int i = 0; i < 5; i++) {
+			// Failures are offered whatever the sample rate
+			logger.maybeLog("String.length", 1_000, new IllegalStateException());
+		}
+
+		assertTrue(logger.isEnabled());
+		assertEquals(3, logger.getDropped());
+	}
+
+	@Test
+	void aZeroSampleRateLogsNothing() {
+		AsyncSampledLogger logger = new AsyncSampledLogger(0, 1);
+
+		for (int i = 0; i < 5; i++) {
+			logger.maybeLog("String.length", 1_000, new IllegalStateException());
+		}
+
+		assertFalse(logger.isEnabled());
+		assertEquals(0, logger.getDropped());
+	}
+}
@@ -0,0 +1,96 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Statements differing only in their values or the length of an IN list are aggregated as one shape,
+ * and the number of shapes stays bounded
+ */
+class SqlStatisticsTests {
+	private SqlStatistics sqlStatistics;
+
+	@AfterEach
+	void stop() {
+		if (sqlStatistics != null) {
+			sqlStatistics.stop();
+		}
+	}
+
+	@Test
+	void normalizesLiteralsAndInLists() {
+		assertEquals("select * from employee_data e where e.id in (?) and e.emp_name=?",
+				SqlNormalizer.normalize("select *  from employee_data e\n where e.id in (?, ?,?) and e.emp_name='O''Neil'"));
+		assertEquals("select e1_0.id from employee_data e1_0 where e1_0.age>? fetch first ? rows only",
+				SqlNormalizer.normalize("select e1_0.id from employee_data e1_0 where e1_0.age>30 fetch first 10 rows only"));
+	}
+
+	@Test
+	void aggregatesPerShapeWithinTheBound() throws InterruptedException {
+		sqlStatistics = new SqlStatistics(1, Duration.ofSeconds(10), 3, 100, Duration.ZERO);
+		sqlStatistics.statementExecuted("select * from a where id in (?, ?)", 1_000);
+		sqlStatistics.statementExecuted("select * from a where id in (?)", 3_000);
+		sqlStatistics.statementExecuted("select * from b where id=?", 5_000);
+		sqlStatistics.statementExecuted("select * from c where id=?", 7_000);
+		sqlStatistics.statementExecuted("select * from d where id=?", 9_000);
+		List<SqlShapeSnapshot> shapes = awaitCount(5);
+
+		assertEquals(3, shapes.size());
+		SqlShapeSnapshot a = shapes.stream().filter(shape -> shape.shape().startsWith("select * from a")).findFirst().orElseThrow();
+		assertEquals(2, a.sampledCount());
+		assertEquals(4_000, a.totalNanos());
+		assertEquals(3_000, a.maxNanos());
+		// Both c and d, the bound of 3 including the slot of "<other>"
+		SqlShapeSnapshot other = shapes.stream().filter(shape -> shape.shape().equals(SqlStatistics.OTHER)).findFirst().orElseThrow();
+		assertEquals(2, other.sampledCount());
+		assertEquals(16_000, other.totalNanos());
+	}
+
+	/**
+	 * The statistics replace show-sql: they are on with the persistence metrics off, as by default, and only off when turned off
+	 */
+	@Test
+	void onUnlessTurnedOffWhateverThePersistenceMetrics() {
+		ApplicationContextRunner runner = new ApplicationContextRunner()
+				// The Duration properties, converted as in the application
+				.withInitializer(context -> context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance()))
+				.withUserConfiguration(SqlStatistics.class, RepositoryCallTracker.class, MeteredDataSourcePostProcessor.class)
+				.withBean(DataSource.class, JdbcDataSource::new)
+				.withPropertyValues("persistence-metrics.enabled=false");
+
+		runner.run(context -> {
+			assertNotNull(context.getBean(SqlStatistics.class));
+			assertNotNull(context.getBean(RepositoryCallTracker.class));
+			assertInstanceOf(MeteredDataSource.class, context.getBean(DataSource.class));
+		});
+		runner.withPropertyValues("sql-statistics.enabled=false").run(context -> {
+			assertTrue(context.getBeansOfType(SqlStatistics.class).isEmpty());
+			assertTrue(context.getBeansOfType(RepositoryCallTracker.class).isEmpty());
+			assertFalse(context.getBean(DataSource.class) instanceof MeteredDataSource);
+		});
+	}
+
+	private List<SqlShapeSnapshot> awaitCount(long count) throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			List<SqlShapeSnapshot> shapes = sqlStatistics.snapshot();
+			if (shapes.stream().mapToLong(SqlShapeSnapshot::sampledCount).sum() == count) {
+				return shapes;
+			}
+			Thread.sleep(20);
+		}
+		return sqlStatistics.snapshot();
+	}
+}
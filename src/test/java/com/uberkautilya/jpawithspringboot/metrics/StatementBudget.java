@@ -0,0 +1,46 @@
+package com.uberkautilya.jpawithspringboot.metrics;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Regression test helper: fails when a piece of code issues more SQL statements than it is budgeted for
+ * Counts whatever runs on the calling thread through the MeteredDataSource, the same way the PersistenceMetricsAspect does
+ * <pre>
+ * StatementBudget.assertWithin(2, () -> transactionalDemo.updateEmployee(employee));
+ * </pre>
+ */
+public final class StatementBudget {
+
+	private StatementBudget() {
+	}
+
+	public static PersistenceWork assertWithin(long maxStatements, Runnable action) {
+		return measure(maxStatements, () -> {
+			action.run();
+			return null;
+		}).work;
+	}
+
+	public static <T> T assertWithin(long maxStatements, Supplier<T> action) {
+		return measure(maxStatements, action).result;
+	}
+
+	private static <T> Measured<T> measure(long maxStatements, Supplier<T> action) {
+		PersistenceWork work = PersistenceWorkTracker.open();
+		T result;
+		try {
+			result = action.get();
+		} finally {
+			PersistenceWorkTracker.close(work);
+		}
+		if (work.getStatements() > maxStatements) {
+			fail("Statement budget exceeded: " + work.getStatements() + " statements for a budget of " + maxStatements + " - " + work);
+		}
+		return new Measured<>(result, work);
+	}
+
+	private record Measured<T>(T result, PersistenceWork work) {
+	}
+}
@@ -0,0 +1,94 @@
+package com.uberkautilya.jpawithspringboot.payroll;
+
+import com.uberkautilya.jpawithspringboot.archive.PayStubArchive;
+import com.uberkautilya.jpawithspringboot.dto.PayrollTotal;
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import com.uberkautilya.jpawithspringboot.entity.PayStub;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import com.uberkautilya.jpawithspringboot.repository.PayStubRepository;
+import com.uberkautilya.jpawithspringboot.service.PayrollAggregationService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class PayrollAggregationTests {
+	@Autowired
+	PayrollAggregationService aggregationService;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	PayStubRepository payStubRepository;
+	@Autowired
+	PayStubArchive archive;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	private String groupName;
+
+	@BeforeEach
+	void seed() {
+		groupName = "payroll-" + System.nanoTime();
+		EmailGroup emailGroup = transactionTemplate.execute(status -> {
+			EmailGroup group = new EmailGroup(groupName);
+			entityManager.persist(group);
+			return group;
+		});
+		EmployeeType[] types = {EmployeeType.FULL_TIME, EmployeeType.CONTRACTOR, null};
+		for (int i = 0; i < types.length; i++) {
+			Employee employee = new Employee();
+			employee.setName("Payroll " + i);
+			employee.setSsn("pa" + (System.nanoTime() % 100_000_000));
+			employee.setType(types[i]);
+			employee.addEmailGroup(emailGroup);
+			employee = employeeRepository.save(employee);
+			Calendar period = Calendar.getInstance();
+			for (int p = 0; p < 12; p++) {
+				PayStub payStub = new PayStub(period.getTime(), period.getTime(), 1000 + 250 * i + p);
+				payStub.setEmployee(employee);
+				payStubRepository.save(payStub);
+				period.add(Calendar.MONTH, -1);
+			}
+		}
+	}
+
+	@Test
+	void engineAgreesWithTheGroupByQueries() {
+		SalaryStats stats = aggregationService.compute(SalaryStats.byType());
+
+		List<PayrollTotal<EmployeeType>> byType = aggregationService.totalsByType();
+		assertTrue(byType.size() >= 3);
+		for (PayrollTotal<EmployeeType> total : byType) {
+			assertEquals(total.payStubs(), stats.count(total.key()), "pay stubs of " + total.key());
+			assertEquals(total.totalSalary(), stats.sum(total.key()), 0.01, "salaries of " + total.key());
+		}
+		assertTrue(stats.min(EmployeeType.CONTRACTOR) <= 1250);
+		assertTrue(stats.max(null) >= 1511);
+	}
+
+	@Test
+	void rollupsByPeriodAndEmailGroupCoverEveryPayStub() {
+		long payStubs = payStubRepository.count() + archive.getPayStubs();
+		assertEquals(payStubs, aggregationService.totalsByPeriod().stream().mapToLong(PayrollTotal::payStubs).sum());
+
+		PayrollTotal<String> group = aggregationService.totalsByEmailGroup().stream()
+				.filter(total -> total.key().equals(groupName))
+				.findFirst().orElseThrow();
+		assertEquals(36, group.payStubs());
+		assertEquals(3 * (1000 * 12 + 66) + 250 * 12 * 3, group.totalSalary(), 0.01);
+	}
+}
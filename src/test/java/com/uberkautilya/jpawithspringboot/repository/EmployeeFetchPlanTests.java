@@ -0,0 +1,136 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Each fetch plan has to load the employees and what it names in a single SQL statement, whatever the number of employees
+ * Statements are counted with the Hibernate statistics, enabled for tests in config/application.properties
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class EmployeeFetchPlanTests {
+	private static final int EMPLOYEES = 5;
+
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	EntityManagerFactory emFactory;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	private Statistics statistics;
+	private int minAge;
+
+	@BeforeAll
+	void seed() {
+		minAge = 1000 + (int) (System.nanoTime() % 1000);
+		EntityManager eManager = emFactory.createEntityManager();
+		eManager.getTransaction().begin();
+		EmailGroup engineering = new EmailGroup("engineering-" + minAge);
+		EmailGroup social = new EmailGroup("social-" + minAge);
+		eManager.persist(engineering);
+		eManager.persist(social);
+		for (int i = 0; i < EMPLOYEES; i++) {
+			AccessCard accessCard = new AccessCard(new Date(), true, "1.0");
+			eManager.persist(accessCard);
+			Employee employee = new Employee();
+			employee.setName("Plan " + i);
+			employee.setSsn("fp" + minAge + i);
+			employee.setAge(minAge);
+			employee.setAccessCard(accessCard);
+			employee.addEmailGroup(engineering);
+			employee.addEmailGroup(social);
+			eManager.persist(employee);
+		}
+		eManager.getTransaction().commit();
+		eManager.close();
+		statistics = emFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@BeforeEach
+	void resetStatistics() {
+		statistics.clear();
+	}
+
+	@Test
+	void summaryPlanLoadsNoAssociations() {
+		List<Employee> employees = loadAndTouch(EmployeeFetchPlan.SUMMARY);
+
+		assertEquals(EMPLOYEES, employees.size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+		employees.forEach(employee -> {
+			assertFalse(Hibernate.isInitialized(employee.getAccessCard()));
+			assertFalse(Hibernate.isInitialized(employee.getEmailGroupList()));
+		});
+	}
+
+	@Test
+	void withCardPlanJoinsTheCard() {
+		List<Employee> employees = loadAndTouch(EmployeeFetchPlan.WITH_CARD);
+
+		assertEquals(EMPLOYEES, employees.size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+		employees.forEach(employee -> assertTrue(Hibernate.isInitialized(employee.getAccessCard())));
+	}
+
+	@Test
+	void withGroupsPlanJoinsTheGroups() {
+		List<Employee> employees = loadAndTouch(EmployeeFetchPlan.WITH_GROUPS);
+
+		assertEquals(EMPLOYEES, employees.size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+		employees.forEach(employee -> assertEquals(2, employee.getEmailGroupList().size()));
+	}
+
+	@Test
+	void fullPlanLoadsEverythingInOneStatement() {
+		List<Employee> employees = loadAndTouch(EmployeeFetchPlan.FULL);
+
+		assertEquals(EMPLOYEES, employees.size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+		employees.forEach(employee -> {
+			assertTrue(Hibernate.isInitialized(employee.getAccessCard()));
+			assertEquals(2, employee.getEmailGroupList().size());
+		});
+	}
+
+	/**
+	 * Runs the query in a transaction, then reads the associations the plan should have loaded while still inside it -
+	 * anything the plan missed would show up as extra statements
+	 */
+	private List<Employee> loadAndTouch(EmployeeFetchPlan plan) {
+		return transactionTemplate.execute(status -> {
+			List<Employee> employees = employeeRepository.findByMinAgeOrderByName(minAge, plan);
+			employees.forEach(employee -> {
+				if (plan == EmployeeFetchPlan.WITH_CARD || plan == EmployeeFetchPlan.FULL) {
+					employee.getAccessCard().getFirmwareVersion();
+				}
+				if (plan == EmployeeFetchPlan.WITH_GROUPS || plan == EmployeeFetchPlan.FULL) {
+					employee.getEmailGroupList().size();
+				}
+			});
+			return employees;
+		});
+	}
+}
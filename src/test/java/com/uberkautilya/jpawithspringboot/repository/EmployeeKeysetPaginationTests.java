@@ -0,0 +1,119 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The listing is of every employee of at least minAge: the employees of a test are the only ones that old - the other tests
+ * stay below 2000, or remove theirs after each test as this one does - and are removed after it
+ */
+@SpringBootTest
+class EmployeeKeysetPaginationTests {
+	@Autowired
+	EmployeeRepository employeeRepository;
+
+	private int minAge;
+	private List<BigInteger> expected;
+
+	/**
+	 * Saved in an order other than the listing's, with ties on the name and null names
+	 */
+	@BeforeEach
+	void seed() {
+		minAge = 1_000_000;
+		List<BigInteger> nulls = new ArrayList<>();
+		List<BigInteger> anns = new ArrayList<>();
+		BigInteger bob = save("Bob");
+		anns.add(save("Ann"));
+		nulls.add(save(null));
+		BigInteger cy = save("Cy");
+		anns.add(save("Ann"));
+		nulls.add(save(null));
+		anns.add(save("Ann"));
+		nulls.add(save(null));
+		expected = new ArrayList<>(nulls);
+		expected.addAll(anns);
+		expected.add(bob);
+		expected.add(cy);
+	}
+
+	@AfterEach
+	void remove() {
+		employeeRepository.deleteAllById(expected);
+	}
+
+	private BigInteger save(String name) {
+		Employee employee = new Employee();
+		employee.setName(name);
+		employee.setSsn("ks" + (System.nanoTime() % 100_000_000));
+		employee.setAge(minAge);
+		return employeeRepository.save(employee).getId();
+	}
+
+	@Test
+	void everyPageSizeListsEachEmployeeOnceInOrder() {
+		for (int pageSize = 1; pageSize <= expected.size() + 1; pageSize++) {
+			List<BigInteger> listed = new ArrayList<>();
+			String token = null;
+			int pages = 0;
+			do {
+				KeysetPage<Employee> page = employeeRepository.findPageByMinAgeOrderByName(minAge, token, pageSize);
+				assertFalse(page.content().isEmpty(), "empty page of size " + pageSize);
+				page.content().forEach(employee -> listed.add(employee.getId()));
+				token = page.nextToken();
+				pages++;
+			} while (token != null);
+			assertEquals(expected, listed, "pages of " + pageSize);
+			// The last page is full when the rows divide evenly, and has no next token all the same
+			assertEquals((expected.size() + pageSize - 1) / pageSize, pages, "pages of " + pageSize);
+		}
+	}
+
+	@Test
+	void aPageEndingOnANameTieOrANullNameContinuesAfterIt() {
+		// Ends on the second null name
+		KeysetPage<Employee> nulls = employeeRepository.findPageByMinAgeOrderByName(minAge, null, 2);
+		assertNull(nulls.content().get(1).getName());
+		KeysetPage<Employee> afterNulls = employeeRepository.findPageByMinAgeOrderByName(minAge, nulls.nextToken(), 2);
+		assertEquals(expected.subList(2, 4), afterNulls.content().stream().map(Employee::getId).toList());
+
+		// Ends on the second of three Anns
+		KeysetPage<Employee> anns = employeeRepository.findPageByMinAgeOrderByName(minAge, afterNulls.nextToken(), 1);
+		assertEquals("Ann", anns.content().get(0).getName());
+		KeysetPage<Employee> rest = employeeRepository.findPageByMinAgeOrderByName(minAge, anns.nextToken(), 10);
+		assertEquals(expected.subList(5, expected.size()), rest.content().stream().map(Employee::getId).toList());
+		assertFalse(rest.hasNext());
+	}
+
+	@Test
+	void tokensRoundTripAndAreCheckedAgainstTheListing() {
+		for (String name : Arrays.asList(null, "", "Ann", "O'Neil: Jr", "Zoë +1")) {
+			EmployeeKeysetToken token = new EmployeeKeysetToken(minAge, name, BigInteger.valueOf(42));
+			String encoded = token.encode();
+			assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+			assertEquals(token, EmployeeKeysetToken.decode(encoded));
+		}
+
+		// Thrown as IllegalArgumentException, translated by the repository proxy
+		String token = employeeRepository.findPageByMinAgeOrderByName(minAge, null, 1).nextToken();
+		assertThrows(InvalidDataAccessApiUsageException.class, () -> employeeRepository.findPageByMinAgeOrderByName(minAge + 1, token, 1));
+		assertThrows(InvalidDataAccessApiUsageException.class, () -> employeeRepository.findPageByMinAgeOrderByName(minAge, "not a token", 1));
+		assertThrows(InvalidDataAccessApiUsageException.class, () -> employeeRepository.findPageByMinAgeOrderByName(minAge, null, 0));
+	}
+}
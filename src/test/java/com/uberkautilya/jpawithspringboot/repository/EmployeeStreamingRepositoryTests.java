@@ -0,0 +1,106 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.metrics.StatementBudget;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streams every employee of the test database - those of the other tests too - with a detachEvery far below their number
+ */
+@SpringBootTest
+class EmployeeStreamingRepositoryTests {
+	private static final int EMPLOYEES = 12;
+	private static final int DETACH_EVERY = 4;
+
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	EntityManagerFactory emFactory;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	private final Map<BigInteger, String> firmwareById = new HashMap<>();
+
+	@BeforeEach
+	void seed() {
+		EntityManager eManager = emFactory.createEntityManager();
+		eManager.getTransaction().begin();
+		long run = System.nanoTime() % 100_000;
+		for (int i = 0; i < EMPLOYEES; i++) {
+			AccessCard accessCard = new AccessCard(new Date(), true, "st-" + run + "-" + i);
+			eManager.persist(accessCard);
+			Employee employee = new Employee();
+			employee.setName("Streamed " + i);
+			employee.setSsn(String.format("st%05d%02d", run, i));
+			employee.setAccessCard(accessCard);
+			eManager.persist(employee);
+			firmwareById.put(employee.getId(), accessCard.getFirmwareVersion());
+		}
+		eManager.getTransaction().commit();
+		eManager.close();
+	}
+
+	@Test
+	void streamsEveryRowWithABoundedPersistenceContextInOneStatement() {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+		readOnly.setReadOnly(true);
+		readOnly.executeWithoutResult(status -> {
+			long total = entityManager.createQuery("select count(e) from Employee e", Long.class).getSingleResult();
+			Session session = entityManager.unwrap(Session.class);
+			List<Employee> streamed = new ArrayList<>();
+			int[] maxManaged = new int[1];
+			Map<BigInteger, String> firmwareStreamed = new HashMap<>();
+
+			StatementBudget.assertWithin(1, () -> {
+				try (Stream<Employee> employees = employeeRepository.streamAll(2, DETACH_EVERY)) {
+					employees.forEach(employee -> {
+						streamed.add(employee);
+						maxManaged[0] = Math.max(maxManaged[0], session.getStatistics().getEntityCount());
+						// Join fetched: usable without a statement, while still managed
+						assertTrue(employee.getAccessCard() == null || Hibernate.isInitialized(employee.getAccessCard()));
+						if (firmwareById.containsKey(employee.getId())) {
+							firmwareStreamed.put(employee.getId(), employee.getAccessCard().getFirmwareVersion());
+						}
+					});
+				}
+			});
+
+			assertTrue(total > 2L * DETACH_EVERY);
+			assertEquals(total, streamed.size());
+			assertEquals(firmwareById, firmwareStreamed);
+			// An employee and its card per row, for the rows since the last clear
+			assertTrue(maxManaged[0] <= 2 * DETACH_EVERY, "At most " + 2 * DETACH_EVERY + " managed entities, were " + maxManaged[0]);
+			assertFalse(entityManager.contains(streamed.get(0)));
+			// Most of them detached by now, their cards still read
+			for (Employee employee : streamed) {
+				if (firmwareById.containsKey(employee.getId())) {
+					assertEquals(firmwareById.get(employee.getId()), employee.getAccessCard().getFirmwareVersion());
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,133 @@
+package com.uberkautilya.jpawithspringboot.repository;
+
+import com.uberkautilya.jpawithspringboot.dto.AccessCardSummary;
+import com.uberkautilya.jpawithspringboot.dto.EmployeeSummary;
+import com.uberkautilya.jpawithspringboot.dto.PayStubSummary;
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import com.uberkautilya.jpawithspringboot.entity.PayStub;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The constructor expressions have to carry the values of the columns, and leave the persistence context empty
+ * The employees are of the age of EmployeeKeysetPaginationTests - no other test lists that far - and are removed after each test
+ */
+@SpringBootTest
+class SummaryProjectionTests {
+	private static final int MIN_AGE = 1_000_000;
+
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	AccessCardRepository accessCardRepository;
+	@Autowired
+	PayStubRepository payStubRepository;
+	@Autowired
+	EntityManagerFactory emFactory;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	private Employee zoe;
+	private Employee abe;
+	private AccessCard activeCard;
+	private AccessCard inactiveCard;
+	private PayStub payStub;
+
+	@BeforeEach
+	void seed() {
+		activeCard = accessCardRepository.save(new AccessCard(new Date(1_600_000_000_000L), true, "pr-active"));
+		inactiveCard = accessCardRepository.save(new AccessCard(new Date(1_600_000_000_000L), false, "pr-inactive"));
+		zoe = save("Zoe", MIN_AGE + 1, EmployeeType.CONTRACTOR, activeCard);
+		abe = save("Abe", MIN_AGE, EmployeeType.FULL_TIME, inactiveCard);
+		payStub = new PayStub(new Date(1_600_000_000_000L), new Date(1_602_000_000_000L), 1234.5f);
+		payStub.setEmployee(zoe);
+		payStub = payStubRepository.save(payStub);
+	}
+
+	@AfterEach
+	void remove() {
+		payStubRepository.deleteById(payStub.getId());
+		employeeRepository.deleteAllById(List.of(zoe.getId(), abe.getId()));
+		accessCardRepository.deleteAllById(List.of(activeCard.getId(), inactiveCard.getId()));
+	}
+
+	@Test
+	void summariesCarryTheValuesOfTheColumns() {
+		assertEquals(new EmployeeSummary(zoe.getId(), "Zoe", MIN_AGE + 1, EmployeeType.CONTRACTOR),
+				employeeRepository.findSummaryById(zoe.getId()).orElseThrow());
+		assertFalse(employeeRepository.findSummaryById(BigInteger.valueOf(-1)).isPresent());
+		assertEquals(List.of(new EmployeeSummary(abe.getId(), "Abe", MIN_AGE, EmployeeType.FULL_TIME),
+						new EmployeeSummary(zoe.getId(), "Zoe", MIN_AGE + 1, EmployeeType.CONTRACTOR)),
+				employeeRepository.findSummariesByMinAgeOrderByName(MIN_AGE));
+		assertTrue(employeeRepository.findAllSummaries().contains(new EmployeeSummary(abe.getId(), "Abe", MIN_AGE, EmployeeType.FULL_TIME)));
+
+		AccessCardSummary active = accessCardRepository.findActiveSummaries().stream()
+				.filter(card -> card.id() == activeCard.getId()).findFirst().orElseThrow();
+		assertTrue(active.active());
+		assertEquals("pr-active", active.firmwareVersion());
+		assertEquals(1_600_000_000_000L, active.issueDate().getTime());
+		assertTrue(accessCardRepository.findActiveSummaries().stream().noneMatch(card -> card.id() == inactiveCard.getId()));
+		assertTrue(accessCardRepository.findAllSummaries().stream().anyMatch(card -> card.id() == inactiveCard.getId() && !card.active()));
+
+		List<PayStubSummary> payStubs = payStubRepository.findSummariesByEmployeeId(zoe.getId());
+		assertEquals(1, payStubs.size());
+		PayStubSummary summary = payStubs.get(0);
+		assertEquals(payStub.getId(), summary.id());
+		assertEquals(zoe.getId(), summary.employeeId());
+		assertEquals(1_600_000_000_000L, summary.payPeriodStart().getTime());
+		assertEquals(1_602_000_000_000L, summary.payPeriodEnd().getTime());
+		assertEquals(1234.5f, summary.salary());
+	}
+
+	@Test
+	void noEntityIsLoaded() {
+		Statistics statistics = emFactory.unwrap(SessionFactory.class).getStatistics();
+		transactionTemplate.executeWithoutResult(status -> {
+			long loadsBefore = statistics.getEntityLoadCount();
+			long fetchesBefore = statistics.getEntityFetchCount();
+
+			employeeRepository.findSummaryById(zoe.getId());
+			employeeRepository.findAllSummaries();
+			employeeRepository.findSummariesByMinAgeOrderByName(MIN_AGE);
+			accessCardRepository.findAllSummaries();
+			accessCardRepository.findActiveSummaries();
+			payStubRepository.findSummariesByEmployeeId(zoe.getId());
+
+			assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+			assertEquals(loadsBefore, statistics.getEntityLoadCount());
+			assertEquals(fetchesBefore, statistics.getEntityFetchCount());
+		});
+	}
+
+	private Employee save(String name, int age, EmployeeType type, AccessCard accessCard) {
+		Employee employee = new Employee();
+		employee.setName(name);
+		employee.setAge(age);
+		employee.setType(type);
+		employee.setSsn("pr" + (System.nanoTime() % 100_000_000));
+		employee.setAccessCard(accessCard);
+		return employeeRepository.save(employee);
+	}
+}
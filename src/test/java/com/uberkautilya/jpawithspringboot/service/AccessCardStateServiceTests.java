@@ -0,0 +1,126 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.dto.AccessCardSummary;
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.metrics.StatementBudget;
+import com.uberkautilya.jpawithspringboot.repository.AccessCardRepository;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A write-behind service of its own, with an interval long enough that only flush(), the size trigger and close() write anything
+ * Not a context with write-behind properties: closing it to test the drain would close the JCache CacheManager the contexts share
+ */
+@SpringBootTest
+class AccessCardStateServiceTests {
+	private static final int CARDS = 3;
+	private static final int UPDATES_PER_CARD = 40;
+
+	@Autowired
+	ApplicationContext applicationContext;
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	@Autowired
+	AccessCardRepository accessCardRepository;
+	@Autowired
+	EmployeeRepository employeeRepository;
+
+	private AccessCardStateService stateService;
+	private List<Integer> cardIds;
+
+	@BeforeEach
+	void seed() {
+		stateService = new AccessCardStateService(transactionManager, "write-behind", Duration.ofHours(1), 100, 500);
+		applicationContext.getAutowireCapableBeanFactory().autowireBean(stateService);
+		cardIds = new ArrayList<>();
+		for (int i = 0; i < CARDS; i++) {
+			cardIds.add(accessCardRepository.save(new AccessCard(new Date(), false, "1.0")).getId());
+		}
+	}
+
+	@AfterEach
+	void close() throws InterruptedException {
+		stateService.close();
+	}
+
+	@Test
+	void burstsCoalesceIntoOneWritePerCard() {
+		AccessCardWriteStats before = stateService.stats();
+		for (int i = 0; i < UPDATES_PER_CARD; i++) {
+			for (int cardId : cardIds) {
+				stateService.setActive(cardId, i % 2 == 0);
+				stateService.reportFirmware(cardId, "2." + i);
+			}
+		}
+		String last = "2." + (UPDATES_PER_CARD - 1);
+		for (int cardId : cardIds) {
+			// Read through the buffer, while the rows are still as seeded
+			AccessCardSummary card = stateService.find(cardId).orElseThrow();
+			assertFalse(card.active());
+			assertEquals(last, card.firmwareVersion());
+			assertEquals("1.0", accessCardRepository.findById(cardId).orElseThrow().getFirmwareVersion());
+		}
+
+		// One select for the cards, one for their owners - the inverse one-to-one is eager, batch fetched - and an update per card
+		StatementBudget.assertWithin(2 + CARDS, () -> stateService.flush());
+
+		AccessCardWriteStats stats = stateService.stats();
+		assertEquals(2L * CARDS * UPDATES_PER_CARD, stats.updates() - before.updates());
+		assertEquals(CARDS, stats.cardsWritten() - before.cardsWritten());
+		assertEquals(0, stats.pending());
+		for (int cardId : cardIds) {
+			AccessCard card = accessCardRepository.findById(cardId).orElseThrow();
+			assertFalse(card.isActive());
+			assertEquals(last, card.getFirmwareVersion());
+		}
+	}
+
+	@Test
+	void anActivationBufferedBeforeAnOffboardingIsNotWrittenOverIt() {
+		EmployeeOffboardingService offboardingService = new EmployeeOffboardingService(transactionManager, applicationContext, stateService, 500);
+		applicationContext.getAutowireCapableBeanFactory().autowireBean(offboardingService);
+		int cardId = cardIds.get(0);
+		Employee employee = new Employee();
+		employee.setName("Leaving");
+		employee.setSsn("wb" + (System.nanoTime() % 100_000_000));
+		employee.setAccessCard(accessCardRepository.findById(cardId).orElseThrow());
+		BigInteger employeeId = employeeRepository.save(employee).getId();
+		stateService.setActive(cardId, true);
+
+		offboardingService.offboard(List.of(employeeId));
+		stateService.flush();
+
+		assertFalse(accessCardRepository.findById(cardId).orElseThrow().isActive());
+		assertFalse(stateService.find(cardId).orElseThrow().active());
+	}
+
+	@Test
+	void shutdownDrainsTheBuffer() throws InterruptedException {
+		stateService.reportFirmware(cardIds.get(0), "3.0");
+		stateService.setActive(cardIds.get(1), true);
+
+		stateService.close();
+
+		assertEquals("3.0", accessCardRepository.findById(cardIds.get(0)).orElseThrow().getFirmwareVersion());
+		assertTrue(accessCardRepository.findById(cardIds.get(1)).orElseThrow().isActive());
+		assertThrows(IllegalStateException.class, () -> stateService.setActive(cardIds.get(2), true));
+	}
+}
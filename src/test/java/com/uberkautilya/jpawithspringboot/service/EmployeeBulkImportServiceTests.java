@@ -0,0 +1,169 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Import services of their own, with chunks and flushes small enough for a few rows to take several of each
+ * The rows of a test are told apart by the prefix of their ssn
+ */
+@SpringBootTest
+class EmployeeBulkImportServiceTests {
+	@Autowired
+	ApplicationContext applicationContext;
+	@PersistenceUnit
+	EntityManagerFactory emFactory;
+
+	private EmployeeBulkImportService importService;
+	private String ssnPrefix;
+
+	@BeforeEach
+	void prefix() {
+		ssnPrefix = String.format("bi%05d", System.nanoTime() % 100_000);
+	}
+
+	@AfterEach
+	void shutdown() {
+		if (importService != null) {
+			importService.shutdown();
+		}
+	}
+
+	@Test
+	void writesEveryRowFlushingEveryBatchSize() {
+		importService = importService(10, 4, 2);
+		Statistics statistics = emFactory.unwrap(SessionFactory.class).getStatistics();
+		long flushesBefore = statistics.getFlushCount();
+
+		BulkImportResult result = importService.importEmployees(employees(25));
+
+		assertTrue(result.isComplete());
+		assertEquals(25, result.rows());
+		assertEquals(3, result.chunks());
+		assertEquals(25, countImported());
+		// Chunks of 10, 10 and 5: flushed after rows 4 and 8 of each, and once more at its end
+		assertEquals(3 + 3 + 2, statistics.getFlushCount() - flushesBefore);
+	}
+
+	@Test
+	void aFailingChunkIsReportedAndTheOthersCommit() {
+		importService = importService(5, 50, 2);
+		List<Employee> employees = employees(15).toList();
+		// Not saved: the chunk of rows 5 to 9 fails
+		employees.get(7).addEmailGroup(new EmailGroup("Unsaved"));
+
+		BulkImportResult result = importService.importEmployees(employees.stream());
+
+		assertFalse(result.isComplete());
+		assertEquals(10, result.rows());
+		assertEquals(3, result.chunks());
+		assertEquals(5, result.failedRows());
+		BulkImportResult.FailedChunk failed = result.failures().get(0);
+		assertEquals(1, failed.chunk());
+		assertEquals(5, failed.firstRow());
+		assertEquals(5, failed.rows());
+		assertInstanceOf(IllegalArgumentException.class, failed.cause());
+		assertEquals(10, countImported());
+	}
+
+	/**
+	 * Chunks of one row, whose group makes the worker wait: the workers hold two, two more wait for a worker,
+	 * and the reader - having read the next row - waits for one of the four to finish
+	 */
+	@Test
+	void chunksInFlightAreBoundedByTheParallelism() throws Exception {
+		importService = importService(1, 50, 2);
+		EmailGroup group = new EmailGroup("Bulk import " + ssnPrefix);
+		EntityManager eManager = emFactory.createEntityManager();
+		eManager.getTransaction().begin();
+		eManager.persist(group);
+		eManager.getTransaction().commit();
+		eManager.close();
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger writing = new AtomicInteger();
+		AtomicInteger maxWriting = new AtomicInteger();
+		EmailGroup waiting = new EmailGroup() {
+			@Override
+			public int getId() {
+				if (Thread.currentThread().getName().startsWith("employee-import-")) {
+					maxWriting.accumulateAndGet(writing.incrementAndGet(), Math::max);
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					writing.decrementAndGet();
+				}
+				return group.getId();
+			}
+		};
+		AtomicInteger read = new AtomicInteger();
+		Stream<Employee> employees = employees(10).peek(employee -> {
+			employee.addEmailGroup(waiting);
+			read.incrementAndGet();
+		});
+
+		CompletableFuture<BulkImportResult> result = CompletableFuture.supplyAsync(() -> importService.importEmployees(employees));
+		for (int i = 0; i < 100 && writing.get() < 2; i++) {
+			Thread.sleep(20);
+		}
+		Thread.sleep(200);
+		assertEquals(2, writing.get());
+		assertEquals(5, read.get());
+		release.countDown();
+
+		assertEquals(10, result.get(30, TimeUnit.SECONDS).rows());
+		assertEquals(2, maxWriting.get());
+		assertEquals(10, countImported());
+	}
+
+	private EmployeeBulkImportService importService(int chunkSize, int flushSize, int parallelism) {
+		EmployeeBulkImportService service = new EmployeeBulkImportService(chunkSize, flushSize, parallelism);
+		applicationContext.getAutowireCapableBeanFactory().autowireBean(service);
+		return service;
+	}
+
+	private Stream<Employee> employees(int count) {
+		return IntStream.range(0, count).mapToObj(i -> {
+			Employee employee = new Employee();
+			employee.setName("Imported " + i);
+			employee.setSsn(ssnPrefix + String.format("%03d", i));
+			return employee;
+		});
+	}
+
+	private long countImported() {
+		EntityManager eManager = emFactory.createEntityManager();
+		try {
+			return eManager.createQuery("select count(e) from Employee e where e.ssn like :prefix", Long.class)
+					.setParameter("prefix", ssnPrefix + "%")
+					.getSingleResult();
+		} finally {
+			eManager.close();
+		}
+	}
+}
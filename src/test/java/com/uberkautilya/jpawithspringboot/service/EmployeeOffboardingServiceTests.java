@@ -0,0 +1,100 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.entity.PayStub;
+import com.uberkautilya.jpawithspringboot.metrics.PersistenceWork;
+import com.uberkautilya.jpawithspringboot.metrics.StatementBudget;
+import com.uberkautilya.jpawithspringboot.repository.AccessCardRepository;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeFetchPlan;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import com.uberkautilya.jpawithspringboot.repository.PayStubRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class EmployeeOffboardingServiceTests {
+	private static final int EMPLOYEES = 3;
+	private static final int PAY_STUBS = 36;
+
+	@Autowired
+	EmployeeOffboardingService offboardingService;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	AccessCardRepository accessCardRepository;
+	@Autowired
+	PayStubRepository payStubRepository;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	private List<BigInteger> ids;
+	private List<Integer> cardIds;
+	private EmailGroup emailGroup;
+
+	@BeforeEach
+	void seed() {
+		emailGroup = transactionTemplate.execute(status -> {
+			EmailGroup group = new EmailGroup("offboarding");
+			entityManager.persist(group);
+			return group;
+		});
+		ids = new ArrayList<>();
+		cardIds = new ArrayList<>();
+		for (int i = 0; i < EMPLOYEES; i++) {
+			AccessCard card = accessCardRepository.save(new AccessCard(new Date(), true, "1.0"));
+			Employee employee = new Employee();
+			employee.setName("Leaving " + i);
+			employee.setSsn("ob" + (System.nanoTime() % 100_000_000));
+			employee.setAccessCard(card);
+			employee.addEmailGroup(emailGroup);
+			employee = employeeRepository.save(employee);
+			Calendar period = Calendar.getInstance();
+			for (int p = 0; p < PAY_STUBS; p++) {
+				PayStub payStub = new PayStub(period.getTime(), period.getTime(), 1000);
+				payStub.setEmployee(employee);
+				payStubRepository.save(payStub);
+				period.add(Calendar.MONTH, -1);
+			}
+			ids.add(employee.getId());
+			cardIds.add(card.getId());
+		}
+		// Cache the employees and their group lists, which the offboarding must evict
+		ids.forEach(id -> employeeRepository.findById(id, EmployeeFetchPlan.FULL));
+	}
+
+	@Test
+	void removesEmployeesWithTheirDependentsInAFewStatements() {
+		PersistenceWork work = StatementBudget.assertWithin(6, () -> {
+			OffboardingResult result = offboardingService.offboard(List.of(ids.get(0), ids.get(1), ids.get(2), BigInteger.valueOf(-1)));
+			assertEquals(EMPLOYEES, result.employees());
+			assertEquals(EMPLOYEES * PAY_STUBS, result.payStubs());
+			assertEquals(EMPLOYEES, result.accessCardsDeactivated());
+		});
+		assertEquals(0, work.getEntitiesLoaded());
+
+		ids.forEach(id -> assertTrue(employeeRepository.findById(id).isEmpty()));
+		ids.forEach(id -> assertTrue(payStubRepository.findSummariesByEmployeeId(id).isEmpty()));
+		cardIds.forEach(id -> assertFalse(accessCardRepository.findById(id).orElseThrow().isActive()));
+		assertEquals(0, (long) transactionTemplate.execute(status -> entityManager.find(EmailGroup.class, emailGroup.getId())
+				.getEmployeeList().size()));
+	}
+}
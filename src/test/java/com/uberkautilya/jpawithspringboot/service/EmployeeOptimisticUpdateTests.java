@@ -0,0 +1,177 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.aspect.RetryOnConflict;
+import com.uberkautilya.jpawithspringboot.aspect.RetryOnConflictAspect;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class EmployeeOptimisticUpdateTests {
+
+	@Autowired
+	TransactionalDemo transactionalDemo;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	RetryOnConflictAspect retryAspect;
+	@Autowired
+	ConflictingWriter conflictingWriter;
+
+	private Employee employee;
+
+	@BeforeEach
+	void seed() {
+		employee = new Employee();
+		employee.setName("Optimistic");
+		employee.setSsn("op" + (System.nanoTime() % 100_000_000));
+		employee.setAge(30);
+		employee = employeeRepository.save(employee);
+	}
+
+	@Test
+	void updateFromAStaleCopyConflicts() {
+		Employee stale = employeeRepository.findById(employee.getId()).orElseThrow();
+		Employee other = employeeRepository.findById(employee.getId()).orElseThrow();
+		other.setName("Concurrent");
+		employeeRepository.save(other);
+
+		assertThrows(OptimisticLockException.class, () -> transactionalDemo.updateEmployee(stale));
+
+		Employee reloaded = employeeRepository.findById(employee.getId()).orElseThrow();
+		assertEquals("Concurrent", reloaded.getName());
+		assertEquals(employee.getVersion() + 1, reloaded.getVersion());
+	}
+
+	@Test
+	void updateFromACurrentCopyReturnsTheNextVersion() {
+		Employee current = employeeRepository.findById(employee.getId()).orElseThrow();
+
+		Employee updated = transactionalDemo.updateEmployee(current);
+
+		assertEquals(employee.getVersion() + 1, updated.getVersion());
+		Employee reloaded = employeeRepository.findById(employee.getId()).orElseThrow();
+		assertEquals("Updated Name", reloaded.getName());
+		assertEquals(30, reloaded.getAge());
+		assertEquals(updated.getVersion(), reloaded.getVersion());
+		// The copy passed in is stale now, the one returned is not
+		assertThrows(OptimisticLockException.class, () -> transactionalDemo.updateEmployee(current));
+		transactionalDemo.updateEmployee(updated);
+	}
+
+	@Test
+	void conflictIsRetriedOnFreshState() {
+		long retriesBefore = retryAspect.getRetries();
+
+		int attempts = conflictingWriter.rename(employee.getId(), "Renamed");
+
+		assertEquals(2, attempts);
+		assertEquals(retriesBefore + 1, retryAspect.getRetries());
+		Employee reloaded = employeeRepository.findById(employee.getId()).orElseThrow();
+		assertEquals("Renamed", reloaded.getName());
+		assertEquals(31, reloaded.getAge());
+	}
+
+	@Test
+	void renameWritesOnTheCurrentVersionWhateverTheCallerRead() {
+		Employee other = employeeRepository.findById(employee.getId()).orElseThrow();
+		other.setAge(31);
+		employeeRepository.save(other);
+
+		Employee renamed = transactionalDemo.renameEmployee(employee.getId(), "Renamed");
+
+		assertEquals(employee.getVersion() + 2, renamed.getVersion());
+		Employee reloaded = employeeRepository.findById(employee.getId()).orElseThrow();
+		assertEquals("Renamed", reloaded.getName());
+		assertEquals(31, reloaded.getAge());
+	}
+
+	/**
+	 * Two renames at once: whichever commits second has read the version the first one replaced, and is run again
+	 */
+	@Test
+	void concurrentRenamesBothLand() {
+		CountDownLatch start = new CountDownLatch(1);
+
+		List<CompletableFuture<Employee>> renames = IntStream.range(0, 2).mapToObj(r -> CompletableFuture.supplyAsync(() -> {
+			try {
+				start.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return transactionalDemo.renameEmployee(employee.getId(), "Renamer " + r);
+		})).toList();
+		start.countDown();
+		renames.forEach(CompletableFuture::join);
+
+		assertEquals(employee.getVersion() + 2, employeeRepository.findById(employee.getId()).orElseThrow().getVersion());
+	}
+
+	@Test
+	void bulkUpdateBumpsTheVersionAndRefreshesTheCachedListing() {
+		employeeRepository.findByMinAgeOrderByNameCached(30);
+
+		assertEquals(1, employeeRepository.updateNameByIds(List.of(employee.getId()), "Bulk"));
+
+		Employee reloaded = employeeRepository.findById(employee.getId()).orElseThrow();
+		assertEquals("Bulk", reloaded.getName());
+		assertEquals(employee.getVersion() + 1, reloaded.getVersion());
+		assertTrue(employeeRepository.findByMinAgeOrderByNameCached(30).stream()
+				.anyMatch(e -> e.getId().equals(employee.getId()) && e.getName().equals("Bulk")));
+	}
+
+	/**
+	 * The first attempt reads the employee, then another transaction changes it before the attempt commits
+	 */
+	static class ConflictingWriter {
+		@Autowired
+		EmployeeRepository employeeRepository;
+		@Autowired
+		PlatformTransactionManager transactionManager;
+
+		private final AtomicInteger attempts = new AtomicInteger();
+
+		@Transactional
+		@RetryOnConflict
+		public int rename(BigInteger id, String name) {
+			int attempt = attempts.incrementAndGet();
+			Employee employee = employeeRepository.findById(id).orElseThrow();
+			if (attempt == 1) {
+				CompletableFuture.runAsync(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+					Employee concurrent = employeeRepository.findById(id).orElseThrow();
+					concurrent.setAge(concurrent.getAge() + 1);
+				})).join();
+			}
+			employee.setName(name);
+			return attempt;
+		}
+	}
+
+	@TestConfiguration
+	static class Config {
+		@Bean
+		ConflictingWriter conflictingWriter() {
+			return new ConflictingWriter();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.FirmwareRolloutCheckpoint;
+import com.uberkautilya.jpawithspringboot.repository.AccessCardRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The database is shared with the other tests, so only the cards seeded here are checked - the rollout goes over all of them
+ */
+@SpringBootTest
+class FirmwareRolloutServiceTests {
+
+	@Autowired
+	FirmwareRolloutService rolloutService;
+	@Autowired
+	AccessCardRepository accessCardRepository;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	private static final Set<String> SOURCES = Set.of("1.0", "1.1", "1.2");
+
+	private List<AccessCard> active;
+	private AccessCard inactive;
+	private AccessCard newer;
+	private AccessCard unlisted;
+	private String target;
+
+	@BeforeEach
+	void seed() {
+		target = "9." + System.nanoTime() % 1_000_000;
+		active = new ArrayList<>();
+		IntStream.range(0, 25).forEach(i -> active.add(accessCardRepository.save(new AccessCard(new Date(), true, "1." + i % 3))));
+		inactive = accessCardRepository.save(new AccessCard(new Date(), false, "1.0"));
+		newer = accessCardRepository.save(new AccessCard(new Date(), true, "99.0"));
+		unlisted = accessCardRepository.save(new AccessCard(new Date(), true, "0.9-beta"));
+	}
+
+	@Test
+	void updatesActiveCardsOnly() {
+		FirmwareRolloutProgress progress = rolloutService.rollout("updates-" + target, SOURCES, target);
+
+		assertTrue(progress.completed());
+		assertTrue(progress.updatedCards() >= active.size());
+		active.forEach(card -> assertEquals(target, firmwareOf(card)));
+		assertEquals("1.0", firmwareOf(inactive));
+	}
+
+	@Test
+	void leavesCardsOnOtherVersionsAsTheyAre() {
+		rolloutService.rollout("others-" + target, SOURCES, target);
+
+		// Not downgraded, nor moved from a version not asked for
+		assertEquals("99.0", firmwareOf(newer));
+		assertEquals("0.9-beta", firmwareOf(unlisted));
+		assertThrows(IllegalArgumentException.class, () -> rolloutService.rollout("others-" + target, Set.of(target), target));
+		assertThrows(IllegalArgumentException.class, () -> rolloutService.rollout("others-" + target, Set.of(), target));
+	}
+
+	@Test
+	void resumesFromTheCheckpoint() {
+		String name = "resumes-" + target;
+		assertThrows(IllegalStateException.class, () -> rolloutService.rollout(name, SOURCES, target, progress -> {
+			throw new IllegalStateException("stopped after chunk " + progress.chunks());
+		}));
+		FirmwareRolloutCheckpoint stopped = entityManager.find(FirmwareRolloutCheckpoint.class, name);
+		assertEquals(1, stopped.getChunks());
+		assertFalse(stopped.isCompleted());
+
+		// The same set in another order is the same rollout
+		FirmwareRolloutProgress progress = rolloutService.rollout(name, new LinkedHashSet<>(List.of("1.2", "1.0", "1.1")), target, p -> {
+		});
+
+		assertTrue(progress.completed());
+		assertTrue(progress.chunks() > 1);
+		active.forEach(card -> assertEquals(target, firmwareOf(card)));
+		assertThrows(IllegalStateException.class, () -> rolloutService.rollout(name, SOURCES, target + ".1"));
+		assertThrows(IllegalStateException.class, () -> rolloutService.rollout(name, Set.of("1.0"), target));
+	}
+
+	private String firmwareOf(AccessCard card) {
+		return accessCardRepository.findById(card.getId()).orElseThrow().getFirmwareVersion();
+	}
+}
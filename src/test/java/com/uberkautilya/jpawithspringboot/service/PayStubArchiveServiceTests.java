@@ -0,0 +1,202 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.archive.PayStubArchive;
+import com.uberkautilya.jpawithspringboot.dto.PayStubSummary;
+import com.uberkautilya.jpawithspringboot.dto.PayrollTotal;
+import com.uberkautilya.jpawithspringboot.entity.EmailGroup;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.entity.EmployeeType;
+import com.uberkautilya.jpawithspringboot.entity.PayStub;
+import com.uberkautilya.jpawithspringboot.payroll.SalaryStats;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import com.uberkautilya.jpawithspringboot.repository.PayStubRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class PayStubArchiveServiceTests {
+	private static final int PERIODS = 24;
+
+	@Autowired
+	PayStubArchiveService archiveService;
+	@Autowired
+	PayStubArchive archive;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	PayStubRepository payStubRepository;
+	@Autowired
+	PayrollAggregationService aggregationService;
+	@Autowired
+	EmployeeOffboardingService offboardingService;
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	@PersistenceContext
+	EntityManager entityManager;
+
+	private BigInteger employeeId;
+	private List<PayStubSummary> seeded;
+
+	@BeforeEach
+	void seed() {
+		Employee employee = new Employee();
+		employee.setName("Archived");
+		employee.setSsn("ar" + (System.nanoTime() % 100_000_000));
+		employee = employeeRepository.save(employee);
+		YearMonth period = YearMonth.now();
+		for (int p = 0; p < PERIODS; p++) {
+			save(employee, period.minusMonths(p), 2000 + p);
+		}
+		employeeId = employee.getId();
+		seeded = payStubRepository.findSummariesByEmployeeId(employeeId);
+		assertEquals(PERIODS, seeded.size());
+	}
+
+	private void save(Employee employee, YearMonth period, float salary) {
+		PayStub payStub = new PayStub(archive.startOf(period), archive.startOf(period.plusMonths(1)), salary);
+		payStub.setEmployee(employee);
+		payStubRepository.save(payStub);
+	}
+
+	@Test
+	void closedPeriodsMoveToTheArchiveAndStayReadable() {
+		PayStubArchiveResult result = archiveService.archiveClosedPeriods();
+
+		assertTrue(result.periods() >= PERIODS - 3);
+		assertEquals(3, hotPayStubs());
+		List<PayStubSummary> history = payStubRepository.findSummariesByEmployeeId(employeeId);
+		assertEquals(PERIODS, history.size());
+		for (int i = 0; i < PERIODS; i++) {
+			assertEquals(seeded.get(i).id(), history.get(i).id());
+			assertEquals(seeded.get(i).salary(), history.get(i).salary());
+			assertEquals(seeded.get(i).payPeriodStart().getTime(), history.get(i).payPeriodStart().getTime());
+		}
+
+		// A year back, half of it archived
+		YearMonth from = YearMonth.now().minusMonths(11);
+		List<PayStubSummary> lastYear = payStubRepository.findSummariesByEmployeeIdBetween(employeeId, archive.startOf(from),
+				archive.startOf(YearMonth.now().plusMonths(1)));
+		assertEquals(12, lastYear.size());
+		assertEquals(archive.startOf(from).getTime(), lastYear.get(0).payPeriodStart().getTime());
+
+		long total = payStubRepository.totalsByPeriod().stream().mapToLong(PayrollTotal::payStubs).sum();
+		assertEquals(payStubRepository.count() + archive.getPayStubs(), total);
+
+		assertEquals(0, archiveService.archiveClosedPeriods().periods());
+	}
+
+	@Test
+	void lateArrivalsAreMergedIntoTheirArchivedPeriod() {
+		archiveService.archiveClosedPeriods();
+		YearMonth closed = YearMonth.now().minusMonths(PERIODS - 1);
+		save(employeeRepository.findById(employeeId).orElseThrow(), closed, 99);
+
+		PayStubArchiveResult result = archiveService.archiveClosedPeriods();
+
+		assertEquals(1, result.periods());
+		assertEquals(3, hotPayStubs());
+		List<PayStubSummary> history = payStubRepository.findSummariesByEmployeeIdBetween(employeeId, archive.startOf(closed),
+				archive.startOf(closed.plusMonths(1)));
+		assertEquals(2, history.size());
+		assertTrue(history.stream().anyMatch(payStub -> payStub.salary() == 99));
+	}
+
+	@Test
+	void rollupsAndTheEngineCoverTheArchivedPeriods() {
+		String groupName = "archived-" + System.nanoTime();
+		transactionTemplate.executeWithoutResult(status -> {
+			EmailGroup group = new EmailGroup(groupName);
+			entityManager.persist(group);
+			Employee employee = entityManager.find(Employee.class, employeeId);
+			employee.setType(EmployeeType.CONTRACTOR);
+			employee.addEmailGroup(group);
+		});
+		PayrollTotal<EmployeeType> contractors = contractors();
+		long engineCount = aggregationService.compute(SalaryStats.byType()).count(EmployeeType.CONTRACTOR);
+		double engineSum = aggregationService.compute(SalaryStats.byType()).sum(EmployeeType.CONTRACTOR);
+
+		archiveService.archiveClosedPeriods();
+
+		assertEquals(contractors, contractors());
+		SalaryStats stats = aggregationService.compute(SalaryStats.byType());
+		assertEquals(engineCount, stats.count(EmployeeType.CONTRACTOR));
+		assertEquals(engineSum, stats.sum(EmployeeType.CONTRACTOR), 0.01);
+		PayrollTotal<String> group = aggregationService.totalsByEmailGroup().stream()
+				.filter(total -> total.key().equals(groupName))
+				.findFirst().orElseThrow();
+		assertEquals(PERIODS, group.payStubs());
+		assertEquals(PERIODS * 2000 + PERIODS * (PERIODS - 1) / 2, group.totalSalary(), 0.01);
+	}
+
+	/**
+	 * The archived periods are rolled up by the type and groups the employee had when archived, which outlive the employee
+	 */
+	@Test
+	void archivedRollupsKeepTheEmployeesOffboardedSince() {
+		String groupName = "offboarded-" + System.nanoTime();
+		transactionTemplate.executeWithoutResult(status -> {
+			EmailGroup group = new EmailGroup(groupName);
+			entityManager.persist(group);
+			Employee employee = entityManager.find(Employee.class, employeeId);
+			employee.setType(EmployeeType.CONTRACTOR);
+			employee.addEmailGroup(group);
+		});
+		archiveService.archiveClosedPeriods();
+		PayrollTotal<EmployeeType> contractors = contractors();
+
+		offboardingService.offboard(List.of(employeeId));
+
+		// Only the 3 pay stubs still in the table are gone, those of 2000, 2001 and 2002
+		PayrollTotal<EmployeeType> offboarded = contractors();
+		assertEquals(contractors.payStubs() - 3, offboarded.payStubs());
+		assertEquals(contractors.totalSalary() - 6003, offboarded.totalSalary(), 0.01);
+		PayrollTotal<String> group = aggregationService.totalsByEmailGroup().stream()
+				.filter(total -> total.key().equals(groupName))
+				.findFirst().orElseThrow();
+		assertEquals(PERIODS - 3, group.payStubs());
+		assertEquals(PERIODS * 2000 + PERIODS * (PERIODS - 1) / 2 - 6003, group.totalSalary(), 0.01);
+	}
+
+	/**
+	 * The archive directory of the tests is relative, under target
+	 */
+	@Test
+	void archivingOnAnIntervalNeedsAnAbsoluteDirectory() {
+		assertFalse(archive.getDirectory().isAbsolute());
+
+		assertThrows(IllegalArgumentException.class, () -> new PayStubArchiveService(archive, transactionManager, 3, Duration.ofDays(1)));
+		new PayStubArchiveService(archive, transactionManager, 3, Duration.ZERO).shutdown();
+	}
+
+	private PayrollTotal<EmployeeType> contractors() {
+		return aggregationService.totalsByType().stream()
+				.filter(total -> total.key() == EmployeeType.CONTRACTOR)
+				.findFirst().orElseThrow();
+	}
+
+	private long hotPayStubs() {
+		return transactionTemplate.execute(status -> entityManager
+				.createQuery("select count(p) from PayStub p where p.employee.id = :employeeId", Long.class)
+				.setParameter("employeeId", employeeId)
+				.getSingleResult());
+	}
+}
@@ -0,0 +1,66 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceCallExecutorTests {
+	@Test
+	void atMostMaxConcurrentCallsRunAtOnce() throws Exception {
+		ServiceCallExecutor executor = new ServiceCallExecutor(ServiceCallExecutor.Mode.PLATFORM, 8, 2);
+		try {
+			CountDownLatch release = new CountDownLatch(1);
+			AtomicInteger running = new AtomicInteger();
+			AtomicInteger maxRunning = new AtomicInteger();
+			List<CompletableFuture<Void>> calls = new ArrayList<>();
+			for (int i = 0; i < 6; i++) {
+				calls.add(executor.run(() -> {
+					maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+				}));
+			}
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (executor.getQueued() < 4 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(4, executor.getQueued());
+			release.countDown();
+			CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+			assertEquals(2, maxRunning.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void virtualThreadsRunCallsOrFailWithoutJava21() throws Exception {
+		assertTrue(ServiceCallExecutor.isSupported(ServiceCallExecutor.Mode.PLATFORM));
+		if (Runtime.version().feature() < 21) {
+			assertFalse(ServiceCallExecutor.isSupported(ServiceCallExecutor.Mode.VIRTUAL));
+			assertThrows(IllegalStateException.class, () -> new ServiceCallExecutor(ServiceCallExecutor.Mode.VIRTUAL, 8, 2));
+			return;
+		}
+		assertTrue(ServiceCallExecutor.isSupported(ServiceCallExecutor.Mode.VIRTUAL));
+		ServiceCallExecutor executor = new ServiceCallExecutor(ServiceCallExecutor.Mode.VIRTUAL, 8, 2);
+		try {
+			assertTrue(executor.submit(() -> Thread.currentThread().toString()).get(5, TimeUnit.SECONDS).startsWith("VirtualThread"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
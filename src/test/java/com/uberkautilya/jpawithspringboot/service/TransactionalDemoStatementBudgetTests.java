@@ -0,0 +1,86 @@
+package com.uberkautilya.jpawithspringboot.service;
+
+import com.uberkautilya.jpawithspringboot.entity.AccessCard;
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.metrics.PersistenceMetricsRegistry;
+import com.uberkautilya.jpawithspringboot.metrics.PersistenceStatsSnapshot;
+import com.uberkautilya.jpawithspringboot.metrics.PersistenceWork;
+import com.uberkautilya.jpawithspringboot.metrics.StatementBudget;
+import com.uberkautilya.jpawithspringboot.repository.AccessCardRepository;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class TransactionalDemoStatementBudgetTests {
+
+	@Autowired
+	TransactionalDemo transactionalDemo;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@Autowired
+	AccessCardRepository accessCardRepository;
+	@Autowired
+	PersistenceMetricsRegistry metricsRegistry;
+
+	private Employee employee;
+	private AccessCard accessCard;
+
+	@BeforeEach
+	void seed() {
+		accessCard = accessCardRepository.save(new AccessCard(new Date(), true, "1.0"));
+		employee = new Employee();
+		employee.setName("Budget");
+		employee.setSsn("sb" + (System.nanoTime() % 100_000_000));
+		employee.setAccessCard(accessCard);
+		employee = employeeRepository.save(employee);
+	}
+
+	@Test
+	void updateEmployeeStaysWithinBudget() {
+		PersistenceWork work = StatementBudget.assertWithin(2, () -> {
+			transactionalDemo.updateEmployee(employee);
+		});
+
+		assertTrue(work.getFlushes() >= 1);
+	}
+
+	@Test
+	void updateEmployeeAndAccessCardStaysWithinBudget() {
+		accessCard.setFirmwareVersion("2.0");
+
+		StatementBudget.assertWithin(4, () -> transactionalDemo.updateEmployeeAndAccessCard(employee, accessCard));
+	}
+
+	@Test
+	void budgetOverrunFails() {
+		assertThrows(AssertionError.class, () -> StatementBudget.assertWithin(0, () -> transactionalDemo.updateEmployee(employee)));
+	}
+
+	@Test
+	void workIsAttributedToTheTransactionBoundary() {
+		PersistenceStatsSnapshot before = metricsRegistry.snapshot("tx:TransactionalDemo.updateEmployeeAndAccessCard");
+		PersistenceStatsSnapshot nestedBefore = metricsRegistry.snapshot("method:TransactionalDemo.updateEmployee");
+		PersistenceStatsSnapshot nestedBoundaryBefore = metricsRegistry.snapshot("tx:TransactionalDemo.updateEmployee");
+
+		transactionalDemo.updateEmployeeAndAccessCard(employee, accessCard);
+
+		PersistenceStatsSnapshot after = metricsRegistry.snapshot("tx:TransactionalDemo.updateEmployeeAndAccessCard");
+		assertEquals(before.calls() + 1, after.calls());
+		assertTrue(after.statements() > before.statements());
+		assertEquals(after.calls(), metricsRegistry.snapshot("method:TransactionalDemo.updateEmployeeAndAccessCard").calls());
+		// The nested call is measured on its own, within the transaction of its caller
+		PersistenceStatsSnapshot nested = metricsRegistry.snapshot("method:TransactionalDemo.updateEmployee");
+		assertEquals(nestedBefore.calls() + 1, nested.calls());
+		assertTrue(nested.statements() > nestedBefore.statements());
+		assertEquals(nestedBoundaryBefore.calls(), metricsRegistry.snapshot("tx:TransactionalDemo.updateEmployee").calls());
+	}
+}
@@ -0,0 +1,80 @@
+package com.uberkautilya.jpawithspringboot.unitofwork;
+
+import com.uberkautilya.jpawithspringboot.entity.Employee;
+import com.uberkautilya.jpawithspringboot.repository.EmployeeRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceContextType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class BoundedUnitOfWorkTests {
+	private static final int MAX_MANAGED = 10;
+	private static final int EMPLOYEES = 25;
+
+	@Autowired
+	UnitOfWorkFactory unitOfWorkFactory;
+	@Autowired
+	EmployeeRepository employeeRepository;
+	@PersistenceContext(type = PersistenceContextType.EXTENDED)
+	EntityManager extendedManager;
+
+	@Test
+	void checkpointsAtTheEntityThresholdAndOnClose() {
+		List<Employee> employees = new ArrayList<>();
+		UnitOfWorkStats stats;
+		try (BoundedUnitOfWork unitOfWork = unitOfWorkFactory.begin("uow-test", extendedManager, MAX_MANAGED, 0)) {
+			String prefix = "uw" + (System.nanoTime() % 1_000_000);
+			for (int i = 0; i < EMPLOYEES; i++) {
+				Employee employee = new Employee();
+				employee.setName("Unit of work " + i);
+				employee.setSsn(prefix + i);
+				unitOfWork.persist(employee);
+				employees.add(employee);
+				assertTrue(unitOfWork.managedEntities() < MAX_MANAGED);
+			}
+			assertEquals(EMPLOYEES % MAX_MANAGED, unitOfWork.managedEntities());
+			assertTrue(unitOfWorkFactory.snapshot().containsKey("uow-test"));
+			stats = unitOfWork.stats();
+		}
+		assertEquals(EMPLOYEES / MAX_MANAGED, stats.automaticCheckpoints());
+		assertEquals(MAX_MANAGED, stats.peakManagedEntities());
+		assertFalse(unitOfWorkFactory.snapshot().containsKey("uow-test"));
+		// Flushed and committed: the checkpoints before close and the one on close
+		for (Employee employee : employees) {
+			assertTrue(employeeRepository.existsById(employee.getId()));
+			assertFalse(extendedManager.contains(employee));
+		}
+	}
+
+	@Test
+	void explicitCheckpointDetachesAndTheUnitIsUnusableOnceClosed() {
+		BigInteger id;
+		BoundedUnitOfWork unitOfWork = unitOfWorkFactory.begin("uow-explicit", extendedManager);
+		try (unitOfWork) {
+			Employee employee = new Employee();
+			employee.setName("Checkpointed");
+			employee.setSsn("uc" + (System.nanoTime() % 10_000_000));
+			unitOfWork.persist(employee);
+			unitOfWork.checkpoint();
+			assertFalse(extendedManager.contains(employee));
+			assertEquals(0, unitOfWork.managedEntities());
+			id = employee.getId();
+			Employee found = unitOfWork.find(Employee.class, id);
+			found.setName("Checkpointed and renamed");
+		}
+		assertEquals("Checkpointed and renamed", employeeRepository.findById(id).orElseThrow().getName());
+		assertThrows(IllegalStateException.class, () -> unitOfWork.persist(new Employee()));
+	}
+}